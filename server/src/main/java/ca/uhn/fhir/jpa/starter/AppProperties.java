@@ -7,6 +7,7 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings.IdStrategyEnum;
 import ca.uhn.fhir.jpa.model.entity.NormalizedQuantitySearchLevel;
 import ca.uhn.fhir.jpa.starter.ig.ExtendedPackageInstallationSpec;
 import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import org.hl7.fhir.r4.model.Bundle;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -14,6 +15,7 @@ import org.springframework.context.annotation.Configuration;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -72,6 +74,8 @@ public class AppProperties {
 	private Integer inline_resource_storage_below_size;
 	private Boolean bulk_export_enabled = false;
 	private Boolean bulk_import_enabled = false;
+	private Boolean bulk_import_jdbc_tuning = false;
+	private Integer bulk_import_jdbc_batch_size = 500;
 	private Boolean default_pretty_print = true;
 	private Integer default_page_size = 20;
 	private Integer max_binary_size = null;
@@ -109,6 +113,8 @@ public class AppProperties {
 	private Boolean use_apache_address_strategy_https = false;
 	private Integer bundle_batch_pool_size = 20;
 	private Integer bundle_batch_pool_max_size = 100;
+	private Integer bundle_batch_queue_capacity = 200;
+	private Boolean bundle_batch_virtual_threads = false;
 	private Boolean resource_dbhistory_enabled = true;
 	private Boolean upliftedRefchains_enabled = false;
 
@@ -129,6 +135,10 @@ public class AppProperties {
 	private Boolean mark_resources_for_reindexing_upon_search_parameter_change = true;
 	private Integer reindex_thread_count = null;
 	private Integer expunge_thread_count = null;
+	private AdmissionControl admission_control = new AdmissionControl();
+	private Mcp mcp = new Mcp();
+	private SecondLevelCache second_level_cache = new SecondLevelCache();
+	private ReadReplica read_replica = new ReadReplica();
 
 	public List<String> getCustomInterceptorClasses() {
 		return custom_interceptor_classes;
@@ -534,6 +544,22 @@ public class AppProperties {
 		this.bulk_import_enabled = bulk_import_enabled;
 	}
 
+	public Boolean getBulk_import_jdbc_tuning() {
+		return bulk_import_jdbc_tuning;
+	}
+
+	public void setBulk_import_jdbc_tuning(Boolean bulk_import_jdbc_tuning) {
+		this.bulk_import_jdbc_tuning = bulk_import_jdbc_tuning;
+	}
+
+	public Integer getBulk_import_jdbc_batch_size() {
+		return bulk_import_jdbc_batch_size;
+	}
+
+	public void setBulk_import_jdbc_batch_size(Integer bulk_import_jdbc_batch_size) {
+		this.bulk_import_jdbc_batch_size = bulk_import_jdbc_batch_size;
+	}
+
 	public EncodingEnum getDefault_encoding() {
 		return default_encoding;
 	}
@@ -658,6 +684,22 @@ public class AppProperties {
 		this.bundle_batch_pool_max_size = bundle_batch_pool_max_size;
 	}
 
+	public Integer getBundle_batch_queue_capacity() {
+		return bundle_batch_queue_capacity;
+	}
+
+	public void setBundle_batch_queue_capacity(Integer bundle_batch_queue_capacity) {
+		this.bundle_batch_queue_capacity = bundle_batch_queue_capacity;
+	}
+
+	public Boolean getBundle_batch_virtual_threads() {
+		return bundle_batch_virtual_threads;
+	}
+
+	public void setBundle_batch_virtual_threads(Boolean bundle_batch_virtual_threads) {
+		this.bundle_batch_virtual_threads = bundle_batch_virtual_threads;
+	}
+
 	public Set<String> getLocal_base_urls() {
 		return local_base_urls;
 	}
@@ -847,6 +889,38 @@ public class AppProperties {
 		this.store_meta_source_information = store_meta_source_information;
 	}
 
+	public AdmissionControl getAdmission_control() {
+		return admission_control;
+	}
+
+	public void setAdmission_control(AdmissionControl admission_control) {
+		this.admission_control = admission_control;
+	}
+
+	public Mcp getMcp() {
+		return mcp;
+	}
+
+	public void setMcp(Mcp mcp) {
+		this.mcp = mcp;
+	}
+
+	public SecondLevelCache getSecond_level_cache() {
+		return second_level_cache;
+	}
+
+	public void setSecond_level_cache(SecondLevelCache second_level_cache) {
+		this.second_level_cache = second_level_cache;
+	}
+
+	public ReadReplica getRead_replica() {
+		return read_replica;
+	}
+
+	public void setRead_replica(ReadReplica read_replica) {
+		this.read_replica = read_replica;
+	}
+
 	public static class Cors {
 		private Boolean allow_Credentials = true;
 		private List<String> allowed_origin = List.of("*");
@@ -868,6 +942,369 @@ public class AppProperties {
 		}
 	}
 
+	public static class AdmissionControl {
+
+		public enum CdsRejectionMode {
+			EMPTY_CARDS,
+			TOO_MANY_REQUESTS
+		}
+
+		private Boolean enabled = false;
+		private Integer initial_limit = 20;
+		private Integer min_limit = 2;
+		private Integer max_limit = 200;
+		private Double latency_tolerance = 2.0;
+		private Double backoff_ratio = 0.9;
+		private CdsRejectionMode cds_rejection_mode = CdsRejectionMode.EMPTY_CARDS;
+
+		public Boolean getEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(Boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Integer getInitial_limit() {
+			return initial_limit;
+		}
+
+		public void setInitial_limit(Integer initial_limit) {
+			this.initial_limit = initial_limit;
+		}
+
+		public Integer getMin_limit() {
+			return min_limit;
+		}
+
+		public void setMin_limit(Integer min_limit) {
+			this.min_limit = min_limit;
+		}
+
+		public Integer getMax_limit() {
+			return max_limit;
+		}
+
+		public void setMax_limit(Integer max_limit) {
+			this.max_limit = max_limit;
+		}
+
+		public Double getLatency_tolerance() {
+			return latency_tolerance;
+		}
+
+		public void setLatency_tolerance(Double latency_tolerance) {
+			this.latency_tolerance = latency_tolerance;
+		}
+
+		public Double getBackoff_ratio() {
+			return backoff_ratio;
+		}
+
+		public void setBackoff_ratio(Double backoff_ratio) {
+			this.backoff_ratio = backoff_ratio;
+		}
+
+		public CdsRejectionMode getCds_rejection_mode() {
+			return cds_rejection_mode;
+		}
+
+		public void setCds_rejection_mode(CdsRejectionMode cds_rejection_mode) {
+			this.cds_rejection_mode = cds_rejection_mode;
+		}
+	}
+
+	public static class SecondLevelCache {
+
+		private Boolean enabled = false;
+		private Boolean query_cache_enabled = false;
+		private Long query_cache_maximum_size = 1000L;
+		private Map<String, Region> regions = new LinkedHashMap<>();
+
+		public Boolean getEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(Boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Boolean getQuery_cache_enabled() {
+			return query_cache_enabled;
+		}
+
+		public void setQuery_cache_enabled(Boolean query_cache_enabled) {
+			this.query_cache_enabled = query_cache_enabled;
+		}
+
+		public Long getQuery_cache_maximum_size() {
+			return query_cache_maximum_size;
+		}
+
+		public void setQuery_cache_maximum_size(Long query_cache_maximum_size) {
+			this.query_cache_maximum_size = query_cache_maximum_size;
+		}
+
+		public Map<String, Region> getRegions() {
+			return regions;
+		}
+
+		public void setRegions(Map<String, Region> regions) {
+			this.regions = regions;
+		}
+
+		public static class Region {
+
+			private List<String> entities = new ArrayList<>();
+			private String concurrency_strategy = "read-write";
+			private Long maximum_size = 10_000L;
+			private Long expire_after_write_seconds = 0L;
+
+			public List<String> getEntities() {
+				return entities;
+			}
+
+			public void setEntities(List<String> entities) {
+				this.entities = entities;
+			}
+
+			public String getConcurrency_strategy() {
+				return concurrency_strategy;
+			}
+
+			public void setConcurrency_strategy(String concurrency_strategy) {
+				this.concurrency_strategy = concurrency_strategy;
+			}
+
+			public Long getMaximum_size() {
+				return maximum_size;
+			}
+
+			public void setMaximum_size(Long maximum_size) {
+				this.maximum_size = maximum_size;
+			}
+
+			public Long getExpire_after_write_seconds() {
+				return expire_after_write_seconds;
+			}
+
+			public void setExpire_after_write_seconds(Long expire_after_write_seconds) {
+				this.expire_after_write_seconds = expire_after_write_seconds;
+			}
+		}
+	}
+
+	public static class ReadReplica {
+
+		private Boolean enabled = false;
+		private List<Database> databases = new ArrayList<>();
+		private List<RestOperationTypeEnum> operations =
+				new ArrayList<>(List.of(RestOperationTypeEnum.READ, RestOperationTypeEnum.VREAD));
+
+		public Boolean getEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(Boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public List<Database> getDatabases() {
+			return databases;
+		}
+
+		public void setDatabases(List<Database> databases) {
+			this.databases = databases;
+		}
+
+		public List<RestOperationTypeEnum> getOperations() {
+			return operations;
+		}
+
+		public void setOperations(List<RestOperationTypeEnum> operations) {
+			this.operations = operations;
+		}
+
+		public static class Database {
+
+			private String url;
+			private String username;
+			private String password;
+			private String driver_class_name;
+			private Integer maximum_pool_size = 10;
+
+			public String getUrl() {
+				return url;
+			}
+
+			public void setUrl(String url) {
+				this.url = url;
+			}
+
+			public String getUsername() {
+				return username;
+			}
+
+			public void setUsername(String username) {
+				this.username = username;
+			}
+
+			public String getPassword() {
+				return password;
+			}
+
+			public void setPassword(String password) {
+				this.password = password;
+			}
+
+			public String getDriver_class_name() {
+				return driver_class_name;
+			}
+
+			public void setDriver_class_name(String driver_class_name) {
+				this.driver_class_name = driver_class_name;
+			}
+
+			public Integer getMaximum_pool_size() {
+				return maximum_pool_size;
+			}
+
+			public void setMaximum_pool_size(Integer maximum_pool_size) {
+				this.maximum_pool_size = maximum_pool_size;
+			}
+		}
+	}
+
+	public static class Mcp {
+
+		private Boolean direct_dispatch = false;
+		private Integer async_thread_cap = 16;
+		private Integer async_queued_task_cap = 256;
+		private Integer tool_timeout_seconds = 60;
+		private Boolean batch_enabled = true;
+		private Integer batch_parallelism = 8;
+		private Integer batch_queue_capacity = 64;
+		private Integer batch_max_requests = 50;
+		private Integer max_result_length = 262144;
+		private Boolean rate_limit_enabled = false;
+		private Double session_requests_per_second = 10.0;
+		private Integer session_burst = 20;
+		private Double tool_requests_per_second = 50.0;
+		private Integer tool_burst = 100;
+
+		public Boolean getDirect_dispatch() {
+			return direct_dispatch;
+		}
+
+		public void setDirect_dispatch(Boolean direct_dispatch) {
+			this.direct_dispatch = direct_dispatch;
+		}
+
+		public Integer getAsync_thread_cap() {
+			return async_thread_cap;
+		}
+
+		public void setAsync_thread_cap(Integer async_thread_cap) {
+			this.async_thread_cap = async_thread_cap;
+		}
+
+		public Integer getAsync_queued_task_cap() {
+			return async_queued_task_cap;
+		}
+
+		public void setAsync_queued_task_cap(Integer async_queued_task_cap) {
+			this.async_queued_task_cap = async_queued_task_cap;
+		}
+
+		public Integer getTool_timeout_seconds() {
+			return tool_timeout_seconds;
+		}
+
+		public void setTool_timeout_seconds(Integer tool_timeout_seconds) {
+			this.tool_timeout_seconds = tool_timeout_seconds;
+		}
+
+		public Boolean getBatch_enabled() {
+			return batch_enabled;
+		}
+
+		public void setBatch_enabled(Boolean batch_enabled) {
+			this.batch_enabled = batch_enabled;
+		}
+
+		public Integer getBatch_parallelism() {
+			return batch_parallelism;
+		}
+
+		public void setBatch_parallelism(Integer batch_parallelism) {
+			this.batch_parallelism = batch_parallelism;
+		}
+
+		public Integer getBatch_queue_capacity() {
+			return batch_queue_capacity;
+		}
+
+		public void setBatch_queue_capacity(Integer batch_queue_capacity) {
+			this.batch_queue_capacity = batch_queue_capacity;
+		}
+
+		public Integer getBatch_max_requests() {
+			return batch_max_requests;
+		}
+
+		public void setBatch_max_requests(Integer batch_max_requests) {
+			this.batch_max_requests = batch_max_requests;
+		}
+
+		public Integer getMax_result_length() {
+			return max_result_length;
+		}
+
+		public void setMax_result_length(Integer max_result_length) {
+			this.max_result_length = max_result_length;
+		}
+
+		public Boolean getRate_limit_enabled() {
+			return rate_limit_enabled;
+		}
+
+		public void setRate_limit_enabled(Boolean rate_limit_enabled) {
+			this.rate_limit_enabled = rate_limit_enabled;
+		}
+
+		public Double getSession_requests_per_second() {
+			return session_requests_per_second;
+		}
+
+		public void setSession_requests_per_second(Double session_requests_per_second) {
+			this.session_requests_per_second = session_requests_per_second;
+		}
+
+		public Integer getSession_burst() {
+			return session_burst;
+		}
+
+		public void setSession_burst(Integer session_burst) {
+			this.session_burst = session_burst;
+		}
+
+		public Double getTool_requests_per_second() {
+			return tool_requests_per_second;
+		}
+
+		public void setTool_requests_per_second(Double tool_requests_per_second) {
+			this.tool_requests_per_second = tool_requests_per_second;
+		}
+
+		public Integer getTool_burst() {
+			return tool_burst;
+		}
+
+		public void setTool_burst(Integer tool_burst) {
+			this.tool_burst = tool_burst;
+		}
+	}
+
 	public static class Logger {
 
 		private String name = "fhirtest.access";
@@ -0,0 +1,90 @@
+package ca.uhn.fhir.jpa.starter.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking concurrency limiter whose limit adapts to observed latency (AIMD). While request latency stays within
+ * {@code latencyTolerance} times the uncongested baseline, the limit grows by one per sample that found the limiter
+ * at least half utilised. When latency exceeds that threshold the limit is multiplied by {@code backoffRatio}.
+ * Requests that arrive while the limit is exhausted are rejected immediately rather than queued.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	// Weight given to a new sample when updating the uncongested latency baseline. Congested samples still move the
+	// baseline, only much more slowly, so that a permanent shift in latency does not pin the limit at its minimum.
+	private static final double BASELINE_SMOOTHING = 0.05;
+	private static final double CONGESTED_BASELINE_SMOOTHING = 0.005;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double latencyTolerance;
+	private final double backoffRatio;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int limit;
+
+	// Guarded by this
+	private double limitEstimate;
+	private double baselineNanos = -1;
+
+	public AdaptiveConcurrencyLimiter(
+			int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio) {
+		if (minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException(
+					"Invalid admission control limits: min " + minLimit + ", max " + maxLimit);
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTolerance = latencyTolerance;
+		this.backoffRatio = backoffRatio;
+		this.limitEstimate = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+		this.limit = (int) limitEstimate;
+	}
+
+	/**
+	 * @return {@code true} if a permit was taken; the caller must then call {@link #release(long)} exactly once
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	public void release(long latencyNanos) {
+		int inFlightAtRelease = inFlight.getAndDecrement();
+		onSample(latencyNanos, inFlightAtRelease);
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	private synchronized void onSample(long latencyNanos, int inFlightAtRelease) {
+		if (baselineNanos < 0) {
+			baselineNanos = latencyNanos;
+			return;
+		}
+
+		if (latencyNanos > baselineNanos * latencyTolerance) {
+			limitEstimate = Math.max(minLimit, limitEstimate * backoffRatio);
+			baselineNanos += (latencyNanos - baselineNanos) * CONGESTED_BASELINE_SMOOTHING;
+		} else {
+			// Only probe upwards when the current limit is actually being exercised
+			if (inFlightAtRelease * 2 >= limitEstimate) {
+				limitEstimate = Math.min(maxLimit, limitEstimate + 1);
+			}
+			baselineNanos += (latencyNanos - baselineNanos) * BASELINE_SMOOTHING;
+		}
+		limit = (int) limitEstimate;
+	}
+}
@@ -0,0 +1,19 @@
+package ca.uhn.fhir.jpa.starter.admission;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class AdmissionControlConfig {
+
+	@Bean
+	public AdmissionController admissionController(
+			AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		return new AdmissionController(
+				appProperties.getAdmission_control(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+}
@@ -0,0 +1,96 @@
+package ca.uhn.fhir.jpa.starter.admission;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out per-endpoint permits from a set of {@link AdaptiveConcurrencyLimiter}s. Used in front of the CDS Hooks
+ * servlet and the Da Vinci operation providers so that bursts of hook traffic are shed quickly instead of occupying
+ * every container thread.
+ */
+public class AdmissionController {
+
+	public static final String LIMIT_GAUGE = "admission.limit";
+	public static final String IN_FLIGHT_GAUGE = "admission.in_flight";
+	public static final String REJECTED_COUNTER = "admission.rejected";
+
+	// Endpoints beyond this many share a single limiter, so arbitrary request paths cannot grow the map without bound
+	static final int MAX_ENDPOINTS = 256;
+	static final String OVERFLOW_ENDPOINT = "other";
+
+	private static final Permit UNLIMITED = () -> {};
+
+	private final AppProperties.AdmissionControl properties;
+	private final MeterRegistry meterRegistry;
+	private final ConcurrentMap<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+	public AdmissionController(AppProperties.AdmissionControl properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+	}
+
+	public boolean isEnabled() {
+		return Boolean.TRUE.equals(properties.getEnabled());
+	}
+
+	/**
+	 * Attempts to admit a request for the given endpoint. Callers pass names from a bounded set, such as registered
+	 * services or operations; beyond {@link #MAX_ENDPOINTS} further names share one limiter and meter series.
+	 *
+	 * @return a permit that must be released when the request completes, or {@code null} if the request was rejected
+	 */
+	public Permit tryAcquire(String endpoint) {
+		if (!isEnabled()) {
+			return UNLIMITED;
+		}
+
+		String key = keyOf(endpoint);
+		AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(key, this::newLimiter);
+		if (!limiter.tryAcquire()) {
+			Counter.builder(REJECTED_COUNTER)
+					.description("Requests rejected by admission control")
+					.tag("endpoint", key)
+					.register(meterRegistry)
+					.increment();
+			return null;
+		}
+
+		long start = System.nanoTime();
+		return () -> limiter.release(System.nanoTime() - start);
+	}
+
+	/**
+	 * The limiter and meter tag for an endpoint; meters share the limiter's cap, so they are bounded the same way
+	 */
+	private String keyOf(String endpoint) {
+		return limiters.containsKey(endpoint) || limiters.size() < MAX_ENDPOINTS ? endpoint : OVERFLOW_ENDPOINT;
+	}
+
+	private AdaptiveConcurrencyLimiter newLimiter(String endpoint) {
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+				properties.getInitial_limit(),
+				properties.getMin_limit(),
+				properties.getMax_limit(),
+				properties.getLatency_tolerance(),
+				properties.getBackoff_ratio());
+		Gauge.builder(LIMIT_GAUGE, limiter, AdaptiveConcurrencyLimiter::getLimit)
+				.description("Current adaptive concurrency limit")
+				.tag("endpoint", endpoint)
+				.register(meterRegistry);
+		Gauge.builder(IN_FLIGHT_GAUGE, limiter, AdaptiveConcurrencyLimiter::getInFlight)
+				.description("Requests currently holding an admission permit")
+				.tag("endpoint", endpoint)
+				.register(meterRegistry);
+		return limiter;
+	}
+
+	@FunctionalInterface
+	public interface Permit {
+		void release();
+	}
+}
@@ -0,0 +1,130 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation for the CDS Hooks endpoint. Timers are published as percentile histograms so that
+ * per-service and per-hook latency can be aggregated across nodes in Prometheus.
+ */
+public class CdsHooksMetrics {
+
+	public static final String REQUEST_TIMER = "cds.hooks.request";
+	public static final String PHASE_TIMER = "cds.hooks.phase";
+	public static final String PREFETCH_TIMER = "cds.hooks.prefetch";
+	public static final String PREFETCH_CACHE_COUNTER = "cds.hooks.prefetch.cache";
+	public static final String PREFETCH_TIMEOUT_COUNTER = "cds.hooks.prefetch.timeout";
+
+	public static final String UNKNOWN = "unknown";
+
+	public enum Phase {
+		PARSE("parse"),
+		PREFETCH("prefetch"),
+		EVALUATE("evaluate"),
+		ENCODE("encode");
+
+		private final String name;
+
+		Phase(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	private final MeterRegistry meterRegistry;
+
+	// Prefetch runs inside ICdsServiceRegistry.callService, so the time spent fetching is accumulated per thread and
+	// subtracted from the evaluation phase by the servlet.
+	private final ThreadLocal<long[]> prefetchNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+	public CdsHooksMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+
+	public void recordRequest(String service, String hook, String outcome, long nanos) {
+		Timer.builder(REQUEST_TIMER)
+				.description("End-to-end latency of CDS Hooks service calls")
+				.tag("service", tagValue(service))
+				.tag("hook", tagValue(hook))
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(meterRegistry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordPhase(String service, String hook, Phase phase, long nanos) {
+		Timer.builder(PHASE_TIMER)
+				.description("Latency of the individual phases of a CDS Hooks service call")
+				.tag("service", tagValue(service))
+				.tag("hook", tagValue(hook))
+				.tag("phase", phase.getName())
+				.publishPercentileHistogram()
+				.register(meterRegistry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	public void recordPrefetch(String service, String hook, String prefetchKey, long nanos) {
+		Timer.builder(PREFETCH_TIMER)
+				.description("Latency of server-side prefetch queries per prefetch key")
+				.tag("service", tagValue(service))
+				.tag("hook", tagValue(hook))
+				.tag("key", tagValue(prefetchKey))
+				.publishPercentileHistogram()
+				.register(meterRegistry)
+				.record(nanos, TimeUnit.NANOSECONDS);
+		prefetchNanos.get()[0] += nanos;
+	}
+
+	public void prefetchHit(String service, String prefetchKey) {
+		prefetchCacheCounter(service, prefetchKey, "hit").increment();
+	}
+
+	public void prefetchMiss(String service, String prefetchKey) {
+		prefetchCacheCounter(service, prefetchKey, "miss").increment();
+	}
+
+	public void prefetchTimeout(String service, String prefetchKey) {
+		Counter.builder(PREFETCH_TIMEOUT_COUNTER)
+				.description("Server-side prefetch queries that timed out")
+				.tag("service", tagValue(service))
+				.tag("key", tagValue(prefetchKey))
+				.register(meterRegistry)
+				.increment();
+	}
+
+	/**
+	 * Clears the prefetch time accumulated on the current thread. Call before handing a request to the registry.
+	 */
+	public void resetPrefetchNanos() {
+		prefetchNanos.get()[0] = 0;
+	}
+
+	/**
+	 * Returns and clears the prefetch time accumulated on the current thread since the last reset.
+	 */
+	public long drainPrefetchNanos() {
+		long[] holder = prefetchNanos.get();
+		long nanos = holder[0];
+		holder[0] = 0;
+		return nanos;
+	}
+
+	private Counter prefetchCacheCounter(String service, String prefetchKey, String result) {
+		return Counter.builder(PREFETCH_CACHE_COUNTER)
+				.description("Prefetch keys supplied by the client (hit) or fetched by the server (miss)")
+				.tag("service", tagValue(service))
+				.tag("key", tagValue(prefetchKey))
+				.tag("result", result)
+				.register(meterRegistry);
+	}
+
+	private static String tagValue(String value) {
+		return value == null || value.isBlank() ? UNKNOWN : value;
+	}
+}
@@ -3,6 +3,9 @@ package ca.uhn.fhir.jpa.starter.cdshooks;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "hapi.fhir.cdshooks")
 public class CdsHooksProperties {
@@ -26,4 +29,147 @@ public class CdsHooksProperties {
 	public void setClientIdHeaderName(String clientIdHeaderName) {
 		this.clientIdHeaderName = clientIdHeaderName;
 	}
+
+	private Journal journal = new Journal();
+
+	public Journal getJournal() {
+		return journal;
+	}
+
+	public void setJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	private CoverageCache coverageCache = new CoverageCache();
+
+	public CoverageCache getCoverageCache() {
+		return coverageCache;
+	}
+
+	public void setCoverageCache(CoverageCache coverageCache) {
+		this.coverageCache = coverageCache;
+	}
+
+	public static class CoverageCache {
+		private boolean enabled = false;
+		private List<String> services = new ArrayList<>();
+		private long ttlSeconds = 3600;
+		private long maximumSize = 10000;
+		private long refreshIntervalSeconds = 300;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public List<String> getServices() {
+			return services;
+		}
+
+		public void setServices(List<String> services) {
+			this.services = services;
+		}
+
+		public long getTtlSeconds() {
+			return ttlSeconds;
+		}
+
+		public void setTtlSeconds(long ttlSeconds) {
+			this.ttlSeconds = ttlSeconds;
+		}
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public long getRefreshIntervalSeconds() {
+			return refreshIntervalSeconds;
+		}
+
+		public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+			this.refreshIntervalSeconds = refreshIntervalSeconds;
+		}
+	}
+
+	public static class Journal {
+		private boolean enabled = true;
+		private double sampleRate = 0.01;
+		private boolean alwaysJournalErrors = true;
+		private int maxBodyLength = 16384;
+		private int queueCapacity = 1000;
+		private String file;
+		private long maxFileSize = 10 * 1024 * 1024;
+		private int maxFiles = 5;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getSampleRate() {
+			return sampleRate;
+		}
+
+		public void setSampleRate(double sampleRate) {
+			this.sampleRate = sampleRate;
+		}
+
+		public boolean isAlwaysJournalErrors() {
+			return alwaysJournalErrors;
+		}
+
+		public void setAlwaysJournalErrors(boolean alwaysJournalErrors) {
+			this.alwaysJournalErrors = alwaysJournalErrors;
+		}
+
+		public int getMaxBodyLength() {
+			return maxBodyLength;
+		}
+
+		public void setMaxBodyLength(int maxBodyLength) {
+			this.maxBodyLength = maxBodyLength;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public void setFile(String file) {
+			this.file = file;
+		}
+
+		public long getMaxFileSize() {
+			return maxFileSize;
+		}
+
+		public void setMaxFileSize(long maxFileSize) {
+			this.maxFileSize = maxFileSize;
+		}
+
+		public int getMaxFiles() {
+			return maxFiles;
+		}
+
+		public void setMaxFiles(int maxFiles) {
+			this.maxFiles = maxFiles;
+		}
+	}
 }
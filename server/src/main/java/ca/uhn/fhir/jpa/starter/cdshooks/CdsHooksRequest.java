@@ -4,4 +4,18 @@ import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @JsonIgnoreProperties({"extension"})
-public class CdsHooksRequest extends CdsServiceRequestJson {}
+public class CdsHooksRequest extends CdsServiceRequestJson {
+
+	private boolean prefetchCacheRecorded;
+
+	/**
+	 * Marks the prefetch cache results of this request as recorded.
+	 *
+	 * @return {@code true} the first time it is called, {@code false} on later augmentations of the same request
+	 */
+	public boolean markPrefetchCacheRecorded() {
+		boolean first = !prefetchCacheRecorded;
+		prefetchCacheRecorded = true;
+		return first;
+	}
+}
@@ -0,0 +1,244 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled journal of CDS Hooks request and response bodies. Entries are handed to a bounded queue and written by a
+ * single background thread, either to a size-rotated file or to the {@code ...cdshooks.journal} logger, so the request
+ * thread never waits on disk I/O. When the queue is full, entries are dropped rather than applying back-pressure.
+ */
+public class CdsHooksRequestJournal implements AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(CdsHooksRequestJournal.class);
+	private static final Logger journalLogger =
+			LoggerFactory.getLogger(CdsHooksRequestJournal.class.getPackageName() + ".journal");
+
+	private static final Entry POISON = new Entry(null, null, null, null, null, null, 0, null, null);
+
+	private final CdsHooksProperties.Journal settings;
+	private final BlockingQueue<Entry> queue;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final AtomicLong dropped = new AtomicLong();
+	private final Thread writerThread;
+	private final RotatingFileWriter fileWriter;
+
+	public record Entry(
+			Instant timestamp,
+			String service,
+			String hook,
+			String hookInstance,
+			String fhirServer,
+			String outcome,
+			long durationMillis,
+			String requestBody,
+			String responseBody) {}
+
+	public CdsHooksRequestJournal(CdsHooksProperties.Journal settings) {
+		this.settings = settings;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+		this.fileWriter = settings.getFile() == null || settings.getFile().isBlank()
+				? null
+				: new RotatingFileWriter(Path.of(settings.getFile()), settings.getMaxFileSize(), settings.getMaxFiles());
+		if (settings.isEnabled()) {
+			this.writerThread = new Thread(this::drain, "cds-hooks-journal");
+			this.writerThread.setDaemon(true);
+			this.writerThread.start();
+		} else {
+			this.writerThread = null;
+		}
+	}
+
+	/**
+	 * Records a completed call if it is selected by sampling (or failed and errors are always journaled). Bodies are
+	 * truncated on the calling thread; encoding and I/O happen on the journal thread.
+	 */
+	public void record(
+			String service,
+			String hook,
+			String hookInstance,
+			String fhirServer,
+			String outcome,
+			long durationMillis,
+			String requestBody,
+			String responseBody) {
+		if (writerThread == null || !isSelected(outcome)) {
+			return;
+		}
+
+		Entry entry = new Entry(
+				Instant.now(),
+				service,
+				hook,
+				hookInstance,
+				fhirServer,
+				outcome,
+				durationMillis,
+				truncate(requestBody),
+				truncate(responseBody));
+		if (!queue.offer(entry) && dropped.getAndIncrement() == 0) {
+			logger.warn("cds-hooks journal queue is full; entries are being dropped");
+		}
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		if (writerThread == null) {
+			return;
+		}
+		if (!queue.offer(POISON)) {
+			writerThread.interrupt();
+		}
+		writerThread.join(TimeUnit.SECONDS.toMillis(5));
+	}
+
+	private boolean isSelected(String outcome) {
+		if (settings.isAlwaysJournalErrors() && !"success".equals(outcome)) {
+			return true;
+		}
+		double sampleRate = settings.getSampleRate();
+		return sampleRate >= 1.0 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+	}
+
+	private String truncate(String body) {
+		int max = settings.getMaxBodyLength();
+		if (body == null || max < 0 || body.length() <= max) {
+			return body;
+		}
+		return body.substring(0, max) + "...[truncated " + (body.length() - max) + " chars]";
+	}
+
+	private void drain() {
+		while (true) {
+			Entry entry;
+			try {
+				entry = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			if (entry == POISON) {
+				break;
+			}
+			try {
+				write(encode(entry));
+			} catch (Exception e) {
+				logger.warn("Failed to write cds-hooks journal entry: {}", e.toString());
+			}
+		}
+		if (fileWriter != null) {
+			fileWriter.close();
+		}
+	}
+
+	private String encode(Entry entry) throws JsonProcessingException {
+		ObjectNode node = objectMapper.createObjectNode();
+		node.put("timestamp", entry.timestamp().toString());
+		node.put("service", entry.service());
+		node.put("hook", entry.hook());
+		node.put("hookInstance", entry.hookInstance());
+		node.put("fhirServer", entry.fhirServer());
+		node.put("outcome", entry.outcome());
+		node.put("durationMillis", entry.durationMillis());
+		node.put("request", entry.requestBody());
+		node.put("response", entry.responseBody());
+		return objectMapper.writeValueAsString(node);
+	}
+
+	private void write(String line) throws IOException {
+		if (fileWriter != null) {
+			fileWriter.writeLine(line);
+		} else {
+			journalLogger.info(line);
+		}
+	}
+
+	/**
+	 * Appends lines to a file and rolls it to {@code file.1 ... file.N} once it exceeds the configured size. Only
+	 * accessed from the journal thread.
+	 */
+	static class RotatingFileWriter {
+		private final Path file;
+		private final long maxFileSize;
+		private final int maxFiles;
+		private BufferedWriter writer;
+		private long size;
+
+		RotatingFileWriter(Path file, long maxFileSize, int maxFiles) {
+			this.file = file;
+			this.maxFileSize = maxFileSize;
+			this.maxFiles = Math.max(1, maxFiles);
+		}
+
+		void writeLine(String line) throws IOException {
+			if (writer == null) {
+				open();
+			}
+			byte[] bytes = (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+			if (size > 0 && size + bytes.length > maxFileSize) {
+				rotate();
+			}
+			writer.write(line);
+			writer.newLine();
+			writer.flush();
+			size += bytes.length;
+		}
+
+		void close() {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					logger.warn("Failed to close cds-hooks journal file {}: {}", file, e.toString());
+				}
+				writer = null;
+			}
+		}
+
+		private void open() throws IOException {
+			if (file.getParent() != null) {
+				Files.createDirectories(file.getParent());
+			}
+			writer = Files.newBufferedWriter(
+					file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+			size = Files.size(file);
+		}
+
+		private void rotate() throws IOException {
+			close();
+			Files.deleteIfExists(rolledFile(maxFiles));
+			for (int i = maxFiles - 1; i >= 1; i--) {
+				Path source = rolledFile(i);
+				if (Files.exists(source)) {
+					Files.move(source, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			Files.move(file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+			open();
+		}
+
+		private Path rolledFile(int index) {
+			return file.resolveSibling(file.getFileName() + "." + index);
+		}
+	}
+}
@@ -1,11 +1,14 @@
 package ca.uhn.fhir.jpa.starter.cdshooks;
 
 import ca.uhn.fhir.jpa.starter.AppProperties;
+import ca.uhn.fhir.jpa.starter.admission.AdmissionController;
 import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
 import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceMethod;
 import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceRegistry;
 import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseJson;
 import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServicesJson;
+import ca.uhn.hapi.fhir.cdshooks.svc.prefetch.CdsPrefetchSvc;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonParser;
@@ -22,6 +25,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 
 import java.io.IOException;
 import java.io.Serial;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.opencds.cqf.fhir.cr.hapi.config.test.TestCdsHooksConfig.CDS_HOOKS_OBJECT_MAPPER_FACTORY;
@@ -33,6 +37,8 @@ public class CdsHooksServlet extends HttpServlet {
 	@Serial
 	private static final long serialVersionUID = 1L;
 
+	private static final String EMPTY_CARDS_RESPONSE = "{\n  \"cards\": []\n}";
+
 	@Autowired
 	private AppProperties appProperties;
 
@@ -46,6 +52,21 @@ public class CdsHooksServlet extends HttpServlet {
 	@Qualifier(CDS_HOOKS_OBJECT_MAPPER_FACTORY)
 	ObjectMapper objectMapper;
 
+	@Autowired
+	CdsHooksMetrics cdsHooksMetrics;
+
+	@Autowired
+	AdmissionController admissionController;
+
+	@Autowired
+	CdsHooksRequestJournal requestJournal;
+
+	@Autowired
+	CoverageDecisionCache coverageDecisionCache;
+
+	@Autowired
+	CdsPrefetchSvc cdsPrefetchSvc;
+
 	protected ProviderConfiguration getProviderConfiguration() {
 		return this.providerConfiguration;
 	}
@@ -80,44 +101,128 @@ public class CdsHooksServlet extends HttpServlet {
 	@Override
 	protected void doPost(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
+		long requestStart = System.nanoTime();
+		String service = null;
+		String hook = null;
+		String serviceTag = null;
+		String hookTag = null;
+		String outcome = "error";
+		AdmissionController.Permit permit = null;
+		String requestJson = null;
+		String jsonResponse = null;
+		CdsHooksRequest cdsHooksRequest = null;
 		try {
 			if (request.getContentType() == null || !request.getContentType().startsWith("application/json")) {
 				throw new ServletException(String.format(
 						"Invalid content type %s. Please use application/json.", request.getContentType()));
 			}
-			logger.info(request.getRequestURI());
-			String service = request.getPathInfo().replace("/", "");
+			logger.debug(request.getRequestURI());
+			service = request.getPathInfo().replace("/", "");
+			// Meters are tagged only with registered services and their hooks, so that requests naming made-up ones
+			// cannot add histogram series without bound
+			if (cdsServiceRegistry.getCdsServiceMethod(service) instanceof ICdsServiceMethod registered) {
+				serviceTag = service;
+				hookTag = registered.getCdsServiceJson().getHook();
+			}
 
-			String requestJson = request.getReader().lines().collect(Collectors.joining());
-			CdsHooksRequest cdsHooksRequest = objectMapper.readValue(requestJson, CdsHooksRequest.class);
-			logRequestInfo(cdsHooksRequest, requestJson);
+			// Unregistered services share one limiter, like their meters
+			permit = admissionController.tryAcquire(
+					"cds-services/" + (serviceTag != null ? serviceTag : CdsHooksMetrics.UNKNOWN));
+			if (permit == null) {
+				rejectRequest(response);
+				outcome = "rejected";
+				return;
+			}
 
-			CdsServiceResponseJson serviceResponseJson = cdsServiceRegistry.callService(service, cdsHooksRequest);
+			long phaseStart = System.nanoTime();
+			requestJson = request.getReader().lines().collect(Collectors.joining());
+			cdsHooksRequest = objectMapper.readValue(requestJson, CdsHooksRequest.class);
+			hook = cdsHooksRequest.getHook();
+			cdsHooksMetrics.recordPhase(
+					serviceTag, hookTag, CdsHooksMetrics.Phase.PARSE, System.nanoTime() - phaseStart);
+			logRequestInfo(cdsHooksRequest);
+
+			cdsHooksMetrics.resetPrefetchNanos();
+			phaseStart = System.nanoTime();
+			CdsServiceResponseJson serviceResponseJson = null;
+			if (coverageDecisionCache.isCacheable(service)
+					&& cdsServiceRegistry.getCdsServiceMethod(service) instanceof ICdsServiceMethod serviceMethod) {
+				// The decision key depends on the Coverage in prefetch; callService skips keys resolved here
+				cdsPrefetchSvc.augmentRequest(cdsHooksRequest, serviceMethod);
+				serviceResponseJson = coverageDecisionCache.lookup(service, cdsHooksRequest);
+			}
+			if (serviceResponseJson == null) {
+				serviceResponseJson = cdsServiceRegistry.callService(service, cdsHooksRequest);
+				coverageDecisionCache.store(service, cdsHooksRequest, serviceResponseJson);
+			}
+			long prefetchNanos = cdsHooksMetrics.drainPrefetchNanos();
+			cdsHooksMetrics.recordPhase(serviceTag, hookTag, CdsHooksMetrics.Phase.PREFETCH, prefetchNanos);
+			cdsHooksMetrics.recordPhase(
+					serviceTag,
+					hookTag,
+					CdsHooksMetrics.Phase.EVALUATE,
+					System.nanoTime() - phaseStart - prefetchNanos);
 
 			// Using GSON pretty print format as Jackson's is ugly
-			String jsonResponse = new GsonBuilder()
+			phaseStart = System.nanoTime();
+			jsonResponse = new GsonBuilder()
 					.disableHtmlEscaping()
 					.setPrettyPrinting()
 					.create()
 					.toJson(JsonParser.parseString(objectMapper.writeValueAsString(serviceResponseJson)));
-			logger.info(jsonResponse);
+			cdsHooksMetrics.recordPhase(
+					serviceTag, hookTag, CdsHooksMetrics.Phase.ENCODE, System.nanoTime() - phaseStart);
 			response.setContentType("text/json;charset=UTF-8");
 			response.getWriter().println(jsonResponse);
+			outcome = "success";
 		} catch (BaseServerResponseException e) {
 			ErrorHandling.handleError(response, "ERROR: Exception connecting to remote server.", e, appProperties);
 			logger.error(e.toString());
 		} catch (Exception e) {
 			logger.error(e.toString());
 			throw new ServletException("ERROR: Exception in cds-hooks processing.", e);
+		} finally {
+			if (permit != null) {
+				permit.release();
+			}
+			long elapsed = System.nanoTime() - requestStart;
+			cdsHooksMetrics.recordRequest(serviceTag, hookTag, outcome, elapsed);
+			if (!"rejected".equals(outcome)) {
+				requestJournal.record(
+						service,
+						hook,
+						cdsHooksRequest != null ? cdsHooksRequest.getHookInstance() : null,
+						cdsHooksRequest != null ? cdsHooksRequest.getFhirServer() : null,
+						outcome,
+						TimeUnit.NANOSECONDS.toMillis(elapsed),
+						requestJson,
+						jsonResponse);
+			}
 		}
 	}
 
-	private void logRequestInfo(CdsServiceRequestJson request, String jsonRequest) {
-		logger.info(jsonRequest);
-		logger.info("cds-hooks hook instance: {}", request.getHookInstance());
-		logger.info("cds-hooks local server address: {}", appProperties.getServer_address());
-		logger.info("cds-hooks fhir server address: {}", request.getFhirServer());
-		logger.info(
+	private void rejectRequest(HttpServletResponse response) throws IOException {
+		ErrorHandling.setAccessControlHeaders(response, appProperties);
+		if (appProperties.getAdmission_control().getCds_rejection_mode()
+				== AppProperties.AdmissionControl.CdsRejectionMode.TOO_MANY_REQUESTS) {
+			response.setStatus(429);
+			response.setHeader("Retry-After", "1");
+			response.getWriter().println("Too many concurrent cds-hooks requests; retry later.");
+		} else {
+			// An empty card list tells the EHR there is nothing to show, which is preferable to blocking order entry
+			response.setContentType("text/json;charset=UTF-8");
+			response.getWriter().println(EMPTY_CARDS_RESPONSE);
+		}
+	}
+
+	private void logRequestInfo(CdsServiceRequestJson request) {
+		if (!logger.isDebugEnabled()) {
+			return;
+		}
+		logger.debug("cds-hooks hook instance: {}", request.getHookInstance());
+		logger.debug("cds-hooks local server address: {}", appProperties.getServer_address());
+		logger.debug("cds-hooks fhir server address: {}", request.getFhirServer());
+		logger.debug(
 				"cds-hooks cql_logging_enabled: {}",
 				this.getProviderConfiguration().getCqlLoggingEnabled());
 	}
@@ -0,0 +1,267 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import ca.uhn.fhir.jpa.cache.IResourceChangeEvent;
+import ca.uhn.fhir.jpa.cache.IResourceChangeListener;
+import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseSystemActionJson;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Coverage;
+import org.hl7.fhir.r4.model.DateType;
+import org.hl7.fhir.r4.model.DeviceRequest;
+import org.hl7.fhir.r4.model.DomainResource;
+import org.hl7.fhir.r4.model.Encounter;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.MedicationRequest;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.ServiceRequest;
+import org.hl7.fhir.r4.model.StringType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Memoizes CRD coverage-information decisions per (service, payer plan, order code, place of service). A cached
+ * decision is replayed onto the current draft order, with the patient-specific sub-extensions (coverage reference,
+ * assertion id and date) rewritten for the current request, so that repeat order-sign hooks skip rule evaluation.
+ * <p>
+ * Only responses that consist solely of coverage-information system actions for a single draft order are cached;
+ * responses carrying cards or other system actions, or decisions that reference a satisfied prior authorization, are
+ * always evaluated. The key reads the Coverage and Encounter from prefetch, so {@link #lookup} must be called after
+ * the request's prefetch has been resolved. The cache is cleared whenever a PlanDefinition, Library or ValueSet
+ * changes.
+ */
+public class CoverageDecisionCache implements IResourceChangeListener {
+	private static final Logger logger = LoggerFactory.getLogger(CoverageDecisionCache.class);
+
+	public static final String COVERAGE_INFORMATION_URL =
+			"http://hl7.org/fhir/us/davinci-crd/StructureDefinition/ext-coverage-information";
+
+	private static final String COVERAGE = "coverage";
+	private static final String COVERAGE_ASSERTION_ID = "coverage-assertion-id";
+	private static final String DATE = "date";
+	private static final String SATISFIED_PA_ID = "satisfied-pa-id";
+
+	private final CdsHooksProperties.CoverageCache settings;
+	private final Cache<Key, List<Extension>> cache;
+
+	public record Key(String service, String plan, String code, String placeOfService) {}
+
+	private record Order(DomainResource resource, CodeableConcept code, CodeableConcept placeOfService) {}
+
+	public CoverageDecisionCache(CdsHooksProperties.CoverageCache settings) {
+		this.settings = settings;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(settings.getMaximumSize())
+				.expireAfterWrite(Duration.ofSeconds(settings.getTtlSeconds()))
+				.recordStats()
+				.build();
+	}
+
+	public Cache<Key, List<Extension>> getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return a response built from a cached decision, or {@code null} if the request must be evaluated
+	 */
+	public CdsServiceResponseJson lookup(String service, CdsServiceRequestJson request) {
+		if (!isCacheable(service)) {
+			return null;
+		}
+		Order order = singleDraftOrder(request);
+		Coverage coverage = findCoverage(request);
+		Key key = keyFor(service, order, coverage, request);
+		if (key == null) {
+			return null;
+		}
+
+		List<Extension> decision = cache.getIfPresent(key);
+		if (decision == null) {
+			return null;
+		}
+
+		DomainResource updated = order.resource().copy();
+		updated.getExtension().removeIf(e -> COVERAGE_INFORMATION_URL.equals(e.getUrl()));
+		for (Extension extension : decision) {
+			updated.addExtension(personalize(extension, coverage));
+		}
+		CdsServiceResponseSystemActionJson action = new CdsServiceResponseSystemActionJson();
+		action.setType("update");
+		action.setResource(updated);
+		CdsServiceResponseJson response = new CdsServiceResponseJson();
+		response.addServiceAction(action);
+		return response;
+	}
+
+	public void store(String service, CdsServiceRequestJson request, CdsServiceResponseJson response) {
+		if (!isCacheable(service) || response == null) {
+			return;
+		}
+		if (response.getCards() != null && !response.getCards().isEmpty()) {
+			return;
+		}
+		Order order = singleDraftOrder(request);
+		Key key = keyFor(service, order, findCoverage(request), request);
+		if (key == null || response.getServiceActions() == null) {
+			return;
+		}
+
+		List<Extension> decision = new ArrayList<>();
+		for (CdsServiceResponseSystemActionJson action : response.getServiceActions()) {
+			if (!"update".equals(action.getType())
+					|| !(action.getResource() instanceof DomainResource resource)
+					|| !sameResource(resource, order.resource())) {
+				// Anything beyond the coverage decision is request specific and cannot be replayed
+				return;
+			}
+			for (Extension extension : resource.getExtensionsByUrl(COVERAGE_INFORMATION_URL)) {
+				if (extension.getExtensionByUrl(SATISFIED_PA_ID) != null) {
+					return;
+				}
+				decision.add(extension.copy());
+			}
+		}
+		if (!decision.isEmpty()) {
+			cache.put(key, List.copyOf(decision));
+		}
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public void handleInit(Collection<IIdType> theResourceIds) {
+		// Nothing is cached before the first hook call
+	}
+
+	@Override
+	public void handleChange(IResourceChangeEvent theResourceChangeEvent) {
+		logger.info("Rules changed; clearing {} cached coverage decisions", cache.estimatedSize());
+		cache.invalidateAll();
+	}
+
+	public boolean isCacheable(String service) {
+		return settings.isEnabled()
+				&& (settings.getServices().isEmpty() || settings.getServices().contains(service));
+	}
+
+	private Key keyFor(String service, Order order, Coverage coverage, CdsServiceRequestJson request) {
+		if (order == null || coverage == null || order.code() == null) {
+			return null;
+		}
+		String plan = planOf(coverage);
+		String code = codeKey(order.code());
+		if (plan.isEmpty() || code.isEmpty()) {
+			return null;
+		}
+		CodeableConcept pos = order.placeOfService();
+		String placeOfService = pos != null ? codeKey(pos) : encounterClass(request);
+		return new Key(service, plan, code, placeOfService);
+	}
+
+	private Order singleDraftOrder(CdsServiceRequestJson request) {
+		if (request.getContext() == null
+				|| !(request.getContext().getResource("draftOrders") instanceof Bundle draftOrders)
+				|| draftOrders.getEntry().size() != 1) {
+			return null;
+		}
+		IBaseResource resource = draftOrders.getEntryFirstRep().getResource();
+		if (resource instanceof ServiceRequest serviceRequest) {
+			return new Order(
+					serviceRequest,
+					serviceRequest.getCode(),
+					serviceRequest.hasLocationCode() ? serviceRequest.getLocationCodeFirstRep() : null);
+		} else if (resource instanceof MedicationRequest medicationRequest
+				&& medicationRequest.hasMedicationCodeableConcept()) {
+			return new Order(medicationRequest, medicationRequest.getMedicationCodeableConcept(), null);
+		} else if (resource instanceof DeviceRequest deviceRequest && deviceRequest.hasCodeCodeableConcept()) {
+			return new Order(deviceRequest, deviceRequest.getCodeCodeableConcept(), null);
+		}
+		return null;
+	}
+
+	private Coverage findCoverage(CdsServiceRequestJson request) {
+		for (String key : request.getPrefetchKeys()) {
+			IBaseResource resource = request.getPrefetch(key);
+			if (resource instanceof Coverage coverage) {
+				return coverage;
+			}
+			if (resource instanceof Bundle bundle) {
+				for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+					if (entry.getResource() instanceof Coverage coverage) {
+						return coverage;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private String encounterClass(CdsServiceRequestJson request) {
+		for (String key : request.getPrefetchKeys()) {
+			if (request.getPrefetch(key) instanceof Encounter encounter && encounter.hasClass_()) {
+				Coding encounterClass = encounter.getClass_();
+				return encounterClass.getSystem() + "|" + encounterClass.getCode();
+			}
+		}
+		return "";
+	}
+
+	private static String planOf(Coverage coverage) {
+		String payor = coverage.getPayor().stream()
+				.map(Reference::getReference)
+				.filter(r -> r != null)
+				.sorted()
+				.collect(Collectors.joining(","));
+		String plan = coverage.getClass_().stream()
+				.filter(c -> c.getType().getCoding().stream().anyMatch(t -> "plan".equals(t.getCode())))
+				.map(Coverage.ClassComponent::getValue)
+				.findFirst()
+				.orElse("");
+		return payor.isEmpty() && plan.isEmpty() ? "" : payor + "#" + plan;
+	}
+
+	private static String codeKey(CodeableConcept concept) {
+		return concept.getCoding().stream()
+				.map(c -> c.getSystem() + "|" + c.getCode())
+				.sorted()
+				.collect(Collectors.joining(","));
+	}
+
+	private static boolean sameResource(DomainResource a, DomainResource b) {
+		return a.fhirType().equals(b.fhirType())
+				&& a.getIdElement().getIdPart() != null
+				&& a.getIdElement().getIdPart().equals(b.getIdElement().getIdPart());
+	}
+
+	private static Extension personalize(Extension cached, Coverage coverage) {
+		Extension extension = cached.copy();
+		for (Extension child : extension.getExtension()) {
+			switch (child.getUrl()) {
+				case COVERAGE -> child.setValue(
+						new Reference(coverage.getIdElement().toUnqualifiedVersionless()));
+				case COVERAGE_ASSERTION_ID -> child.setValue(
+						new StringType(UUID.randomUUID().toString()));
+				case DATE -> child.setValue(DateType.today());
+				default -> {
+					// Decision content is shared across patients
+				}
+			}
+		}
+		return extension;
+	}
+}
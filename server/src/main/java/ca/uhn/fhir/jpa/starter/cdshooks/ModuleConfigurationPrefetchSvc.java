@@ -7,6 +7,7 @@ import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestAuthorizationJson;
 import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
 import ca.uhn.fhir.rest.client.api.IClientInterceptor;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.client.exceptions.FhirClientConnectionException;
 import ca.uhn.fhir.rest.client.interceptor.BearerTokenAuthInterceptor;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.BundleUtil;
@@ -19,9 +20,11 @@ import ca.uhn.hapi.fhir.cdshooks.svc.prefetch.CdsPrefetchFhirClientSvc;
 import ca.uhn.hapi.fhir.cdshooks.svc.prefetch.CdsPrefetchSvc;
 import ca.uhn.hapi.fhir.cdshooks.svc.prefetch.CdsResolutionStrategySvc;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
+import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -29,6 +32,7 @@ public class ModuleConfigurationPrefetchSvc extends CdsPrefetchSvc {
 
 	private final CdsPrefetchFhirClientSvc myResourcePrefetchFhirClient;
 	private final FhirContext fhirContext;
+	private final CdsHooksMetrics cdsHooksMetrics;
 
 	private static final String PATIENT = "Patient/{{context.patientId}}";
 	private static final String ACTIVE_MEDICATION_ORDERS =
@@ -74,7 +78,8 @@ public class ModuleConfigurationPrefetchSvc extends CdsPrefetchSvc {
 			CdsPrefetchDaoSvc theResourcePrefetchDao,
 			CdsPrefetchFhirClientSvc theResourcePrefetchFhirClient,
 			ICdsHooksDaoAuthorizationSvc theCdsHooksDaoAuthorizationSvc,
-			IInterceptorBroadcaster theInterceptorBroadcaster) {
+			IInterceptorBroadcaster theInterceptorBroadcaster,
+			CdsHooksMetrics theCdsHooksMetrics) {
 		super(
 				theCdsResolutionStrategySvc,
 				theResourcePrefetchDao,
@@ -83,12 +88,17 @@ public class ModuleConfigurationPrefetchSvc extends CdsPrefetchSvc {
 				theInterceptorBroadcaster);
 		myResourcePrefetchFhirClient = theResourcePrefetchFhirClient;
 		fhirContext = theResourcePrefetchDao.getFhirContext();
+		cdsHooksMetrics = theCdsHooksMetrics;
 	}
 
 	@Override
 	public void augmentRequest(CdsServiceRequestJson theCdsServiceRequestJson, ICdsServiceMethod theServiceMethod) {
 		CdsServiceJson serviceSpec = theServiceMethod.getCdsServiceJson();
 		Set<String> missingPrefetch = this.findMissingPrefetch(serviceSpec, theCdsServiceRequestJson);
+		// The servlet augments coverage-cached requests before callService does it again, when nothing is missing
+		if (!(theCdsServiceRequestJson instanceof CdsHooksRequest request) || request.markPrefetchCacheRecorded()) {
+			recordPrefetchCacheResults(serviceSpec, missingPrefetch);
+		}
 		if (!missingPrefetch.isEmpty()) {
 			Calendar calendar = Calendar.getInstance();
 			calendar.setTime(new Date());
@@ -100,41 +110,81 @@ public class ModuleConfigurationPrefetchSvc extends CdsPrefetchSvc {
 			IGenericClient client = buildClient(theCdsServiceRequestJson);
 
 			String patientUrl = PATIENT.replace("{{context.patientId}}", patientId.replace("Patient/", ""));
-			IBaseResource patient = resourceFromUrl(client, patientUrl);
+			IBaseResource patient = timedResourceFromUrl(client, serviceSpec, "item1", patientUrl);
 			String thePatientId = patient.getIdElement().getValue();
 			if (resourceExists(patient)) {
 				theCdsServiceRequestJson.addPrefetch("item1", patient);
 			}
 
 			String activeMedsUrl = ACTIVE_MEDICATION_ORDERS.replace("{{context.patientId}}", patientId);
-			IBaseResource meds = resourceFromUrl(client, activeMedsUrl);
+			IBaseResource meds = timedResourceFromUrl(client, serviceSpec, "item2", activeMedsUrl);
 			if (resourceExists(meds)) {
 				theCdsServiceRequestJson.addPrefetch("item2", meds);
 			}
-			IBaseResource conditions =
-					resourceFromUrl(client, ACTIVE_CATEGORIZED_CONDITIONS.replace("{{context.patientId}}", patientId));
+			IBaseResource conditions = timedResourceFromUrl(
+					client,
+					serviceSpec,
+					"item3",
+					ACTIVE_CATEGORIZED_CONDITIONS.replace("{{context.patientId}}", patientId));
 			if (resourceExists(conditions)) {
 				theCdsServiceRequestJson.addPrefetch("item3", conditions);
 			}
-			IBaseResource encounters = resourceFromUrl(
+			IBaseResource encounters = timedResourceFromUrl(
 					client,
+					serviceSpec,
+					"item4",
 					ENCOUNTERS_IN_PAST_YEAR.replace("{{today}}", aYearAgo).replace("{{context.patientId}}", patientId));
 			if (resourceExists(encounters)) {
 				theCdsServiceRequestJson.addPrefetch("item4", encounters);
 			}
-			IBaseResource serviceReqs = resourceFromUrl(
-					client, ACTIVE_OR_COMPLETED_SERVICE_REQUESTS.replace("{{context.patientId}}", patientId));
+			IBaseResource serviceReqs = timedResourceFromUrl(
+					client,
+					serviceSpec,
+					"item5",
+					ACTIVE_OR_COMPLETED_SERVICE_REQUESTS.replace("{{context.patientId}}", patientId));
 			if (resourceExists(serviceReqs)) {
 				theCdsServiceRequestJson.addPrefetch("item5", serviceReqs);
 			}
-			IBaseResource labs = resourceFromUrl(
-					client, UDS_LABS_POST.replace("{{today}}", aYearAgo).replace("{{context.patientId}}", patientId));
+			IBaseResource labs = timedResourceFromUrl(
+					client,
+					serviceSpec,
+					"item6",
+					UDS_LABS_POST.replace("{{today}}", aYearAgo).replace("{{context.patientId}}", patientId));
 			if (resourceExists(labs)) {
 				theCdsServiceRequestJson.addPrefetch("item6", labs);
 			}
 		}
 	}
 
+	private void recordPrefetchCacheResults(CdsServiceJson theServiceSpec, Set<String> theMissingPrefetch) {
+		if (theServiceSpec.getPrefetch() == null) {
+			return;
+		}
+		for (String key : theServiceSpec.getPrefetch().keySet()) {
+			if (theMissingPrefetch.contains(key)) {
+				cdsHooksMetrics.prefetchMiss(theServiceSpec.getId(), key);
+			} else {
+				cdsHooksMetrics.prefetchHit(theServiceSpec.getId(), key);
+			}
+		}
+	}
+
+	private IBaseResource timedResourceFromUrl(
+			IGenericClient client, CdsServiceJson theServiceSpec, String thePrefetchKey, String theUrl) {
+		long start = System.nanoTime();
+		try {
+			return resourceFromUrl(client, theUrl);
+		} catch (FhirClientConnectionException e) {
+			if (ExceptionUtils.indexOfThrowable(e, SocketTimeoutException.class) != -1) {
+				cdsHooksMetrics.prefetchTimeout(theServiceSpec.getId(), thePrefetchKey);
+			}
+			throw e;
+		} finally {
+			cdsHooksMetrics.recordPrefetch(
+					theServiceSpec.getId(), theServiceSpec.getHook(), thePrefetchKey, System.nanoTime() - start);
+		}
+	}
+
 	public IBaseResource resourceFromUrl(IGenericClient client, String theUrl) {
 		UrlUtil.UrlParts parts = UrlUtil.parseUrl(theUrl);
 		String resourceType = parts.getResourceType();
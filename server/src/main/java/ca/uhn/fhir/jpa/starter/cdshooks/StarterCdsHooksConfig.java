@@ -1,13 +1,19 @@
 package ca.uhn.fhir.jpa.starter.cdshooks;
 
+import ca.uhn.fhir.jpa.cache.IResourceChangeListenerRegistry;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.jpa.starter.cr.*;
 import ca.uhn.hapi.fhir.cdshooks.api.ICdsHooksDaoAuthorizationSvc;
 import ca.uhn.hapi.fhir.cdshooks.config.CdsHooksConfig;
 import ca.uhn.hapi.fhir.cdshooks.svc.CdsHooksContextBooter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.opencds.cqf.fhir.cr.hapi.cdshooks.CdsCrSettings;
 import org.opencds.cqf.fhir.cr.hapi.config.CrCdsHooksConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -15,6 +21,8 @@ import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @Conditional({CdsHooksConfigCondition.class, CrConfigCondition.class})
 @Import({RepositoryConfig.class, CrCdsHooksConfig.class, CrCommonConfig.class, CdsHooksConfig.class})
@@ -44,6 +52,42 @@ public class StarterCdsHooksConfig {
 		return new ProviderConfiguration(cdsProperties, cqlRuntimeProperties);
 	}
 
+	@Bean
+	public CdsHooksMetrics cdsHooksMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+		return new CdsHooksMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+
+	@Bean
+	public CdsHooksRequestJournal cdsHooksRequestJournal(CdsHooksProperties cdsHooksProperties) {
+		return new CdsHooksRequestJournal(cdsHooksProperties.getJournal());
+	}
+
+	@Bean
+	public CoverageDecisionCache coverageDecisionCache(
+			CdsHooksProperties cdsHooksProperties,
+			IResourceChangeListenerRegistry resourceChangeListenerRegistry,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		CoverageDecisionCache coverageDecisionCache = new CoverageDecisionCache(cdsHooksProperties.getCoverageCache());
+		CaffeineCacheMetrics.monitor(
+				meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+				coverageDecisionCache.getCache(),
+				"cds.hooks.coverage_decisions");
+		if (cdsHooksProperties.getCoverageCache().isEnabled()) {
+			// Writes on this node are announced to the listener as they commit; the interval only bounds how long a
+			// change made on another node goes unnoticed, and each poll reloads every watched resource
+			long refreshIntervalMillis =
+					TimeUnit.SECONDS.toMillis(cdsHooksProperties.getCoverageCache().getRefreshIntervalSeconds());
+			for (String resourceType : new String[] {"PlanDefinition", "Library", "ValueSet"}) {
+				resourceChangeListenerRegistry.registerResourceResourceChangeListener(
+						resourceType,
+						SearchParameterMap.newSynchronous(),
+						coverageDecisionCache,
+						refreshIntervalMillis);
+			}
+		}
+		return coverageDecisionCache;
+	}
+
 	@Bean
 	ICdsHooksDaoAuthorizationSvc cdsHooksDaoAuthorizationSvc() {
 		return new CdsHooksDaoAuthorizationSvc();
@@ -0,0 +1,59 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.Map;
+
+/**
+ * JDBC settings applied when {@code bulk_import_jdbc_tuning} is set, so that the resource, version and index rows
+ * written by an import reach the database in large batches. They apply to every write on the server, not only to
+ * imports, which is why they are not tied to {@code bulk_import_enabled}.
+ * <ul>
+ *     <li>Hibernate orders inserts and updates by entity and uses {@code bulk_import_jdbc_batch_size}. Without ordering
+ *     a batch ends whenever the next row belongs to another table, and an imported resource alternates between
+ *     resource, version and index tables on every row.</li>
+ *     <li>On PostgreSQL the driver rewrites each batch into multi-row {@code INSERT} statements
+ *     ({@code reWriteBatchedInserts}), so a batch costs one round trip instead of one per row.</li>
+ * </ul>
+ */
+public class BulkImportWriteTuning {
+	private static final Logger ourLog = LoggerFactory.getLogger(BulkImportWriteTuning.class);
+
+	static final String REWRITE_BATCHED_INSERTS = "reWriteBatchedInserts";
+
+	private BulkImportWriteTuning() {}
+
+	public static void configure(AppProperties theAppProperties, Map<String, Object> theJpaProperties) {
+		theJpaProperties.put(AvailableSettings.ORDER_INSERTS, "true");
+		theJpaProperties.put(AvailableSettings.ORDER_UPDATES, "true");
+		if (theAppProperties.getBulk_import_jdbc_batch_size() != null) {
+			theJpaProperties.put(
+					AvailableSettings.STATEMENT_BATCH_SIZE,
+					String.valueOf(theAppProperties.getBulk_import_jdbc_batch_size()));
+		}
+	}
+
+	/**
+	 * Enables batch rewriting on the PostgreSQL connection pool before it opens its first connection
+	 */
+	public static BeanPostProcessor postgresBatchRewriter() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessBeforeInitialization(Object theBean, String theBeanName) {
+				if (theBean instanceof HikariDataSource dataSource
+						&& dataSource.getJdbcUrl() != null
+						&& dataSource.getJdbcUrl().startsWith("jdbc:postgresql:")
+						&& !dataSource.getDataSourceProperties().containsKey(REWRITE_BATCHED_INSERTS)) {
+					dataSource.addDataSourceProperty(REWRITE_BATCHED_INSERTS, "true");
+					ourLog.info("Enabled {} on data source {} for bulk import", REWRITE_BATCHED_INSERTS, theBeanName);
+				}
+				return theBean;
+			}
+		};
+	}
+}
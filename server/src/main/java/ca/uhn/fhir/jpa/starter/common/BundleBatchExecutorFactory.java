@@ -0,0 +1,139 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the executor on which the entries of a batch Bundle are processed in parallel. The pool starts
+ * {@code bundle_batch_pool_size} threads, queues up to {@code bundle_batch_queue_capacity} entries, and only grows
+ * towards {@code bundle_batch_pool_max_size} once that queue is full; beyond that entries run on the requesting thread.
+ * With {@code bundle_batch_virtual_threads} each entry gets its own virtual thread instead, when the runtime has them;
+ * at most {@code bundle_batch_pool_max_size} of them run at once, and further entries run on the requesting thread, so
+ * that a large Bundle cannot open more database connections than the pool would.
+ * <p>
+ * The executor is registered with Micrometer as {@code bundle.batch}: {@code executor.queued} reports the queue depth,
+ * {@code executor} the processing time of each entry and {@code executor.idle} the time it waited in the queue.
+ */
+public class BundleBatchExecutorFactory {
+	private static final Logger ourLog = LoggerFactory.getLogger(BundleBatchExecutorFactory.class);
+
+	public static final String METRIC_NAME = "bundle.batch";
+
+	private BundleBatchExecutorFactory() {}
+
+	public static TaskExecutor create(AppProperties theAppProperties, MeterRegistry theMeterRegistry) {
+		ExecutorService executor = null;
+		if (theAppProperties.getBundle_batch_virtual_threads()) {
+			executor = newVirtualThreadExecutor();
+			if (executor != null) {
+				executor = callerRunsBeyond(executor, theAppProperties.getBundle_batch_pool_max_size());
+			}
+		}
+		if (executor == null) {
+			executor = newPooledExecutor(
+					theAppProperties.getBundle_batch_pool_size(),
+					theAppProperties.getBundle_batch_pool_max_size(),
+					theAppProperties.getBundle_batch_queue_capacity());
+		}
+		return new ConcurrentTaskExecutor(ExecutorServiceMetrics.monitor(theMeterRegistry, executor, METRIC_NAME));
+	}
+
+	static ThreadPoolExecutor newPooledExecutor(int theCoreSize, int theMaxSize, int theQueueCapacity) {
+		int core = Math.max(1, theCoreSize);
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("bundle-batch-");
+		threadFactory.setDaemon(true);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				core,
+				Math.max(core, theMaxSize),
+				60,
+				TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, theQueueCapacity)),
+				threadFactory,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Runs at most {@code theMaxRunning} tasks on {@code theExecutor} at once, and any further task on the thread that
+	 * submits it, like {@link ThreadPoolExecutor.CallerRunsPolicy} does for the pool
+	 */
+	static ExecutorService callerRunsBeyond(ExecutorService theExecutor, int theMaxRunning) {
+		Semaphore running = new Semaphore(Math.max(1, theMaxRunning));
+		return new AbstractExecutorService() {
+			@Override
+			public void execute(Runnable theCommand) {
+				if (!running.tryAcquire()) {
+					theCommand.run();
+					return;
+				}
+				try {
+					theExecutor.execute(() -> {
+						try {
+							theCommand.run();
+						} finally {
+							running.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					running.release();
+					throw e;
+				}
+			}
+
+			@Override
+			public void shutdown() {
+				theExecutor.shutdown();
+			}
+
+			@Override
+			public List<Runnable> shutdownNow() {
+				return theExecutor.shutdownNow();
+			}
+
+			@Override
+			public boolean isShutdown() {
+				return theExecutor.isShutdown();
+			}
+
+			@Override
+			public boolean isTerminated() {
+				return theExecutor.isTerminated();
+			}
+
+			@Override
+			public boolean awaitTermination(long theTimeout, TimeUnit theUnit) throws InterruptedException {
+				return theExecutor.awaitTermination(theTimeout, theUnit);
+			}
+		};
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		// The server is built for Java 17, so virtual threads are only reachable reflectively on a newer runtime
+		try {
+			return (ExecutorService)
+					Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			ourLog.warn(
+					"Virtual threads are not available on Java {}; using a thread pool for batch Bundles instead",
+					Runtime.version().feature());
+			return null;
+		}
+	}
+}
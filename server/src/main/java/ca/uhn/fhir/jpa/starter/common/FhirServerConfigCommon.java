@@ -4,6 +4,7 @@ import ca.uhn.fhir.jpa.api.config.JpaStorageSettings;
 import ca.uhn.fhir.jpa.binstore.DatabaseBinaryContentStorageSvcImpl;
 import ca.uhn.fhir.jpa.binstore.FilesystemBinaryStorageSvcImpl;
 import ca.uhn.fhir.jpa.config.HibernatePropertiesProvider;
+import ca.uhn.fhir.jpa.dao.TransactionProcessor;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings;
 import ca.uhn.fhir.jpa.model.config.PartitionSettings.CrossPartitionReferenceMode;
 import ca.uhn.fhir.jpa.model.config.SubscriptionSettings;
@@ -16,9 +17,13 @@ import ca.uhn.fhir.jpa.subscription.match.deliver.email.IEmailSender;
 import ca.uhn.fhir.rest.server.mail.MailConfig;
 import ca.uhn.fhir.rest.server.mail.MailSvc;
 import com.google.common.base.Strings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.hl7.fhir.r4.model.Bundle.BundleType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.env.YamlPropertySourceLoader;
 import org.springframework.context.annotation.*;
@@ -273,7 +278,7 @@ public class FhirServerConfigCommon {
 
 		// Parallel Batch GET execution settings
 		jpaStorageSettings.setBundleBatchPoolSize(appProperties.getBundle_batch_pool_size());
-		jpaStorageSettings.setBundleBatchPoolSize(appProperties.getBundle_batch_pool_max_size());
+		jpaStorageSettings.setBundleBatchMaxPoolSize(appProperties.getBundle_batch_pool_max_size());
 
 		// Set store meta source information
 		ourLog.debug("Server configured to Store Meta Source: {}", appProperties.getStore_meta_source_information());
@@ -306,6 +311,19 @@ public class FhirServerConfigCommon {
 		return jpaStorageSettings;
 	}
 
+	/**
+	 * Replaces the transaction processor's built-in pool for parallel batch Bundle entries with one sized by
+	 * {@code bundle_batch_*} and instrumented for Micrometer
+	 */
+	@Bean
+	public SmartInitializingSingleton bundleBatchExecutorInstaller(
+			AppProperties appProperties,
+			ObjectProvider<MeterRegistry> meterRegistry,
+			TransactionProcessor transactionProcessor) {
+		return () -> transactionProcessor.setTaskExecutor(BundleBatchExecutorFactory.create(
+				appProperties, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry)));
+	}
+
 	@Bean
 	public YamlPropertySourceLoader yamlPropertySourceLoader() {
 		return new YamlPropertySourceLoader();
@@ -0,0 +1,133 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Turns on the Hibernate second-level cache, backed by Caffeine's in-process JCache provider, when
+ * {@code hapi.fhir.second_level_cache.enabled} is set. Each configured region becomes a bounded JCache cache, and the
+ * entities listed for it are cached there through {@code hibernate.classcache.*} settings, so no HAPI entity needs a
+ * {@code @Cache} annotation. Every region reports gets, hits, misses, puts and evictions to Micrometer.
+ * <p>
+ * The query cache keeps its results in its own bounded region; the update-timestamps region that Hibernate uses to
+ * detect stale query results is left unbounded, as Hibernate requires.
+ * <p>
+ * The regions live in this JVM only and are not invalidated by writes made on other nodes, so the default
+ * {@code resource} region is only safe for a single server in front of the database.
+ */
+public class HibernateSecondLevelCache {
+	private static final Logger ourLog = LoggerFactory.getLogger(HibernateSecondLevelCache.class);
+
+	static final URI CACHE_MANAGER_URI = URI.create("urn:hapi-fhir:second-level-cache");
+	static final String QUERY_RESULTS_REGION = "default-query-results-region";
+	static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+	private HibernateSecondLevelCache() {}
+
+	/**
+	 * Adds the second-level cache settings to {@code theJpaProperties}, replacing the defaults that disable it
+	 */
+	public static void configure(
+			AppProperties.SecondLevelCache theSettings,
+			Map<String, Object> theJpaProperties,
+			MeterRegistry theMeterRegistry) {
+		// A dedicated manager, so that regions never mix with other users of the provider's default one
+		CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+				.getCacheManager(CACHE_MANAGER_URI, HibernateSecondLevelCache.class.getClassLoader());
+
+		Map<String, AppProperties.SecondLevelCache.Region> regions =
+				theSettings.getRegions().isEmpty() ? defaultRegions() : theSettings.getRegions();
+		regions.forEach((name, region) -> {
+			Cache<Object, Object> cache =
+					createRegion(cacheManager, name, region.getMaximum_size(), region.getExpire_after_write_seconds());
+			JCacheMetrics.monitor(theMeterRegistry, cache);
+			for (String entity : region.getEntities()) {
+				// Value format is "usage,region"
+				String key = AvailableSettings.CLASS_CACHE_PREFIX + "." + entity;
+				theJpaProperties.put(key, region.getConcurrency_strategy() + "," + name);
+			}
+			ourLog.info("Second-level cache region {} holds {}", name, region.getEntities());
+		});
+
+		if (theSettings.getQuery_cache_enabled()) {
+			JCacheMetrics.monitor(
+					theMeterRegistry,
+					createRegion(cacheManager, QUERY_RESULTS_REGION, theSettings.getQuery_cache_maximum_size(), 0L));
+			JCacheMetrics.monitor(theMeterRegistry, createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, null, 0L));
+		}
+
+		theJpaProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+		theJpaProperties.put(AvailableSettings.USE_QUERY_CACHE, String.valueOf(theSettings.getQuery_cache_enabled()));
+		theJpaProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+		theJpaProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+	}
+
+	private static Cache<Object, Object> createRegion(
+			CacheManager theCacheManager, String theName, Long theMaximumSize, Long theExpireAfterWriteSeconds) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		if (theMaximumSize != null) {
+			configuration.setMaximumSize(OptionalLong.of(theMaximumSize));
+		}
+		if (theExpireAfterWriteSeconds != null && theExpireAfterWriteSeconds > 0) {
+			configuration.setExpireAfterWrite(
+					OptionalLong.of(TimeUnit.SECONDS.toNanos(theExpireAfterWriteSeconds)));
+		}
+		configuration.setStatisticsEnabled(true);
+
+		// A region left by an earlier configuration is only reused when its bounds still match
+		Cache<Object, Object> existing = theCacheManager.getCache(theName);
+		if (existing != null) {
+			CaffeineConfiguration<?, ?> current = existing.getConfiguration(CaffeineConfiguration.class);
+			if (Objects.equals(current.getMaximumSize(), configuration.getMaximumSize())
+					&& Objects.equals(current.getExpireAfterWrite(), configuration.getExpireAfterWrite())) {
+				return existing;
+			}
+			ourLog.info("Recreating second-level cache region {} with new settings", theName);
+			theCacheManager.destroyCache(theName);
+		}
+		return theCacheManager.createCache(theName, configuration);
+	}
+
+	/**
+	 * Regions used when none are configured: stored resources and terminology, which Hibernate loads by id. Entities
+	 * that HAPI only reads through queries gain nothing from the entity cache, and resource history bodies are left
+	 * out because they would fill the heap.
+	 */
+	static Map<String, AppProperties.SecondLevelCache.Region> defaultRegions() {
+		Map<String, AppProperties.SecondLevelCache.Region> regions = new LinkedHashMap<>();
+		regions.put("resource", region("ca.uhn.fhir.jpa.model.entity.ResourceTable"));
+		regions.put(
+				"terminology",
+				region(
+						"ca.uhn.fhir.jpa.entity.TermCodeSystem",
+						"ca.uhn.fhir.jpa.entity.TermCodeSystemVersion",
+						"ca.uhn.fhir.jpa.entity.TermConcept",
+						"ca.uhn.fhir.jpa.entity.TermValueSet",
+						"ca.uhn.fhir.jpa.entity.TermConceptMap"));
+		return regions;
+	}
+
+	private static AppProperties.SecondLevelCache.Region region(String... theEntities) {
+		AppProperties.SecondLevelCache.Region region = new AppProperties.SecondLevelCache.Region();
+		region.setEntities(List.of(theEntities));
+		return region;
+	}
+}
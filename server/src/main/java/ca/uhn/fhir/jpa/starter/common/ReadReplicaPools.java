@@ -0,0 +1,49 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Connection pools for the databases listed under {@code hapi.fhir.read_replica.databases}. The pools are read-only
+ * and are closed with the application context.
+ */
+public class ReadReplicaPools implements AutoCloseable {
+	private static final Logger ourLog = LoggerFactory.getLogger(ReadReplicaPools.class);
+
+	private final List<HikariDataSource> pools = new ArrayList<>();
+
+	public ReadReplicaPools(AppProperties.ReadReplica theSettings) {
+		List<AppProperties.ReadReplica.Database> databases = theSettings.getDatabases();
+		for (int i = 0; i < databases.size(); i++) {
+			AppProperties.ReadReplica.Database database = databases.get(i);
+			HikariConfig config = new HikariConfig();
+			config.setPoolName("read-replica-" + i);
+			config.setJdbcUrl(database.getUrl());
+			config.setUsername(database.getUsername());
+			config.setPassword(database.getPassword());
+			if (database.getDriver_class_name() != null) {
+				config.setDriverClassName(database.getDriver_class_name());
+			}
+			config.setMaximumPoolSize(database.getMaximum_pool_size());
+			config.setReadOnly(true);
+			pools.add(new HikariDataSource(config));
+			ourLog.info("Read-only transactions may be served by read replica {}", database.getUrl());
+		}
+	}
+
+	public List<DataSource> dataSources() {
+		return List.copyOf(pools);
+	}
+
+	@Override
+	public void close() {
+		pools.forEach(HikariDataSource::close);
+	}
+}
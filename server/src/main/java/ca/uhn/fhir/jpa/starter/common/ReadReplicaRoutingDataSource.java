@@ -0,0 +1,80 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+/**
+ * Sends connections for read-only transactions to the read replicas, round robin, and everything else to the primary
+ * database. Routing is opt-in per thread: only read-only transactions begun while {@link #allowReplicaReads()} is in
+ * effect use a replica, so HAPI's own read-only work (the search cache in {@code HFJ_SEARCH}, paging, background jobs)
+ * keeps reading the primary it writes to. {@link ReadReplicaRoutingInterceptor} opts in for configured operations.
+ * <p>
+ * The transaction's read-only flag is only published once the transaction has begun, after the transaction manager
+ * has asked for a connection, so the router is always used behind a {@link LazyConnectionDataSourceProxy}: the physical
+ * connection, and with it the choice of database, is deferred until the first statement runs.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+	static final String PRIMARY = "primary";
+	static final String REPLICA = "replica-";
+
+	private static final ThreadLocal<Boolean> ourReplicaReadsAllowed = ThreadLocal.withInitial(() -> false);
+
+	private final int replicaCount;
+	private final AtomicInteger next = new AtomicInteger();
+
+	private ReadReplicaRoutingDataSource(DataSource thePrimary, List<DataSource> theReplicas) {
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, thePrimary);
+		for (int i = 0; i < theReplicas.size(); i++) {
+			targets.put(REPLICA + i, theReplicas.get(i));
+		}
+		this.replicaCount = theReplicas.size();
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(thePrimary);
+		afterPropertiesSet();
+	}
+
+	/**
+	 * @return a data source routing between {@code thePrimary} and {@code theReplicas}, or {@code thePrimary} itself
+	 * when there are no replicas
+	 */
+	public static DataSource create(DataSource thePrimary, List<DataSource> theReplicas) {
+		if (theReplicas.isEmpty()) {
+			return thePrimary;
+		}
+		return new LazyConnectionDataSourceProxy(new ReadReplicaRoutingDataSource(thePrimary, theReplicas));
+	}
+
+	/**
+	 * Lets read-only transactions on the current thread use a replica until {@link #clearReplicaReads()} is called
+	 */
+	public static void allowReplicaReads() {
+		ourReplicaReadsAllowed.set(true);
+	}
+
+	public static void clearReplicaReads() {
+		ourReplicaReadsAllowed.remove();
+	}
+
+	static boolean isReplicaReadAllowed() {
+		return ourReplicaReadsAllowed.get();
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (ourReplicaReadsAllowed.get()
+				&& TransactionSynchronizationManager.isActualTransactionActive()
+				&& TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return REPLICA + Math.floorMod(next.getAndIncrement(), replicaCount);
+		}
+		return PRIMARY;
+	}
+}
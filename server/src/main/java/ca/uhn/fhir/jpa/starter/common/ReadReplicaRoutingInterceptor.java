@@ -0,0 +1,40 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Opts the request thread in to {@link ReadReplicaRoutingDataSource replica reads} for the operations listed under
+ * {@code hapi.fhir.read_replica.operations}, and out again when the request completes. Operations that page through
+ * the search cache, such as searches and history, must not be listed: their results are written to the primary and
+ * would not yet be visible on a replica.
+ */
+@Interceptor
+public class ReadReplicaRoutingInterceptor {
+
+	private final Set<RestOperationTypeEnum> operations = EnumSet.noneOf(RestOperationTypeEnum.class);
+
+	public ReadReplicaRoutingInterceptor(Collection<RestOperationTypeEnum> theOperations) {
+		operations.addAll(theOperations);
+	}
+
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+	public void incomingRequestPreHandled(RestOperationTypeEnum theOperation) {
+		if (operations.contains(theOperation)) {
+			ReadReplicaRoutingDataSource.allowReplicaReads();
+		} else {
+			ReadReplicaRoutingDataSource.clearReplicaReads();
+		}
+	}
+
+	@Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+	public void processingCompleted() {
+		ReadReplicaRoutingDataSource.clearReplicaReads();
+	}
+}
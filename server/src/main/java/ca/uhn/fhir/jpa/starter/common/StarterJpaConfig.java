@@ -77,6 +77,8 @@ import ca.uhn.fhir.rest.server.util.ISearchParamRegistry;
 import ca.uhn.fhir.validation.IValidatorModule;
 import ca.uhn.fhir.validation.ResultSeverityEnum;
 import com.google.common.base.Strings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.persistence.EntityManagerFactory;
 import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
 import org.hibernate.cfg.AvailableSettings;
@@ -85,6 +87,8 @@ import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
@@ -153,7 +157,10 @@ public class StarterJpaConfig {
 			DataSource myDataSource,
 			ConfigurableListableBeanFactory myConfigurableListableBeanFactory,
 			FhirContext theFhirContext,
-			JpaStorageSettings theStorageSettings) {
+			JpaStorageSettings theStorageSettings,
+			AppProperties theAppProperties,
+			ObjectProvider<MeterRegistry> theMeterRegistry,
+			ObjectProvider<ReadReplicaPools> theReadReplicaPools) {
 		LocalContainerEntityManagerFactoryBean entityManagerFactoryBean =
 				HapiEntityManagerFactoryUtil.newEntityManagerFactory(
 						myConfigurableListableBeanFactory, theFhirContext, theStorageSettings);
@@ -186,19 +193,54 @@ public class StarterJpaConfig {
 
 		entityManagerFactoryBean.setPersistenceUnitName("HAPI_PU");
 		entityManagerFactoryBean.setJpaPropertyMap(theJpaProperties.getProperties());
-		entityManagerFactoryBean.setDataSource(myDataSource);
+		ReadReplicaPools readReplicaPools = theReadReplicaPools.getIfAvailable();
+		entityManagerFactoryBean.setDataSource(
+				readReplicaPools != null
+						? ReadReplicaRoutingDataSource.create(myDataSource, readReplicaPools.dataSources())
+						: myDataSource);
+
+		if (theAppProperties.getBulk_import_jdbc_tuning()) {
+			BulkImportWriteTuning.configure(theAppProperties, entityManagerFactoryBean.getJpaPropertyMap());
+		}
+
+		if (theAppProperties.getSecond_level_cache().getEnabled()) {
+			HibernateSecondLevelCache.configure(
+					theAppProperties.getSecond_level_cache(),
+					entityManagerFactoryBean.getJpaPropertyMap(),
+					theMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+		}
 
 		return entityManagerFactoryBean;
 	}
 
 	@Bean
 	@Primary
-	public JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+	public JpaTransactionManager transactionManager(
+			EntityManagerFactory entityManagerFactory,
+			DataSource dataSource,
+			ObjectProvider<ReadReplicaPools> readReplicaPools) {
 		JpaTransactionManager retVal = new JpaTransactionManager();
 		retVal.setEntityManagerFactory(entityManagerFactory);
+		if (readReplicaPools.getIfAvailable() != null) {
+			// Expose the transaction's connection under the primary data source too, so plain JDBC access through it
+			// joins the JPA transaction instead of opening a second connection
+			retVal.setDataSource(dataSource);
+		}
 		return retVal;
 	}
 
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir", name = "bulk_import_jdbc_tuning", havingValue = "true")
+	public static BeanPostProcessor bulkImportPostgresBatchRewriter() {
+		return BulkImportWriteTuning.postgresBatchRewriter();
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(prefix = "hapi.fhir.read_replica", name = "enabled", havingValue = "true")
+	public ReadReplicaPools readReplicaPools(AppProperties appProperties) {
+		return new ReadReplicaPools(appProperties.getRead_replica());
+	}
+
 	@Bean
 	public IHSearchSortHelper hSearchSortHelper(ISearchParamRegistry mySearchParamRegistry) {
 		return new HSearchSortHelperImpl(mySearchParamRegistry);
@@ -516,6 +558,11 @@ public class StarterJpaConfig {
 			fhirServer.registerInterceptor(new UserRequestRetryVersionConflictsInterceptor());
 		}
 
+		if (appProperties.getRead_replica().getEnabled()) {
+			fhirServer.registerInterceptor(
+					new ReadReplicaRoutingInterceptor(appProperties.getRead_replica().getOperations()));
+		}
+
 		// register custom providers
 		registerCustomProviders(fhirServer, appContext, appProperties.getCustomProviderClasses());
 
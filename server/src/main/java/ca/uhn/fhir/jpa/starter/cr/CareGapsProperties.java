@@ -8,6 +8,8 @@ import org.springframework.context.annotation.Configuration;
 public class CareGapsProperties {
 	private String reporter = "default";
 	private String section_author = "default";
+	private Boolean job_enabled = false;
+	private Integer job_chunk_size = 100;
 
 	public String getReporter() {
 		return reporter;
@@ -24,4 +26,20 @@ public class CareGapsProperties {
 	public void setSection_author(String section_author) {
 		this.section_author = section_author;
 	}
+
+	public Boolean getJob_enabled() {
+		return job_enabled;
+	}
+
+	public void setJob_enabled(Boolean job_enabled) {
+		this.job_enabled = job_enabled;
+	}
+
+	public Integer getJob_chunk_size() {
+		return job_chunk_size;
+	}
+
+	public void setJob_chunk_size(Integer job_chunk_size) {
+		this.job_chunk_size = job_chunk_size;
+	}
 }
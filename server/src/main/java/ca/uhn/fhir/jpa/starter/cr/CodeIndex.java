@@ -0,0 +1,95 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Set of (system, code) pairs stored as 64-bit hashes in an open-addressing table of primitive longs, so that a
+ * membership test costs one hash computation and a few array reads, with no allocation and no per-entry objects.
+ * <p>
+ * Two distinct pairs are treated as equal only if their 64-bit hashes collide; for an expansion of n codes the chance
+ * of any false positive is about n / 2<sup>64</sup>.
+ */
+public final class CodeIndex {
+
+	private static final long EMPTY = 0L;
+
+	private final long[] slots;
+	private final int mask;
+	private final int size;
+
+	private CodeIndex(long[] theSlots, int theSize) {
+		this.slots = theSlots;
+		this.mask = theSlots.length - 1;
+		this.size = theSize;
+	}
+
+	public static <T> CodeIndex of(
+			Collection<T> theCodes, Function<T, String> theSystem, Function<T, String> theCode) {
+		// Keep the table at most half full so probe sequences stay short
+		int capacity = Integer.highestOneBit(Math.max(2, theCodes.size() * 2 - 1)) << 1;
+		long[] slots = new long[capacity];
+		int size = 0;
+		for (T code : theCodes) {
+			if (code != null && insert(slots, hash(theSystem.apply(code), theCode.apply(code)))) {
+				size++;
+			}
+		}
+		return new CodeIndex(slots, size);
+	}
+
+	public boolean contains(String theSystem, String theCode) {
+		long hash = hash(theSystem, theCode);
+		for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+			long slot = slots[i];
+			if (slot == hash) {
+				return true;
+			}
+			if (slot == EMPTY) {
+				return false;
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private static boolean insert(long[] theSlots, long theHash) {
+		int mask = theSlots.length - 1;
+		for (int i = (int) theHash & mask; ; i = (i + 1) & mask) {
+			long slot = theSlots[i];
+			if (slot == theHash) {
+				return false;
+			}
+			if (slot == EMPTY) {
+				theSlots[i] = theHash;
+				return true;
+			}
+		}
+	}
+
+	static long hash(String theSystem, String theCode) {
+		// FNV-1a over "system|code", finished with the MurmurHash3 mixer to spread the low bits used as the slot
+		long h = 0xcbf29ce484222325L;
+		h = mix(h, theSystem);
+		h = (h ^ '|') * 0x100000001b3L;
+		h = mix(h, theCode);
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h == EMPTY ? 1L : h;
+	}
+
+	private static long mix(long theHash, String theValue) {
+		long h = theHash;
+		if (theValue != null) {
+			for (int i = 0; i < theValue.length(); i++) {
+				h = (h ^ theValue.charAt(i)) * 0x100000001b3L;
+			}
+		}
+		return h;
+	}
+}
@@ -0,0 +1,58 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Admin endpoints for the global CQL caches: {@code GET /control/cql-caches} reports size, hits, misses and evictions,
+ * {@code DELETE} flushes one cache (or all of them), and {@code POST /control/cql-caches/warm} preloads ValueSet
+ * expansions.
+ */
+@RestController
+@RequestMapping("control")
+@Conditional({CrConfigCondition.class})
+public class CqlCacheController {
+	private final CqlGlobalCaches theCqlGlobalCaches;
+	private final ValueSetCacheWarmer theValueSetCacheWarmer;
+
+	public CqlCacheController(CqlGlobalCaches theCqlGlobalCaches, ValueSetCacheWarmer theValueSetCacheWarmer) {
+		this.theCqlGlobalCaches = theCqlGlobalCaches;
+		this.theValueSetCacheWarmer = theValueSetCacheWarmer;
+	}
+
+	@RequestMapping(
+			value = CqlCacheController.CACHES,
+			method = RequestMethod.GET,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Map<String, CqlGlobalCaches.Statistics> getStatistics() {
+		return theCqlGlobalCaches.statistics();
+	}
+
+	@RequestMapping(
+			value = CqlCacheController.CACHES,
+			method = RequestMethod.DELETE,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Map<String, CqlGlobalCaches.Statistics> flush(@RequestParam(name = "cache", required = false) String cache) {
+		try {
+			theCqlGlobalCaches.invalidate(cache);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+		}
+		return theCqlGlobalCaches.statistics();
+	}
+
+	@RequestMapping(
+			value = CqlCacheController.CACHES + "/warm",
+			method = RequestMethod.POST,
+			produces = MediaType.APPLICATION_JSON_VALUE)
+	public Map<String, Integer> warm() {
+		return Map.of(CqlGlobalCaches.VALUESETS, theValueSetCacheWarmer.warmAll());
+	}
+
+	public static final String CACHES = "cql-caches";
+}
@@ -0,0 +1,115 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "hapi.fhir.cr.cql.cache")
+public class CqlCacheProperties {
+
+	private String elm_directory;
+	private Long library_maximum_size = 500L;
+	private Long model_maximum_size = 50L;
+	private Long valueset_maximum_codes = 2_000_000L;
+	private Boolean warm_valuesets_on_startup = false;
+	private Boolean results_enabled = false;
+	private Long results_maximum_size = 10_000L;
+	private Long results_expire_after_write_seconds = 3600L;
+	private List<String> results_shared_resource_types = new ArrayList<>(List.of(
+			"Practitioner", "PractitionerRole", "Organization", "Location", "Medication", "Substance"));
+
+	/**
+	 * Directory in which compiled ELM is kept across restarts, or {@code null} to compile every library on first use
+	 */
+	public String getElm_directory() {
+		return elm_directory;
+	}
+
+	public void setElm_directory(String elm_directory) {
+		this.elm_directory = elm_directory;
+	}
+
+	public Long getLibrary_maximum_size() {
+		return library_maximum_size;
+	}
+
+	public void setLibrary_maximum_size(Long library_maximum_size) {
+		this.library_maximum_size = library_maximum_size;
+	}
+
+	public Long getModel_maximum_size() {
+		return model_maximum_size;
+	}
+
+	public void setModel_maximum_size(Long model_maximum_size) {
+		this.model_maximum_size = model_maximum_size;
+	}
+
+	/**
+	 * Upper bound on the total number of codes held across all cached ValueSet expansions
+	 */
+	public Long getValueset_maximum_codes() {
+		return valueset_maximum_codes;
+	}
+
+	public void setValueset_maximum_codes(Long valueset_maximum_codes) {
+		this.valueset_maximum_codes = valueset_maximum_codes;
+	}
+
+	/**
+	 * Whether ValueSets referenced by stored Libraries are loaded into the cache before the server reports ready
+	 */
+	public Boolean getWarm_valuesets_on_startup() {
+		return warm_valuesets_on_startup;
+	}
+
+	public void setWarm_valuesets_on_startup(Boolean warm_valuesets_on_startup) {
+		this.warm_valuesets_on_startup = warm_valuesets_on_startup;
+	}
+
+	/**
+	 * Whether {@code Library/$evaluate} results are kept across requests until the patient's data changes
+	 */
+	public Boolean getResults_enabled() {
+		return results_enabled;
+	}
+
+	public void setResults_enabled(Boolean results_enabled) {
+		this.results_enabled = results_enabled;
+	}
+
+	public Long getResults_maximum_size() {
+		return results_maximum_size;
+	}
+
+	public void setResults_maximum_size(Long results_maximum_size) {
+		this.results_maximum_size = results_maximum_size;
+	}
+
+	/**
+	 * How long a result may be served after it was computed, which bounds how stale expressions that depend on the
+	 * clock, such as {@code Today()} or {@code Now()}, can get. Zero or less keeps results until they are evicted.
+	 */
+	public Long getResults_expire_after_write_seconds() {
+		return results_expire_after_write_seconds;
+	}
+
+	public void setResults_expire_after_write_seconds(Long results_expire_after_write_seconds) {
+		this.results_expire_after_write_seconds = results_expire_after_write_seconds;
+	}
+
+	/**
+	 * Resource types outside the Patient compartment that CQL commonly reads through references, such as a
+	 * Practitioner or a Medication. A write to one of them drops every cached result.
+	 */
+	public List<String> getResults_shared_resource_types() {
+		return results_shared_resource_types;
+	}
+
+	public void setResults_shared_resource_types(List<String> results_shared_resource_types) {
+		this.results_shared_resource_types = results_shared_resource_types;
+	}
+}
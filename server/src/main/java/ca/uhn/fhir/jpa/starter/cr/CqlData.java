@@ -1,16 +1,22 @@
 package ca.uhn.fhir.jpa.starter.cr;
 
 import org.opencds.cqf.fhir.cql.engine.retrieve.RetrieveSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @ConfigurationProperties(prefix = "hapi.fhir.cr.cql.data")
 public class CqlData {
+	private static final Logger ourLog = LoggerFactory.getLogger(CqlData.class);
+
 	private RetrieveSettings.SEARCH_FILTER_MODE searchParameterMode = RetrieveSettings.SEARCH_FILTER_MODE.AUTO;
 	private RetrieveSettings.PROFILE_MODE profileMode = RetrieveSettings.PROFILE_MODE.OFF;
 	private RetrieveSettings.TERMINOLOGY_FILTER_MODE terminologyParameterMode =
 			RetrieveSettings.TERMINOLOGY_FILTER_MODE.AUTO;
+	private boolean prefetchEnabled = false;
+	private long prefetchMaximumResources = 10000;
 
 	public RetrieveSettings.SEARCH_FILTER_MODE getSearchParameterMode() {
 		return searchParameterMode;
@@ -36,11 +42,43 @@ public class CqlData {
 		this.terminologyParameterMode = terminologyParameterMode;
 	}
 
+	public boolean isPrefetchEnabled() {
+		return prefetchEnabled;
+	}
+
+	public void setPrefetchEnabled(boolean prefetchEnabled) {
+		this.prefetchEnabled = prefetchEnabled;
+	}
+
+	public long getPrefetchMaximumResources() {
+		return prefetchMaximumResources;
+	}
+
+	public void setPrefetchMaximumResources(long prefetchMaximumResources) {
+		this.prefetchMaximumResources = prefetchMaximumResources;
+	}
+
 	public RetrieveSettings getRetrieveSettings() {
 		var retrieveSettings = new RetrieveSettings();
-		retrieveSettings.setSearchParameterMode(searchParameterMode);
 		retrieveSettings.setProfileMode(profileMode);
-		retrieveSettings.setTerminologyParameterMode(terminologyParameterMode);
+		if (prefetchEnabled) {
+			// Filtering in memory turns every retrieve into one search per resource type and patient, which
+			// PrefetchingRepository then runs only once; it also answers the ValueSet parameters from the index of
+			// the cached expansion
+			if (searchParameterMode != RetrieveSettings.SEARCH_FILTER_MODE.FILTER_IN_MEMORY
+					|| terminologyParameterMode != RetrieveSettings.TERMINOLOGY_FILTER_MODE.USE_VALUE_SET_URL) {
+				ourLog.warn(
+						"prefetch_enabled overrides search_parameter_mode {} with FILTER_IN_MEMORY and "
+								+ "terminology_parameter_mode {} with USE_VALUE_SET_URL",
+						searchParameterMode,
+						terminologyParameterMode);
+			}
+			retrieveSettings.setSearchParameterMode(RetrieveSettings.SEARCH_FILTER_MODE.FILTER_IN_MEMORY);
+			retrieveSettings.setTerminologyParameterMode(RetrieveSettings.TERMINOLOGY_FILTER_MODE.USE_VALUE_SET_URL);
+		} else {
+			retrieveSettings.setSearchParameterMode(searchParameterMode);
+			retrieveSettings.setTerminologyParameterMode(terminologyParameterMode);
+		}
 		return retrieveSettings;
 	}
 }
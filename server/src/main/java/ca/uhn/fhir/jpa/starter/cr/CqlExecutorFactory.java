@@ -0,0 +1,98 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.opencds.cqf.fhir.cr.hapi.common.CqlThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the executor used for CQL and measure evaluation from {@link CqlExecutorProperties}. The pool is registered
+ * with Micrometer under the name {@code cql}, which publishes queue depth and pool utilization gauges as well as the
+ * {@code executor} (run time) and {@code executor.idle} (time spent queued) timers, and is then wrapped so that tasks
+ * inherit the caller's security context.
+ */
+public class CqlExecutorFactory {
+	private static final Logger ourLog = LoggerFactory.getLogger(CqlExecutorFactory.class);
+
+	public static final String METRIC_NAME = "cql";
+	public static final String PARALLEL_MEASURE_METRIC_NAME = "measure.parallel";
+
+	private CqlExecutorFactory() {}
+
+	public static ExecutorService create(CqlExecutorProperties theProperties, MeterRegistry theMeterRegistry) {
+		ExecutorService executor = newExecutor(theProperties);
+		executor = ExecutorServiceMetrics.monitor(theMeterRegistry, executor, METRIC_NAME);
+		return new DelegatingSecurityContextExecutorService(executor);
+	}
+
+	/**
+	 * The {@code $evaluate-measure-parallel} pool is kept apart from the CQL executor so that a large population cannot
+	 * starve ordinary evaluations, and it rejects work once its queue is full instead of running it on the caller.
+	 */
+	public static ExecutorService createParallelMeasureExecutor(
+			MeasureProperties theProperties, MeterRegistry theMeterRegistry) {
+		int poolSize = Math.max(1, theProperties.getParallel_pool_size());
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				poolSize,
+				poolSize,
+				60,
+				TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, theProperties.getParallel_queue_capacity())),
+				new ThreadFactoryBuilder()
+						.setNameFormat("measure-parallel-%d")
+						.setDaemon(true)
+						.build(),
+				new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return new DelegatingSecurityContextExecutorService(
+				ExecutorServiceMetrics.monitor(theMeterRegistry, executor, PARALLEL_MEASURE_METRIC_NAME));
+	}
+
+	static ExecutorService newExecutor(CqlExecutorProperties theProperties) {
+		int poolSize = Math.max(1, theProperties.getPool_size());
+		return switch (theProperties.getType()) {
+			case WORK_STEALING -> Executors.newWorkStealingPool(poolSize);
+			case VIRTUAL -> {
+				ExecutorService virtual = newVirtualThreadExecutor();
+				yield virtual != null ? virtual : newFixedExecutor(poolSize, theProperties.getQueue_capacity());
+			}
+			default -> newFixedExecutor(poolSize, theProperties.getQueue_capacity());
+		};
+	}
+
+	static ThreadPoolExecutor newFixedExecutor(int thePoolSize, int theQueueCapacity) {
+		// Running rejected tasks on the submitting thread throttles callers instead of failing the evaluation
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				thePoolSize,
+				thePoolSize,
+				60,
+				TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, theQueueCapacity)),
+				new CqlThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		// The server is built for Java 17, so virtual threads are only reachable reflectively on a newer runtime
+		try {
+			return (ExecutorService)
+					Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			ourLog.warn(
+					"Virtual threads are not available on Java {}; using a fixed CQL executor instead",
+					Runtime.version().feature());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "hapi.fhir.cr.cql.executor")
+public class CqlExecutorProperties {
+
+	public enum Type {
+		/** Fixed-size pool with a bounded queue; callers run the task themselves once the queue is full */
+		FIXED,
+		/** {@link java.util.concurrent.ForkJoinPool} sized to {@code pool_size}; the queue bound does not apply */
+		WORK_STEALING,
+		/** One virtual thread per task on Java 21+, falling back to {@link #FIXED} on older runtimes */
+		VIRTUAL
+	}
+
+	private Type type = Type.FIXED;
+	private Integer pool_size = Runtime.getRuntime().availableProcessors();
+	private Integer queue_capacity = 1000;
+
+	public Type getType() {
+		return type;
+	}
+
+	public void setType(Type type) {
+		this.type = type;
+	}
+
+	public Integer getPool_size() {
+		return pool_size;
+	}
+
+	public void setPool_size(Integer pool_size) {
+		this.pool_size = pool_size;
+	}
+
+	public Integer getQueue_capacity() {
+		return queue_capacity;
+	}
+
+	public void setQueue_capacity(Integer queue_capacity) {
+		this.queue_capacity = queue_capacity;
+	}
+}
@@ -0,0 +1,127 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ForwardingMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.cql2elm.model.Model;
+import org.hl7.cql.model.ModelIdentifier;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded replacements for the global library, model and ValueSet caches handed to {@code EvaluationSettings}. Each is
+ * a Caffeine cache (W-TinyLFU eviction) exposed to the CQL engine through its {@link Cache#asMap() map view}; the
+ * ValueSet cache is bounded by the total number of codes rather than the number of ValueSets, since a single large
+ * expansion can outweigh hundreds of small ones.
+ */
+public class CqlGlobalCaches {
+
+	public static final String LIBRARIES = "libraries";
+	public static final String MODELS = "models";
+	public static final String VALUESETS = "valuesets";
+
+	public record Statistics(long size, long hits, long misses, long evictions) {}
+
+	private final Cache<VersionedIdentifier, CompiledLibrary> libraries;
+	private final Cache<ModelIdentifier, Model> models;
+	private final Cache<String, List<Code>> valueSets;
+
+	public CqlGlobalCaches(CqlCacheProperties theProperties) {
+		this.libraries = Caffeine.newBuilder()
+				.maximumSize(theProperties.getLibrary_maximum_size())
+				.recordStats()
+				.build();
+		this.models = Caffeine.newBuilder()
+				.maximumSize(theProperties.getModel_maximum_size())
+				.recordStats()
+				.build();
+		this.valueSets = Caffeine.newBuilder()
+				.maximumWeight(theProperties.getValueset_maximum_codes())
+				.<String, List<Code>>weigher((url, codes) -> Math.max(1, codes.size()))
+				.recordStats()
+				.build();
+	}
+
+	public Map<VersionedIdentifier, CompiledLibrary> libraries() {
+		return libraries.asMap();
+	}
+
+	public Map<ModelIdentifier, Model> models() {
+		return models.asMap();
+	}
+
+	public Map<String, List<Code>> valueSets() {
+		return valueSets.asMap();
+	}
+
+	/**
+	 * The ValueSet cache, with every expansion stored as an {@link IndexedCodeList} so that membership tests against it
+	 * do not scan the expansion
+	 */
+	public Map<String, List<Code>> indexedValueSets() {
+		Map<String, List<Code>> delegate = valueSets.asMap();
+		return new ForwardingMap<>() {
+			@Override
+			protected Map<String, List<Code>> delegate() {
+				return delegate;
+			}
+
+			@Override
+			public List<Code> put(String theKey, List<Code> theValue) {
+				return delegate.put(theKey, IndexedCodeList.of(theValue));
+			}
+
+			@Override
+			public void putAll(Map<? extends String, ? extends List<Code>> theMap) {
+				standardPutAll(theMap);
+			}
+		};
+	}
+
+	public void bindTo(MeterRegistry theMeterRegistry) {
+		CaffeineCacheMetrics.monitor(theMeterRegistry, libraries, "cql." + LIBRARIES);
+		CaffeineCacheMetrics.monitor(theMeterRegistry, models, "cql." + MODELS);
+		CaffeineCacheMetrics.monitor(theMeterRegistry, valueSets, "cql." + VALUESETS);
+	}
+
+	public Map<String, Statistics> statistics() {
+		Map<String, Statistics> statistics = new LinkedHashMap<>();
+		statistics.put(LIBRARIES, statisticsOf(libraries));
+		statistics.put(MODELS, statisticsOf(models));
+		statistics.put(VALUESETS, statisticsOf(valueSets));
+		return statistics;
+	}
+
+	/**
+	 * Empties the named cache, or all of them when {@code theName} is {@code null}
+	 */
+	public void invalidate(String theName) {
+		if (theName != null && !List.of(LIBRARIES, MODELS, VALUESETS).contains(theName)) {
+			throw new IllegalArgumentException("Unknown CQL cache: " + theName);
+		}
+		if (theName == null || LIBRARIES.equals(theName)) {
+			libraries.invalidateAll();
+		}
+		if (theName == null || MODELS.equals(theName)) {
+			models.invalidateAll();
+		}
+		if (theName == null || VALUESETS.equals(theName)) {
+			valueSets.invalidateAll();
+		}
+	}
+
+	private static Statistics statisticsOf(Cache<?, ?> theCache) {
+		// Eviction runs asynchronously; settle pending maintenance so the reported size is current
+		theCache.cleanUp();
+		CacheStats stats = theCache.stats();
+		return new Statistics(theCache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+	}
+}
@@ -14,6 +14,8 @@ public class CqlProperties {
 	private CqlRuntimeProperties runtime = new CqlRuntimeProperties();
 	private TerminologySettings terminology = new TerminologySettings();
 	private CqlData data = new CqlData();
+	private CqlExecutorProperties executor = new CqlExecutorProperties();
+	private CqlCacheProperties cache = new CqlCacheProperties();
 
 	public Boolean getUse_embedded_libraries() {
 		return use_embedded_libraries;
@@ -55,6 +57,22 @@ public class CqlProperties {
 		this.data = data;
 	}
 
+	public CqlExecutorProperties getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(CqlExecutorProperties executor) {
+		this.executor = executor;
+	}
+
+	public CqlCacheProperties getCache() {
+		return cache;
+	}
+
+	public void setCache(CqlCacheProperties cache) {
+		this.cache = cache;
+	}
+
 	public RetrieveSettings getRetrieveSettings() {
 		return data.getRetrieveSettings();
 	}
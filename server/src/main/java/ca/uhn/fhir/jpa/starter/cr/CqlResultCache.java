@@ -0,0 +1,61 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hl7.fhir.r4.model.Parameters;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Results of CQL expressions evaluated for a patient, kept across requests. An entry is keyed by the library, the
+ * expression, the patient and two versions of the stored data the result was computed from, as read by
+ * {@link CqlStoredVersions}:
+ * <ul>
+ *     <li>the <em>patient data version</em>, which changes whenever the Patient or a resource referencing it is
+ *     created, updated or deleted, and</li>
+ *     <li>the <em>knowledge version</em>, which changes whenever a Library, ValueSet or CodeSystem changes, or a shared
+ *     resource outside the Patient compartment (see {@code results_shared_resource_types}).</li>
+ * </ul>
+ * A lookup uses the versions as they are stored now, so entries computed from older data are never returned and simply
+ * age out of the cache. Entries also expire {@code results_expire_after_write_seconds} after they were stored, since
+ * results of expressions that read the clock change without any write.
+ */
+public class CqlResultCache {
+
+	public record Key(
+			String library, String knowledgeVersion, String expression, String patient, String dataVersion) {}
+
+	private final Cache<Key, List<Parameters.ParametersParameterComponent>> results;
+
+	public CqlResultCache(CqlCacheProperties theProperties) {
+		this(theProperties, Ticker.systemTicker());
+	}
+
+	CqlResultCache(CqlCacheProperties theProperties, Ticker theTicker) {
+		Caffeine<Object, Object> builder = Caffeine.newBuilder()
+				.maximumSize(theProperties.getResults_maximum_size())
+				.ticker(theTicker)
+				.recordStats();
+		long expireAfterWrite = theProperties.getResults_expire_after_write_seconds();
+		if (expireAfterWrite > 0) {
+			builder.expireAfterWrite(Duration.ofSeconds(expireAfterWrite));
+		}
+		this.results = builder.build();
+	}
+
+	public void bindTo(MeterRegistry theMeterRegistry) {
+		CaffeineCacheMetrics.monitor(theMeterRegistry, results, "cql.results");
+	}
+
+	public List<Parameters.ParametersParameterComponent> get(Key theKey) {
+		return results.getIfPresent(theKey);
+	}
+
+	public void put(Key theKey, List<Parameters.ParametersParameterComponent> theResult) {
+		results.put(theKey, theResult);
+	}
+}
@@ -0,0 +1,173 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.HookParams;
+import ca.uhn.fhir.interceptor.api.IInterceptorBroadcaster;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.rest.api.EncodingEnum;
+import ca.uhn.fhir.rest.api.RequestTypeEnum;
+import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.ResponseDetails;
+import ca.uhn.fhir.rest.server.RestfulServerUtils;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.hl7.fhir.r4.model.Parameters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serves {@code Library/$evaluate} requests from the {@link CqlResultCache}.
+ * <p>
+ * A GET {@code $evaluate} for a single Patient subject that names its expressions, and passes nothing else that could
+ * change the result, is answered from the cache when every requested expression is cached under the current
+ * {@link CqlStoredVersions stored versions}; otherwise it runs normally and its results are stored. Before a cached
+ * result is written, the request goes through the same {@code SERVER_INCOMING_REQUEST_PRE_HANDLED} and
+ * {@code SERVER_OUTGOING_RESPONSE} hooks as an evaluated one, so authorization and consent interceptors see it.
+ */
+@Interceptor
+public class CqlResultCacheInterceptor {
+
+	private static final String KEYS = CqlResultCacheInterceptor.class.getName() + "_KEYS";
+	private static final String EVALUATE = "$evaluate";
+	private static final Set<String> CACHEABLE_PARAMETERS =
+			Set.of("subject", "expression", "url", "version", "_format", "_pretty");
+
+	private final FhirContext fhirContext;
+	private final CqlResultCache cache;
+	private final CqlStoredVersions storedVersions;
+
+	public CqlResultCacheInterceptor(
+			FhirContext theFhirContext, CqlResultCache theCache, CqlStoredVersions theStoredVersions) {
+		this.fhirContext = theFhirContext;
+		this.cache = theCache;
+		this.storedVersions = theStoredVersions;
+	}
+
+	@Hook(Pointcut.SERVER_INCOMING_REQUEST_POST_PROCESSED)
+	public boolean serveFromCache(
+			RequestDetails theRequestDetails, HttpServletRequest theRequest, HttpServletResponse theResponse)
+			throws IOException {
+		List<CqlResultCache.Key> keys = keysOf(theRequestDetails);
+		if (keys.isEmpty()) {
+			return true;
+		}
+		Parameters cached = new Parameters();
+		for (CqlResultCache.Key key : keys) {
+			List<Parameters.ParametersParameterComponent> result = cache.get(key);
+			if (result == null) {
+				// Evaluate everything and store it when the response goes out
+				theRequestDetails.getUserData().put(KEYS, keys);
+				return true;
+			}
+			result.forEach(p -> cached.addParameter(p.copy()));
+		}
+
+		// The operation is not invoked, so run the hooks that would have seen it; a rejection throws
+		IInterceptorBroadcaster broadcaster = theRequestDetails.getInterceptorBroadcaster();
+		theRequestDetails.setRestOperationType(
+				theRequestDetails.getId() != null && theRequestDetails.getId().hasIdPart()
+						? RestOperationTypeEnum.EXTENDED_OPERATION_INSTANCE
+						: RestOperationTypeEnum.EXTENDED_OPERATION_TYPE);
+		HookParams preHandled = new HookParams()
+				.add(RestOperationTypeEnum.class, theRequestDetails.getRestOperationType())
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails);
+		broadcaster.callHooks(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED, preHandled);
+
+		ResponseDetails responseDetails = new ResponseDetails(cached);
+		responseDetails.setResponseCode(HttpServletResponse.SC_OK);
+		HookParams outgoing = new HookParams()
+				.add(RequestDetails.class, theRequestDetails)
+				.addIfMatchesType(ServletRequestDetails.class, theRequestDetails)
+				.add(IBaseResource.class, cached)
+				.add(ResponseDetails.class, responseDetails)
+				.add(HttpServletRequest.class, theRequest)
+				.add(HttpServletResponse.class, theResponse);
+		if (!broadcaster.callHooks(Pointcut.SERVER_OUTGOING_RESPONSE, outgoing)) {
+			// An interceptor has written the response itself
+			return false;
+		}
+
+		EncodingEnum encoding = RestfulServerUtils.determineResponseEncodingWithDefault(theRequestDetails)
+				.getEncoding();
+		theResponse.setStatus(responseDetails.getResponseCode());
+		theResponse.setContentType(encoding.getResourceContentTypeNonLegacy());
+		theResponse.setCharacterEncoding("UTF-8");
+		boolean pretty = RestfulServerUtils.prettyPrintResponse(theRequestDetails.getServer(), theRequestDetails);
+		encoding.newParser(fhirContext)
+				.setPrettyPrint(pretty)
+				.encodeResourceToWriter(responseDetails.getResponseResource(), theResponse.getWriter());
+		return false;
+	}
+
+	@Hook(Pointcut.SERVER_OUTGOING_RESPONSE)
+	@SuppressWarnings("unchecked")
+	public void storeResults(RequestDetails theRequestDetails, ResponseDetails theResponseDetails) {
+		List<CqlResultCache.Key> keys = (List<CqlResultCache.Key>) theRequestDetails.getUserData().get(KEYS);
+		if (keys == null
+				|| theResponseDetails.getResponseCode() != HttpServletResponse.SC_OK
+				|| !(theResponseDetails.getResponseResource() instanceof Parameters parameters)
+				|| parameters.getParameter().stream().anyMatch(p -> p.getResource() instanceof OperationOutcome)) {
+			return;
+		}
+		Map<String, List<Parameters.ParametersParameterComponent>> byExpression = new LinkedHashMap<>();
+		for (Parameters.ParametersParameterComponent parameter : parameters.getParameter()) {
+			byExpression.computeIfAbsent(parameter.getName(), n -> new ArrayList<>()).add(parameter.copy());
+		}
+		for (CqlResultCache.Key key : keys) {
+			cache.put(key, List.copyOf(byExpression.getOrDefault(key.expression(), List.of())));
+		}
+	}
+
+	private List<CqlResultCache.Key> keysOf(RequestDetails theRequestDetails) {
+		if (theRequestDetails.getRequestType() != RequestTypeEnum.GET
+				|| !"Library".equals(theRequestDetails.getResourceName())
+				|| !EVALUATE.equals(theRequestDetails.getOperation())) {
+			return List.of();
+		}
+		Map<String, String[]> parameters = theRequestDetails.getParameters();
+		if (!CACHEABLE_PARAMETERS.containsAll(parameters.keySet())
+				|| !parameters.containsKey("expression")
+				|| !parameters.containsKey("subject")
+				|| parameters.get("subject").length != 1) {
+			return List.of();
+		}
+		String subject = parameters.get("subject")[0];
+		String patient = subject.startsWith("Patient/") ? subject.substring("Patient/".length()) : subject;
+		if (patient.isEmpty() || patient.contains("/")) {
+			return List.of();
+		}
+
+		String library;
+		if (theRequestDetails.getId() != null && theRequestDetails.getId().hasIdPart()) {
+			library = "Library/" + theRequestDetails.getId().getIdPart();
+		} else if (parameters.containsKey("url")) {
+			library = parameters.get("url")[0];
+		} else {
+			return List.of();
+		}
+		if (parameters.containsKey("version")) {
+			library += "|" + parameters.get("version")[0];
+		}
+
+		// Read before the evaluation, so that a change committed during it leaves the result under outdated versions
+		String knowledgeVersion = storedVersions.knowledge();
+		String dataVersion = storedVersions.patientData(patient);
+		List<CqlResultCache.Key> keys = new ArrayList<>();
+		for (String expression : parameters.get("expression")) {
+			keys.add(new CqlResultCache.Key(library, knowledgeVersion, expression, patient, dataVersion));
+		}
+		return keys;
+	}
+}
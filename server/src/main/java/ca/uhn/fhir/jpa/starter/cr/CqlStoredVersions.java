@@ -0,0 +1,82 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the versions that {@link CqlResultCache} keys its results on from the stored resources themselves, so that a
+ * write made through any path (REST, Batch2 jobs such as bulk import, package installation, MDM) and on any node
+ * sharing the database changes them.
+ * <p>
+ * A version is the number of rows, the sum of their resource versions and the latest update time of a set of stored
+ * resources. Creating, updating or deleting one of them changes at least one of the three, because deleting a resource
+ * bumps its version and update time, and removes the references it held.
+ */
+public class CqlStoredVersions {
+
+	private static final List<String> KNOWLEDGE_TYPES = List.of("Library", "ValueSet", "CodeSystem");
+	private static final String PATIENT_VERSION =
+			"SELECT r.myVersion FROM ResourceTable r WHERE r.myResourceType = 'Patient' AND r.myFhirId = :id";
+	private static final String REFERENCING_VERSION = "SELECT COUNT(r), SUM(r.myVersion), MAX(r.myUpdated) "
+			+ "FROM ResourceLink l JOIN l.mySourceResource r "
+			+ "WHERE l.myTargetResourceType = 'Patient' AND l.myTargetResourceId = :id";
+	private static final String TYPES_VERSION = "SELECT COUNT(r), SUM(r.myVersion), MAX(r.myUpdated) "
+			+ "FROM ResourceTable r WHERE r.myResourceType IN :types";
+
+	private final EntityManagerFactory entityManagerFactory;
+	private final TransactionTemplate transactionTemplate;
+	private final List<String> knowledgeTypes;
+
+	public CqlStoredVersions(
+			EntityManagerFactory theEntityManagerFactory,
+			PlatformTransactionManager theTransactionManager,
+			Collection<String> theSharedResourceTypes) {
+		this.entityManagerFactory = theEntityManagerFactory;
+		this.transactionTemplate = new TransactionTemplate(theTransactionManager);
+		this.transactionTemplate.setReadOnly(true);
+		Set<String> knowledgeTypes = new TreeSet<>(KNOWLEDGE_TYPES);
+		knowledgeTypes.addAll(theSharedResourceTypes);
+		this.knowledgeTypes = List.copyOf(knowledgeTypes);
+	}
+
+	/**
+	 * The version of the Patient with id {@code thePatient} and of every resource that references it
+	 */
+	public String patientData(String thePatient) {
+		return transactionTemplate.execute(s -> {
+			EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+			List<Long> patient = entityManager
+					.createQuery(PATIENT_VERSION, Long.class)
+					.setParameter("id", thePatient)
+					.getResultList();
+			Object[] referencing = (Object[]) entityManager
+					.createQuery(REFERENCING_VERSION)
+					.setParameter("id", thePatient)
+					.getSingleResult();
+			return patient + ":" + Arrays.toString(referencing);
+		});
+	}
+
+	/**
+	 * The version of every stored Library, terminology resource and shared resource type
+	 */
+	public String knowledge() {
+		return transactionTemplate.execute(s -> {
+			EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+			Object[] version = (Object[]) entityManager
+					.createQuery(TYPES_VERSION)
+					.setParameter("types", knowledgeTypes)
+					.getSingleResult();
+			return Arrays.toString(version);
+		});
+	}
+}
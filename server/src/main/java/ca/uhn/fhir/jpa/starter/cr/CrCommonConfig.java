@@ -1,11 +1,14 @@
 package ca.uhn.fhir.jpa.starter.cr;
 
+import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.cache.IResourceChangeListenerRegistry;
 import ca.uhn.fhir.jpa.cache.ResourceChangeListenerRegistryInterceptor;
 import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
 import ca.uhn.fhir.rest.server.RestfulServer;
 import ca.uhn.fhir.rest.server.provider.ResourceProviderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.cqframework.cql.cql2elm.CqlCompilerOptions;
 import org.cqframework.cql.cql2elm.model.CompiledLibrary;
 import org.cqframework.cql.cql2elm.model.Model;
@@ -17,25 +20,26 @@ import org.opencds.cqf.fhir.cql.EvaluationSettings;
 import org.opencds.cqf.fhir.cql.engine.retrieve.RetrieveSettings;
 import org.opencds.cqf.fhir.cql.engine.terminology.TerminologySettings;
 import org.opencds.cqf.fhir.cr.hapi.common.CodeCacheResourceChangeListener;
-import org.opencds.cqf.fhir.cr.hapi.common.CqlThreadFactory;
 import org.opencds.cqf.fhir.cr.hapi.common.ElmCacheResourceChangeListener;
+import org.opencds.cqf.fhir.cr.hapi.common.IRepositoryFactory;
 import org.opencds.cqf.fhir.cr.measure.CareGapsProperties;
 import org.opencds.cqf.fhir.cr.measure.MeasureEvaluationOptions;
 import org.opencds.cqf.fhir.utility.ValidationProfile;
 import org.opencds.cqf.fhir.utility.client.TerminologyServerClientSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
-import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 @Configuration
 @Conditional({CrConfigCondition.class})
@@ -46,6 +50,24 @@ public class CrCommonConfig {
 		return cqlData.getRetrieveSettings();
 	}
 
+	@Bean
+	@Primary
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.cql.data", name = "prefetch_enabled", havingValue = "true")
+	IRepositoryFactory prefetchingRepositoryFactory(
+			DaoRegistry theDaoRegistry,
+			RestfulServer theRestfulServer,
+			CqlData theCqlData,
+			EvaluationSettings theEvaluationSettings,
+			ValueSetCacheWarmer theValueSetCacheWarmer) {
+		return rd -> new PrefetchingRepository(
+				theDaoRegistry,
+				rd,
+				theRestfulServer,
+				theCqlData.getPrefetchMaximumResources(),
+				theEvaluationSettings.getValueSetCache(),
+				theValueSetCacheWarmer);
+	}
+
 	@Bean
 	TerminologySettings terminologySettings(CqlTerminologyProperties theCqlTerminologyProperties) {
 		return theCqlTerminologyProperties.getTerminologySettings();
@@ -64,7 +86,8 @@ public class CrCommonConfig {
 			TerminologySettings theTerminologySettings,
 			Map<VersionedIdentifier, CompiledLibrary> theGlobalLibraryCache,
 			Map<ModelIdentifier, Model> theGlobalModelCache,
-			Map<String, List<Code>> theGlobalValueSetCache) {
+			Map<String, List<Code>> theGlobalValueSetCache,
+			ObjectProvider<PersistentElmLibraryCache> thePersistentElmLibraryCache) {
 		var evaluationSettings = EvaluationSettings.getDefault();
 		var cqlOptions = evaluationSettings.getCqlOptions();
 
@@ -83,6 +106,26 @@ public class CrCommonConfig {
 		}
 		cqlOptions.setCqlEngineOptions(cqlEngineOptions);
 
+		var cqlCompilerOptions = cqlCompilerOptions(cqlCompilerProperties);
+		cqlOptions.setCqlCompilerOptions(cqlCompilerOptions);
+
+		PersistentElmLibraryCache persistentElmLibraryCache = thePersistentElmLibraryCache.getIfAvailable();
+		if (persistentElmLibraryCache != null) {
+			evaluationSettings.setLibraryCache(persistentElmLibraryCache.wrap(theGlobalLibraryCache));
+			var librarySourceProviders = new ArrayList<>(evaluationSettings.getLibrarySourceProviders());
+			librarySourceProviders.add(0, persistentElmLibraryCache);
+			evaluationSettings.setLibrarySourceProviders(librarySourceProviders);
+		} else {
+			evaluationSettings.setLibraryCache(theGlobalLibraryCache);
+		}
+		evaluationSettings.setModelCache(theGlobalModelCache);
+		evaluationSettings.setValueSetCache(theGlobalValueSetCache);
+		evaluationSettings.setRetrieveSettings(theRetrieveSettings);
+		evaluationSettings.setTerminologySettings(theTerminologySettings);
+		return evaluationSettings;
+	}
+
+	static CqlCompilerOptions cqlCompilerOptions(CqlCompilerProperties cqlCompilerProperties) {
 		var cqlCompilerOptions = new CqlCompilerOptions();
 
 		if (cqlCompilerProperties.isEnableDateRangeOptimization()) {
@@ -131,24 +174,15 @@ public class CrCommonConfig {
 		cqlCompilerOptions.setCompatibilityLevel(cqlCompilerProperties.getCompatibilityLevel());
 		cqlCompilerOptions.setAnalyzeDataRequirements(cqlCompilerProperties.isAnalyzeDataRequirements());
 		cqlCompilerOptions.setCollapseDataRequirements(cqlCompilerProperties.isCollapseDataRequirements());
-
-		cqlOptions.setCqlCompilerOptions(cqlCompilerOptions);
-		evaluationSettings.setLibraryCache(theGlobalLibraryCache);
-		evaluationSettings.setModelCache(theGlobalModelCache);
-		evaluationSettings.setValueSetCache(theGlobalValueSetCache);
-		evaluationSettings.setRetrieveSettings(theRetrieveSettings);
-		evaluationSettings.setTerminologySettings(theTerminologySettings);
-		return evaluationSettings;
+		return cqlCompilerOptions;
 	}
 
 	@Primary
 	@Bean
-	public ExecutorService cqlExecutor() {
-		CqlThreadFactory factory = new CqlThreadFactory();
-		ExecutorService executor = Executors.newFixedThreadPool(2, factory);
-		executor = new DelegatingSecurityContextExecutorService(executor);
-
-		return executor;
+	public ExecutorService cqlExecutor(
+			CqlExecutorProperties theCqlExecutorProperties, ObjectProvider<MeterRegistry> theMeterRegistry) {
+		return CqlExecutorFactory.create(
+				theCqlExecutorProperties, theMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
 	}
 
 	@Bean(name = "measure.CareGapsProperties")
@@ -181,18 +215,57 @@ public class CrCommonConfig {
 	}
 
 	@Bean
-	public Map<VersionedIdentifier, CompiledLibrary> globalLibraryCache() {
-		return new ConcurrentHashMap<>();
+	public CqlGlobalCaches cqlGlobalCaches(
+			CqlCacheProperties theCqlCacheProperties, ObjectProvider<MeterRegistry> theMeterRegistry) {
+		CqlGlobalCaches caches = new CqlGlobalCaches(theCqlCacheProperties);
+		caches.bindTo(theMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+		return caches;
+	}
+
+	@Bean
+	public Map<VersionedIdentifier, CompiledLibrary> globalLibraryCache(CqlGlobalCaches theCqlGlobalCaches) {
+		return theCqlGlobalCaches.libraries();
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.cql.cache", name = "elm_directory")
+	public PersistentElmLibraryCache persistentElmLibraryCache(
+			CqlCacheProperties theCqlCacheProperties,
+			CqlCompilerProperties theCqlCompilerProperties,
+			FhirContext theFhirContext,
+			DaoRegistry theDaoRegistry) {
+		return PersistentElmLibraryCache.forRepository(
+				Path.of(theCqlCacheProperties.getElm_directory()),
+				cqlCompilerOptions(theCqlCompilerProperties),
+				theFhirContext,
+				theDaoRegistry);
+	}
+
+	@Bean
+	public Map<ModelIdentifier, Model> globalModelCache(CqlGlobalCaches theCqlGlobalCaches) {
+		return theCqlGlobalCaches.models();
+	}
+
+	@Bean
+	public Map<String, List<Code>> globalValueSetCache(CqlGlobalCaches theCqlGlobalCaches, CqlData theCqlData) {
+		// Only PrefetchingRepository tests codes against the index; the engine scans expansions itself
+		return theCqlData.isPrefetchEnabled() ? theCqlGlobalCaches.indexedValueSets() : theCqlGlobalCaches.valueSets();
 	}
 
 	@Bean
-	public Map<ModelIdentifier, Model> globalModelCache() {
-		return new ConcurrentHashMap<>();
+	public ValueSetCacheWarmer valueSetCacheWarmer(
+			FhirContext theFhirContext, DaoRegistry theDaoRegistry, EvaluationSettings theEvaluationSettings) {
+		return new ValueSetCacheWarmer(theFhirContext, theDaoRegistry, theEvaluationSettings.getValueSetCache());
 	}
 
 	@Bean
-	public Map<String, List<Code>> globalValueSetCache() {
-		return new ConcurrentHashMap<>();
+	@ConditionalOnProperty(
+			prefix = "hapi.fhir.cr.cql.cache",
+			name = "warm_valuesets_on_startup",
+			havingValue = "true")
+	public ValueSetCacheWarmupRunner valueSetCacheWarmupRunner(
+			FhirContext theFhirContext, DaoRegistry theDaoRegistry, ValueSetCacheWarmer theValueSetCacheWarmer) {
+		return new ValueSetCacheWarmupRunner(theFhirContext, theDaoRegistry, theValueSetCacheWarmer);
 	}
 
 	@Bean
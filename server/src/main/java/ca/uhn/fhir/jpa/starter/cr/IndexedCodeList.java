@@ -0,0 +1,51 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A ValueSet expansion as held in the global CQL ValueSet cache when {@link PrefetchingRepository} is in use. It reads
+ * like the plain list of codes, with the usual {@link java.util.List} semantics, and additionally carries a
+ * {@link CodeIndex} built once when the expansion is cached, so that {@link #contains(String, String)} answers ValueSet
+ * membership by (system, code) in constant time instead of scanning the expansion.
+ */
+public final class IndexedCodeList extends AbstractList<Code> implements RandomAccess {
+
+	private final List<Code> codes;
+	private final CodeIndex index;
+
+	private IndexedCodeList(List<Code> theCodes) {
+		this.codes = theCodes;
+		this.index = CodeIndex.of(theCodes, Code::getSystem, Code::getCode);
+	}
+
+	public static List<Code> of(List<Code> theCodes) {
+		if (theCodes == null || theCodes instanceof IndexedCodeList) {
+			return theCodes;
+		}
+		return new IndexedCodeList(Collections.unmodifiableList(new ArrayList<>(theCodes)));
+	}
+
+	@Override
+	public Code get(int theIndex) {
+		return codes.get(theIndex);
+	}
+
+	@Override
+	public int size() {
+		return codes.size();
+	}
+
+	/**
+	 * Whether the expansion contains a code with the given system and code; version and display do not take part, as
+	 * for the CQL {@code in} operator and the FHIR {@code :in} search modifier
+	 */
+	public boolean contains(String theSystem, String theCode) {
+		return index.contains(theSystem, theCode);
+	}
+}
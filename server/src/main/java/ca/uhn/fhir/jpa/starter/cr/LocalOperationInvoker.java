@@ -0,0 +1,44 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Invokes an idempotent FHIR operation in-process through the {@link RestfulServer}, so that background and fan-out
+ * work reuses the operation providers (and their interceptors) exactly as a client call would.
+ */
+public class LocalOperationInvoker {
+
+	private final RestfulServer restfulServer;
+
+	public LocalOperationInvoker(RestfulServer theRestfulServer) {
+		this.restfulServer = theRestfulServer;
+	}
+
+	public <T extends IBaseResource> T invoke(
+			String thePath, Map<String, List<String>> theParameters, Class<T> theType) {
+		var request = new MockHttpServletRequest("GET", thePath);
+		theParameters.forEach((name, values) -> values.forEach(value -> request.addParameter(name, value)));
+		request.addHeader("Accept", "application/fhir+json");
+		var response = new MockHttpServletResponse();
+
+		try {
+			restfulServer.service(request, response);
+			if (response.getStatus() != 200) {
+				throw new InternalErrorException(thePath + " failed with status " + response.getStatus() + ": "
+						+ response.getContentAsString());
+			}
+			return restfulServer.getFhirContext().newJsonParser().parseResource(theType, response.getContentAsString());
+		} catch (InternalErrorException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new InternalErrorException("Unable to invoke " + thePath + ": " + e.getMessage(), e);
+		}
+	}
+}
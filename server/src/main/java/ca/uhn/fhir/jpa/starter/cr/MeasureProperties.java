@@ -0,0 +1,54 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "hapi.fhir.cr.measure")
+public class MeasureProperties {
+	private Boolean parallel_enabled = false;
+	private Integer parallel_chunk_size = 50;
+	private Integer parallel_timeout_seconds = 3600;
+	private Integer parallel_pool_size = Runtime.getRuntime().availableProcessors();
+	private Integer parallel_queue_capacity = 100;
+
+	public Boolean getParallel_enabled() {
+		return parallel_enabled;
+	}
+
+	public void setParallel_enabled(Boolean parallel_enabled) {
+		this.parallel_enabled = parallel_enabled;
+	}
+
+	public Integer getParallel_chunk_size() {
+		return parallel_chunk_size;
+	}
+
+	public void setParallel_chunk_size(Integer parallel_chunk_size) {
+		this.parallel_chunk_size = parallel_chunk_size;
+	}
+
+	public Integer getParallel_timeout_seconds() {
+		return parallel_timeout_seconds;
+	}
+
+	public void setParallel_timeout_seconds(Integer parallel_timeout_seconds) {
+		this.parallel_timeout_seconds = parallel_timeout_seconds;
+	}
+
+	public Integer getParallel_pool_size() {
+		return parallel_pool_size;
+	}
+
+	public void setParallel_pool_size(Integer parallel_pool_size) {
+		this.parallel_pool_size = parallel_pool_size;
+	}
+
+	public Integer getParallel_queue_capacity() {
+		return parallel_queue_capacity;
+	}
+
+	public void setParallel_queue_capacity(Integer parallel_queue_capacity) {
+		this.parallel_queue_capacity = parallel_queue_capacity;
+	}
+}
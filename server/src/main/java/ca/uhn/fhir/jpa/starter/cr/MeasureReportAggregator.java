@@ -0,0 +1,171 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.MeasureReport;
+import org.hl7.fhir.r4.model.Quantity;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Combines individual (per-subject) R4 MeasureReports into one summary report by adding up the population counts of
+ * each group and stratum, and recomputing proportion and ratio scores from the totals as
+ * {@code (numerator - numerator-exclusion) / (denominator - denominator-exclusion - denominator-exception)}.
+ * Continuous-variable observations cannot be combined from counts, so their groups are reported without a score.
+ * <p>
+ * Reports can be added one at a time as they are produced, so that a population never has to be held in memory.
+ */
+public class MeasureReportAggregator {
+
+	private final MeasureReport summary = new MeasureReport();
+	private final Map<String, MeasureReport.MeasureReportGroupComponent> groups = new LinkedHashMap<>();
+	private boolean empty = true;
+
+	public MeasureReportAggregator() {
+		summary.setStatus(MeasureReport.MeasureReportStatus.COMPLETE);
+		summary.setType(MeasureReport.MeasureReportType.SUMMARY);
+	}
+
+	public static MeasureReport aggregate(List<MeasureReport> theReports) {
+		MeasureReportAggregator aggregator = new MeasureReportAggregator();
+		theReports.forEach(aggregator::add);
+		return aggregator.getSummary();
+	}
+
+	/**
+	 * Adds the counts of an individual report to the running totals. The report itself is not kept.
+	 */
+	public synchronized void add(MeasureReport theReport) {
+		if (empty) {
+			summary.setMeasure(theReport.getMeasure());
+			summary.setPeriod(theReport.getPeriod().copy());
+			summary.setImprovementNotation(theReport.getImprovementNotation());
+			empty = false;
+		}
+		List<MeasureReport.MeasureReportGroupComponent> reportGroups = theReport.getGroup();
+		for (int i = 0; i < reportGroups.size(); i++) {
+			MeasureReport.MeasureReportGroupComponent group = reportGroups.get(i);
+			MeasureReport.MeasureReportGroupComponent target = groups.computeIfAbsent(keyOf(group, i), k -> {
+				MeasureReport.MeasureReportGroupComponent added = summary.addGroup().setCode(group.getCode().copy());
+				added.setId(group.getId());
+				return added;
+			});
+			addGroup(group, target);
+		}
+	}
+
+	/**
+	 * The summary of the reports added so far, scored from their totals
+	 */
+	public synchronized MeasureReport getSummary() {
+		summary.setDate(new Date());
+		for (MeasureReport.MeasureReportGroupComponent group : groups.values()) {
+			group.setMeasureScore(score(group.getPopulation(), p -> p.getCode(), p -> p.getCount()));
+			for (MeasureReport.MeasureReportGroupStratifierComponent stratifier : group.getStratifier()) {
+				for (MeasureReport.StratifierGroupComponent stratum : stratifier.getStratum()) {
+					stratum.setMeasureScore(score(stratum.getPopulation(), p -> p.getCode(), p -> p.getCount()));
+				}
+			}
+		}
+		return summary;
+	}
+
+	private static void addGroup(
+			MeasureReport.MeasureReportGroupComponent theSource, MeasureReport.MeasureReportGroupComponent theTarget) {
+		for (MeasureReport.MeasureReportGroupPopulationComponent population : theSource.getPopulation()) {
+			MeasureReport.MeasureReportGroupPopulationComponent total = theTarget.getPopulation().stream()
+					.filter(p -> codeOf(p.getCode()).equals(codeOf(population.getCode())))
+					.findFirst()
+					.orElseGet(() -> theTarget.addPopulation().setCode(population.getCode()));
+			total.setCount(total.getCount() + population.getCount());
+		}
+
+		for (MeasureReport.MeasureReportGroupStratifierComponent stratifier : theSource.getStratifier()) {
+			// Individual reports omit stratifiers that produced no strata, so positions differ between subjects
+			String key = stratifierKeyOf(stratifier);
+			MeasureReport.MeasureReportGroupStratifierComponent target = theTarget.getStratifier().stream()
+					.filter(s -> stratifierKeyOf(s).equals(key))
+					.findFirst()
+					.orElseGet(() -> {
+						MeasureReport.MeasureReportGroupStratifierComponent added =
+								theTarget.addStratifier().setCode(stratifier.getCode());
+						added.setId(stratifier.getId());
+						return added;
+					});
+			for (MeasureReport.StratifierGroupComponent stratum : stratifier.getStratum()) {
+				addStratum(stratum, target);
+			}
+		}
+	}
+
+	private static void addStratum(
+			MeasureReport.StratifierGroupComponent theSource,
+			MeasureReport.MeasureReportGroupStratifierComponent theTarget) {
+		String value = valueOf(theSource.getValue());
+		MeasureReport.StratifierGroupComponent target = theTarget.getStratum().stream()
+				.filter(s -> valueOf(s.getValue()).equals(value))
+				.findFirst()
+				.orElseGet(() -> theTarget.addStratum().setValue(theSource.getValue()));
+		for (MeasureReport.StratifierGroupPopulationComponent population : theSource.getPopulation()) {
+			MeasureReport.StratifierGroupPopulationComponent total = target.getPopulation().stream()
+					.filter(p -> codeOf(p.getCode()).equals(codeOf(population.getCode())))
+					.findFirst()
+					.orElseGet(() -> target.addPopulation().setCode(population.getCode()));
+			total.setCount(total.getCount() + population.getCount());
+		}
+	}
+
+	private static <T> Quantity score(
+			List<T> thePopulations, Function<T, CodeableConcept> theCode, Function<T, Integer> theCount) {
+		Map<String, Integer> counts = new LinkedHashMap<>();
+		for (T population : thePopulations) {
+			counts.merge(codeOf(theCode.apply(population)), theCount.apply(population), Integer::sum);
+		}
+		if (!counts.containsKey("numerator") || !counts.containsKey("denominator")) {
+			return null;
+		}
+		int numerator = counts.get("numerator") - counts.getOrDefault("numerator-exclusion", 0);
+		int denominator = counts.get("denominator")
+				- counts.getOrDefault("denominator-exclusion", 0)
+				- counts.getOrDefault("denominator-exception", 0);
+		return denominator > 0 ? new Quantity((double) numerator / denominator) : null;
+	}
+
+	private static String keyOf(MeasureReport.MeasureReportGroupComponent theGroup, int theIndex) {
+		if (theGroup.getId() != null) {
+			return theGroup.getId();
+		}
+		return theGroup.hasCode() ? "code:" + valueOf(theGroup.getCode()) : "#" + theIndex;
+	}
+
+	private static String stratifierKeyOf(MeasureReport.MeasureReportGroupStratifierComponent theStratifier) {
+		if (theStratifier.getId() != null) {
+			return theStratifier.getId();
+		}
+		return theStratifier.getCode().stream()
+				.map(MeasureReportAggregator::valueOf)
+				.reduce("code:", (a, b) -> a + "," + b);
+	}
+
+	private static String codeOf(CodeableConcept theConcept) {
+		return theConcept == null || theConcept.getCoding().isEmpty()
+				? ""
+				: String.valueOf(theConcept.getCodingFirstRep().getCode());
+	}
+
+	private static String valueOf(CodeableConcept theConcept) {
+		if (theConcept == null) {
+			return "";
+		}
+		if (theConcept.hasText()) {
+			return theConcept.getText();
+		}
+		return theConcept.getCoding().stream()
+				.map(Coding::getCode)
+				.reduce("", (a, b) -> a + "|" + b);
+	}
+}
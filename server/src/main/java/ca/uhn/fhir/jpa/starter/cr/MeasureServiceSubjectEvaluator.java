@@ -0,0 +1,72 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.MeasureReport;
+import org.opencds.cqf.fhir.cr.hapi.r4.R4MeasureEvaluatorSingleFactory;
+import org.opencds.cqf.fhir.utility.monad.Eithers;
+
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.GregorianCalendar;
+
+/**
+ * Evaluates one subject by calling the R4 measure service directly, without going through the
+ * {@code $evaluate-measure} REST operation. Each call gets a fresh service and repository, so concurrent subjects never
+ * share retrieve state; the repository reads under the operation's request, like {@code $evaluate-measure} does.
+ */
+public class MeasureServiceSubjectEvaluator implements ParallelMeasureEvaluator.SubjectEvaluator {
+
+	private final R4MeasureEvaluatorSingleFactory measureServiceFactory;
+
+	public MeasureServiceSubjectEvaluator(R4MeasureEvaluatorSingleFactory theMeasureServiceFactory) {
+		this.measureServiceFactory = theMeasureServiceFactory;
+	}
+
+	@Override
+	public MeasureReport evaluate(
+			IdType theMeasureId,
+			String thePeriodStart,
+			String thePeriodEnd,
+			String theSubject,
+			RequestDetails theRequestDetails) {
+		return measureServiceFactory
+				.create(theRequestDetails)
+				.evaluate(
+						Eithers.forMiddle3(theMeasureId.toUnqualifiedVersionless()),
+						toZonedDateTime(thePeriodStart, false),
+						toZonedDateTime(thePeriodEnd, true),
+						"subject",
+						theSubject,
+						null,
+						null,
+						null,
+						null,
+						null,
+						null,
+						null,
+						null);
+	}
+
+	/**
+	 * A partial date bounds the whole period it names, so a period end of {@code 2024} means the last instant of 2024,
+	 * matching how {@code $evaluate-measure} reads its string parameters.
+	 */
+	static ZonedDateTime toZonedDateTime(String theValue, boolean theEnd) {
+		if (theValue == null || theValue.isBlank()) {
+			return null;
+		}
+		DateTimeType dateTime = new DateTimeType(theValue);
+		ZonedDateTime value = ((GregorianCalendar) dateTime.getValueAsCalendar()).toZonedDateTime();
+		if (!theEnd) {
+			return value;
+		}
+		return switch (dateTime.getPrecision()) {
+			case YEAR -> value.plusYears(1).minus(1, ChronoUnit.MILLIS);
+			case MONTH -> value.plusMonths(1).minus(1, ChronoUnit.MILLIS);
+			case DAY -> value.plusDays(1).minus(1, ChronoUnit.MILLIS);
+			default -> value;
+		};
+	}
+}
@@ -0,0 +1,174 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.MeasureReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a Measure for a population by splitting the subjects into chunks and evaluating them on a dedicated,
+ * bounded executor. Every subject is evaluated on its own by a {@link SubjectEvaluator}, so it gets its own retrieve
+ * context; the individual reports of each chunk are added to a {@link MeasureReportAggregator} as the chunk completes,
+ * so memory does not grow with the population. Subjects are resolved and evaluated under the operation's request, so
+ * that its tenant, partition and authorization apply to them.
+ * <p>
+ * Each evaluation submits up to {@code parallel_pool_size} workers, which take chunks from the {@link SubjectResolver}
+ * until it runs out. When the executor has no room for a single worker the request is rejected with a 503 rather than
+ * run on the request thread. A failed subject, the configured timeout, or an interrupt of the requesting thread
+ * cancels the remaining work. Progress is logged as chunks complete.
+ */
+public class ParallelMeasureEvaluator implements AutoCloseable {
+	private static final Logger ourLog = LoggerFactory.getLogger(ParallelMeasureEvaluator.class);
+
+	/**
+	 * Produces the individual MeasureReport of a single subject.
+	 */
+	@FunctionalInterface
+	public interface SubjectEvaluator {
+		MeasureReport evaluate(
+				IdType theMeasureId,
+				String thePeriodStart,
+				String thePeriodEnd,
+				String theSubject,
+				RequestDetails theRequestDetails);
+	}
+
+	private final SubjectEvaluator subjectEvaluator;
+	private final SubjectResolver subjectResolver;
+	private final ExecutorService executor;
+	private final MeasureProperties properties;
+
+	/**
+	 * @param theExecutor owned by this evaluator and shut down by {@link #close()}
+	 */
+	public ParallelMeasureEvaluator(
+			SubjectEvaluator theSubjectEvaluator,
+			SubjectResolver theSubjectResolver,
+			ExecutorService theExecutor,
+			MeasureProperties theProperties) {
+		this.subjectEvaluator = theSubjectEvaluator;
+		this.subjectResolver = theSubjectResolver;
+		this.executor = theExecutor;
+		this.properties = theProperties;
+	}
+
+	/**
+	 * @param theRequestDetails the request of the operation, which every subject is resolved and evaluated under, so
+	 *                          that its tenant, partition and authorization apply
+	 */
+	public MeasureReport evaluate(
+			IdType theMeasureId,
+			String thePeriodStart,
+			String thePeriodEnd,
+			String theSubject,
+			RequestDetails theRequestDetails) {
+		// Subjects are paged in as workers ask for chunks, so a large population is never held in memory at once
+		Iterator<List<String>> pending =
+				subjectResolver.resolveInChunks(theSubject, properties.getParallel_chunk_size(), theRequestDetails);
+		ourLog.info("Evaluating {} for {}", theMeasureId.toUnqualifiedVersionless().getValue(), subjectOf(theSubject));
+
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicInteger completed = new AtomicInteger();
+		MeasureReportAggregator aggregator = new MeasureReportAggregator();
+		CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+		List<Future<Void>> futures = new ArrayList<>();
+		int workers = Math.max(1, properties.getParallel_pool_size());
+		for (int i = 0; i < workers; i++) {
+			try {
+				futures.add(completion.submit(() -> {
+					for (List<String> chunk = next(pending); chunk != null; chunk = next(pending)) {
+						List<MeasureReport> reports = new ArrayList<>(chunk.size());
+						for (String subject : chunk) {
+							if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+								throw new CancellationException();
+							}
+							reports.add(subjectEvaluator.evaluate(
+									theMeasureId, thePeriodStart, thePeriodEnd, subject, theRequestDetails));
+						}
+						// Only the running totals outlive the chunk
+						reports.forEach(aggregator::add);
+						int evaluated = completed.addAndGet(chunk.size());
+						ourLog.info("{}: {} subjects evaluated", theMeasureId.getIdPart(), evaluated);
+					}
+					return null;
+				}));
+			} catch (RejectedExecutionException e) {
+				// The workers that were accepted drain the remaining chunks between them
+				ourLog.debug("Parallel measure executor accepted {} of {} workers", futures.size(), workers);
+				break;
+			}
+		}
+		if (futures.isEmpty()) {
+			throw new UnclassifiedServerFailureException(
+					503, "Too many parallel measure evaluations are in progress, retry later");
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getParallel_timeout_seconds());
+		try {
+			// Take workers as they finish so that a failure is seen while others are still running
+			for (int i = 0; i < futures.size(); i++) {
+				Future<Void> future = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				if (future == null) {
+					throw new TimeoutException();
+				}
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw cancel(futures, cancelled, new InternalErrorException("Measure evaluation was interrupted", e));
+		} catch (TimeoutException e) {
+			throw cancel(
+					futures,
+					cancelled,
+					new InternalErrorException("Measure evaluation exceeded "
+							+ properties.getParallel_timeout_seconds() + " seconds after " + completed.get()
+							+ " subjects"));
+		} catch (ExecutionException e) {
+			RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+					? runtime
+					: new InternalErrorException(e.getCause());
+			throw cancel(futures, cancelled, cause);
+		}
+		return aggregator.getSummary();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private static String subjectOf(String theSubject) {
+		return theSubject == null || theSubject.isBlank() ? "all Patients" : theSubject;
+	}
+
+	private static <T> T next(Iterator<T> thePending) {
+		synchronized (thePending) {
+			return thePending.hasNext() ? thePending.next() : null;
+		}
+	}
+
+	private static RuntimeException cancel(
+			List<? extends Future<?>> theFutures, AtomicBoolean theCancelled, RuntimeException theCause) {
+		theCancelled.set(true);
+		theFutures.forEach(f -> f.cancel(true));
+		return theCause;
+	}
+}
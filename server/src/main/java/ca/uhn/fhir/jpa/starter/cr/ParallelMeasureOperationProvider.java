@@ -0,0 +1,32 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.rest.annotation.IdParam;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Measure;
+import org.hl7.fhir.r4.model.MeasureReport;
+
+/**
+ * {@code Measure/[id]/$evaluate-measure-parallel} produces the same summary report as a population
+ * {@code $evaluate-measure}, but evaluates the subjects concurrently on its own executor.
+ */
+public class ParallelMeasureOperationProvider {
+
+	private final ParallelMeasureEvaluator evaluator;
+
+	public ParallelMeasureOperationProvider(ParallelMeasureEvaluator theEvaluator) {
+		this.evaluator = theEvaluator;
+	}
+
+	@Operation(name = "$evaluate-measure-parallel", type = Measure.class, idempotent = true)
+	public MeasureReport evaluateMeasureParallel(
+			@IdParam IdType theId,
+			@OperationParam(name = "periodStart") String thePeriodStart,
+			@OperationParam(name = "periodEnd") String thePeriodEnd,
+			@OperationParam(name = "subject") String theSubject,
+			RequestDetails theRequestDetails) {
+		return evaluator.evaluate(theId, thePeriodStart, thePeriodEnd, theSubject, theRequestDetails);
+	}
+}
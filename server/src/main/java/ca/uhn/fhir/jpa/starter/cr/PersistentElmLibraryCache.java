@@ -0,0 +1,301 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.util.FhirTerser;
+import com.google.common.collect.ForwardingMap;
+import com.google.common.hash.Hashing;
+import org.cqframework.cql.cql2elm.CqlCompilerOptions;
+import org.cqframework.cql.cql2elm.CqlTranslator;
+import org.cqframework.cql.cql2elm.LibraryContentType;
+import org.cqframework.cql.cql2elm.LibrarySourceProvider;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.cqframework.cql.elm.serializing.ElmLibraryWriterFactory;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps compiled ELM on local disk so that a restarted server can load libraries instead of recompiling them. Entries
+ * are stored as {@code <library hash>.<content hash>.<options hash>.json}. The library hash identifies the library name
+ * and version, the content hash covers the CQL source of the Library resource together with the content hashes of
+ * the libraries it includes, and the options hash covers the compiler options and translator version, so an edited
+ * library, an edited dependency or a changed {@code hapi.fhir.cr.cql.compiler} setting simply misses and is compiled
+ * again. Included libraries that are not stored as Library resources (such as the embedded FHIRHelpers) contribute
+ * only their name and version, since they change with the translator version.
+ * <p>
+ * Stale files are pruned: files written under other compiler options when the cache is created, and older versions of
+ * a library whenever a new one is stored.
+ * <p>
+ * Compiled libraries are written through {@link #wrap(Map)} when the library manager adds them to the global cache,
+ * and are served back to the library manager as ELM content through the {@link LibrarySourceProvider} interface.
+ * Libraries that are not stored as Library resources (such as the embedded FHIRHelpers) are not persisted.
+ */
+public class PersistentElmLibraryCache implements LibrarySourceProvider {
+	private static final Logger ourLog = LoggerFactory.getLogger(PersistentElmLibraryCache.class);
+
+	private static final String JSON = ".json";
+	private static final Pattern INCLUDE = Pattern.compile(
+			"^\\s*include\\s+((?:\"[^\"]+\"|[A-Za-z_]\\w*)(?:\\.(?:\"[^\"]+\"|[A-Za-z_]\\w*))*)"
+					+ "(?:\\s+version\\s+'([^']*)')?",
+			Pattern.MULTILINE);
+
+	private final Path directory;
+	private final String optionsHash;
+	private final Function<VersionedIdentifier, String> contentHashes;
+
+	PersistentElmLibraryCache(
+			Path theDirectory, String theOptionsHash, Function<VersionedIdentifier, String> theContentHashes) {
+		this.directory = theDirectory;
+		this.optionsHash = theOptionsHash;
+		this.contentHashes = theContentHashes;
+		try {
+			Files.createDirectories(theDirectory);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to create ELM cache directory " + theDirectory, e);
+		}
+		prune(name -> !name.endsWith("." + theOptionsHash + JSON) || name.split("\\.").length != 4);
+	}
+
+	public static PersistentElmLibraryCache forRepository(
+			Path theDirectory,
+			CqlCompilerOptions theCompilerOptions,
+			FhirContext theFhirContext,
+			DaoRegistry theDaoRegistry) {
+		return new PersistentElmLibraryCache(
+				theDirectory,
+				optionsHash(theCompilerOptions),
+				identifier -> identifier.getId() == null || identifier.getVersion() == null
+						? null
+						: cqlContentHash(theFhirContext, theDaoRegistry, identifier, new HashSet<>()));
+	}
+
+	/**
+	 * @return a view of the given cache that also writes every compiled library added to it to disk
+	 */
+	public Map<VersionedIdentifier, CompiledLibrary> wrap(Map<VersionedIdentifier, CompiledLibrary> theDelegate) {
+		return new ForwardingMap<>() {
+			@Override
+			protected Map<VersionedIdentifier, CompiledLibrary> delegate() {
+				return theDelegate;
+			}
+
+			@Override
+			public CompiledLibrary put(VersionedIdentifier theKey, CompiledLibrary theValue) {
+				CompiledLibrary previous = theDelegate.put(theKey, theValue);
+				if (previous == null) {
+					store(theKey, theValue);
+				}
+				return previous;
+			}
+
+			@Override
+			public void putAll(Map<? extends VersionedIdentifier, ? extends CompiledLibrary> theMap) {
+				standardPutAll(theMap);
+			}
+		};
+	}
+
+	@Override
+	public InputStream getLibrarySource(VersionedIdentifier theLibraryIdentifier) {
+		// CQL source is always served by the repository; this provider only supplies compiled ELM
+		return null;
+	}
+
+	@Override
+	public InputStream getLibraryContent(VersionedIdentifier theLibraryIdentifier, LibraryContentType theType) {
+		if (theType != LibraryContentType.JSON) {
+			return null;
+		}
+		Path file = fileFor(theLibraryIdentifier);
+		if (file == null || !Files.isRegularFile(file)) {
+			return null;
+		}
+		try {
+			ourLog.debug("Loading compiled ELM for {} from {}", theLibraryIdentifier.getId(), file);
+			return Files.newInputStream(file);
+		} catch (IOException e) {
+			ourLog.warn("Unable to read cached ELM {}: {}", file, e.toString());
+			return null;
+		}
+	}
+
+	void store(VersionedIdentifier theIdentifier, CompiledLibrary theLibrary) {
+		Path file = fileFor(theIdentifier);
+		if (file == null || theLibrary.getLibrary() == null || Files.exists(file)) {
+			return;
+		}
+		try {
+			String elm = ElmLibraryWriterFactory.getWriter(LibraryContentType.JSON.mimeType())
+					.writeAsString(theLibrary.getLibrary());
+			// Write to a temporary file first so that a concurrent reader never sees a partial library
+			Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			Files.writeString(temp, elm, StandardCharsets.UTF_8);
+			Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			ourLog.warn("Unable to persist compiled ELM for {}: {}", theIdentifier.getId(), e.toString());
+			return;
+		}
+		String current = file.getFileName().toString();
+		String library = current.substring(0, current.indexOf('.') + 1);
+		prune(name -> name.startsWith(library) && !name.equals(current));
+	}
+
+	Path fileFor(VersionedIdentifier theIdentifier) {
+		String contentHash = contentHashes.apply(theIdentifier);
+		if (contentHash == null) {
+			return null;
+		}
+		String library = sha256(theIdentifier.getSystem() + "|" + theIdentifier.getId() + "|"
+						+ theIdentifier.getVersion())
+				.substring(0, 16);
+		return directory.resolve(library + "." + contentHash + "." + optionsHash + JSON);
+	}
+
+	private void prune(Predicate<String> theStale) {
+		try (Stream<Path> files = Files.list(directory)) {
+			files.filter(file -> {
+						String name = file.getFileName().toString();
+						return name.endsWith(JSON) && theStale.test(name);
+					})
+					.forEach(file -> {
+						try {
+							Files.deleteIfExists(file);
+							ourLog.debug("Pruned stale compiled ELM {}", file);
+						} catch (IOException e) {
+							ourLog.warn("Unable to prune stale compiled ELM {}: {}", file, e.toString());
+						}
+					});
+		} catch (IOException e) {
+			ourLog.warn("Unable to list ELM cache directory {}: {}", directory, e.toString());
+		}
+	}
+
+	static String optionsHash(CqlCompilerOptions theOptions) {
+		String options = theOptions.getOptions().stream()
+				.map(Enum::name)
+				.sorted()
+				.collect(Collectors.joining(","));
+		String canonical = String.join(
+				"|",
+				options,
+				String.valueOf(theOptions.getErrorLevel()),
+				String.valueOf(theOptions.getSignatureLevel()),
+				String.valueOf(theOptions.getCompatibilityLevel()),
+				String.valueOf(theOptions.getVerifyOnly()),
+				String.valueOf(theOptions.getValidateUnits()),
+				String.valueOf(theOptions.getAnalyzeDataRequirements()),
+				String.valueOf(theOptions.getCollapseDataRequirements()),
+				String.valueOf(CqlTranslator.class.getPackage().getImplementationVersion()));
+		return sha256(canonical);
+	}
+
+	/**
+	 * @return a hash of the CQL source and of every library it includes, or {@code null} if the library is not stored
+	 *     as a single Library resource with CQL content
+	 */
+	private static String cqlContentHash(
+			FhirContext theFhirContext,
+			DaoRegistry theDaoRegistry,
+			VersionedIdentifier theIdentifier,
+			Set<String> theIncluding) {
+		String cql = cqlSource(theFhirContext, theDaoRegistry, theIdentifier);
+		String key = theIdentifier.getId() + "|" + theIdentifier.getVersion();
+		if (cql == null || !theIncluding.add(key)) {
+			// Circular includes are a compile error, so there is nothing useful to fold in
+			return cql == null ? null : sha256(cql);
+		}
+		try {
+			return contentHash(cql, include -> cqlContentHash(theFhirContext, theDaoRegistry, include, theIncluding));
+		} finally {
+			theIncluding.remove(key);
+		}
+	}
+
+	static String contentHash(String theCql, Function<VersionedIdentifier, String> theIncludeHashes) {
+		StringBuilder canonical = new StringBuilder(theCql);
+		for (VersionedIdentifier include : includesOf(theCql)) {
+			String includeHash = theIncludeHashes.apply(include);
+			canonical
+					.append('\n')
+					.append(include.getId())
+					.append('|')
+					.append(include.getVersion())
+					.append('=')
+					.append(includeHash == null ? "" : includeHash);
+		}
+		return sha256(canonical.toString());
+	}
+
+	static List<VersionedIdentifier> includesOf(String theCql) {
+		List<VersionedIdentifier> includes = new ArrayList<>();
+		Matcher matcher = INCLUDE.matcher(theCql);
+		while (matcher.find()) {
+			String path = matcher.group(1);
+			String name = path.endsWith("\"")
+					? path.substring(path.lastIndexOf('"', path.length() - 2) + 1, path.length() - 1)
+					: path.substring(path.lastIndexOf('.') + 1);
+			includes.add(new VersionedIdentifier().withId(name).withVersion(matcher.group(2)));
+		}
+		return includes;
+	}
+
+	private static String cqlSource(
+			FhirContext theFhirContext, DaoRegistry theDaoRegistry, VersionedIdentifier theIdentifier) {
+		if (theIdentifier.getId() == null) {
+			return null;
+		}
+		SearchParameterMap map =
+				SearchParameterMap.newSynchronous().add("name", new StringParam(theIdentifier.getId()).setExact(true));
+		if (theIdentifier.getVersion() != null) {
+			map.add("version", new TokenParam(theIdentifier.getVersion()));
+		}
+		List<IBaseResource> libraries = theDaoRegistry
+				.getResourceDao("Library")
+				.search(map, new SystemRequestDetails())
+				.getAllResources();
+		if (libraries.size() != 1) {
+			return null;
+		}
+
+		FhirTerser terser = theFhirContext.newTerser();
+		for (IBase attachment : terser.getValues(libraries.get(0), "content")) {
+			String contentType = terser.getSinglePrimitiveValueOrNull(attachment, "contentType");
+			if (contentType != null && contentType.startsWith("text/cql")) {
+				return terser.getSingleValue(attachment, "data", IPrimitiveType.class)
+						.map(IPrimitiveType::getValueAsString)
+						.orElse(null);
+			}
+		}
+		return null;
+	}
+
+	private static String sha256(String theValue) {
+		return Hashing.sha256().hashString(theValue, StandardCharsets.UTF_8).toString();
+	}
+}
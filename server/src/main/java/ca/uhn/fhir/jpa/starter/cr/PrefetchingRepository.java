@@ -0,0 +1,222 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.fhirpath.IFhirPath;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.repository.HapiFhirRepository;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.util.BundleBuilder;
+import ca.uhn.fhir.util.BundleUtil;
+import ca.uhn.fhir.util.FhirTerser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Repository used for CQL evaluation when {@code hapi.fhir.cr.cql.data.prefetch_enabled} is set. Prefetching switches
+ * the retrieve settings to filter search parameters in memory, so every retrieve for a patient becomes the same "all
+ * resources of this type for this patient" search; this repository runs that search once per resource type and
+ * answers the remaining retrieves of the evaluation from the fetched Bundle.
+ * <p>
+ * Terminology is passed as {@code :in} ValueSet parameters. When the expansion of such a ValueSet is in the global
+ * ValueSet cache (or can be loaded into it from a stored expansion), the parameter is answered here: the retrieve is
+ * served from the prefetched resources, keeping those whose codings are members of the expansion according to its
+ * {@link IndexedCodeList} index. This is only done for retrieves restricted to a patient (or a resource id), so that an
+ * unfiltered retrieve never loads a whole resource type; those, and other ValueSets, are left to the server's
+ * {@code :in} search.
+ * <p>
+ * A repository instance lives for one request, so results never outlive the request that loaded them. The remembered
+ * searches are bounded by the total number of resources in their Bundles rather than by their count, so that a few
+ * patients with long histories cannot keep as much in memory as population evaluations over many patients.
+ */
+public class PrefetchingRepository extends HapiFhirRepository {
+
+	private static final Set<String> PATIENT_PARAMETERS = Set.of("patient", "subject", "_id");
+
+	private final Cache<String, IBaseBundle> searches;
+	private final Map<String, List<Code>> valueSetCache;
+	private final ValueSetCacheWarmer valueSetCacheWarmer;
+	private final Set<String> lookedUpValueSets = ConcurrentHashMap.newKeySet();
+	private final IFhirPath fhirPath;
+	private final FhirTerser terser;
+
+	public PrefetchingRepository(
+			DaoRegistry theDaoRegistry,
+			RequestDetails theRequestDetails,
+			RestfulServer theRestfulServer,
+			long theMaximumResources,
+			Map<String, List<Code>> theValueSetCache,
+			ValueSetCacheWarmer theValueSetCacheWarmer) {
+		super(theDaoRegistry, theRequestDetails, theRestfulServer);
+		this.searches = Caffeine.newBuilder()
+				.maximumWeight(theMaximumResources)
+				.<String, IBaseBundle>weigher((k, b) -> weightOf(b))
+				// The cache belongs to one request, so evict on the caller rather than on the common pool
+				.executor(Runnable::run)
+				.build();
+		this.valueSetCache = theValueSetCache;
+		this.valueSetCacheWarmer = theValueSetCacheWarmer;
+		this.fhirPath = fhirContext().newFhirPath();
+		this.terser = fhirContext().newTerser();
+	}
+
+	private int weightOf(IBaseBundle theBundle) {
+		// An empty Bundle still costs an entry, and weighing it zero would keep it forever
+		return Math.max(1, BundleUtil.toListOfResources(fhirContext(), theBundle).size());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <B extends IBaseBundle, T extends IBaseResource> B search(
+			Class<B> theBundleType,
+			Class<T> theResourceType,
+			Multimap<String, List<IQueryParameterType>> theSearchParameters,
+			Map<String, String> theHeaders) {
+		if (theHeaders != null && !theHeaders.isEmpty()) {
+			return super.search(theBundleType, theResourceType, theSearchParameters, theHeaders);
+		}
+		// Not a computing get: answering a ValueSet parameter loads the prefetched search into the same cache
+		String key = keyOf(theResourceType, theSearchParameters);
+		IBaseBundle bundle = searches.getIfPresent(key);
+		if (bundle == null) {
+			bundle = searchUncached(theBundleType, theResourceType, theSearchParameters, theHeaders);
+			searches.put(key, bundle);
+		}
+		return (B) bundle;
+	}
+
+	private <B extends IBaseBundle, T extends IBaseResource> IBaseBundle searchUncached(
+			Class<B> theBundleType,
+			Class<T> theResourceType,
+			Multimap<String, List<IQueryParameterType>> theSearchParameters,
+			Map<String, String> theHeaders) {
+		Multimap<String, List<IQueryParameterType>> remaining = ArrayListMultimap.create();
+		List<Map.Entry<RuntimeSearchParam, List<IndexedCodeList>>> memberships = new ArrayList<>();
+		if (theSearchParameters != null) {
+			for (Map.Entry<String, List<IQueryParameterType>> entry : theSearchParameters.entries()) {
+				RuntimeSearchParam searchParam =
+						fhirContext().getResourceDefinition(theResourceType).getSearchParam(entry.getKey());
+				List<IndexedCodeList> valueSets = indexedValueSets(searchParam, entry.getValue());
+				if (valueSets.isEmpty()) {
+					remaining.put(entry.getKey(), entry.getValue());
+				} else {
+					memberships.add(Map.entry(searchParam, valueSets));
+				}
+			}
+		}
+		// Answering locally reads every match of the remaining parameters, so only do it for one patient's resources
+		if (memberships.isEmpty() || remaining.keySet().stream().noneMatch(PATIENT_PARAMETERS::contains)) {
+			return super.search(theBundleType, theResourceType, theSearchParameters, theHeaders);
+		}
+
+		IBaseBundle prefetched = searches.get(
+				keyOf(theResourceType, remaining) + "#all",
+				k -> searchAllPages(theBundleType, theResourceType, remaining, theHeaders));
+		BundleBuilder builder = new BundleBuilder(fhirContext());
+		builder.setType("searchset");
+		for (IBaseResource resource : BundleUtil.toListOfResources(fhirContext(), prefetched)) {
+			if (memberships.stream().allMatch(m -> isMember(resource, m.getKey(), m.getValue()))) {
+				builder.addCollectionEntry(resource);
+			}
+		}
+		return builder.getBundle();
+	}
+
+	/**
+	 * The indexed expansions of the ValueSets in an {@code :in} token parameter, or an empty list if the parameter is
+	 * anything else or any of its ValueSets has no cached or stored expansion
+	 */
+	private List<IndexedCodeList> indexedValueSets(
+			RuntimeSearchParam theSearchParam, List<IQueryParameterType> theValues) {
+		if (theSearchParam == null || theSearchParam.getParamType() != RestSearchParameterTypeEnum.TOKEN) {
+			return List.of();
+		}
+		List<IndexedCodeList> valueSets = new ArrayList<>();
+		for (IQueryParameterType value : theValues) {
+			if (!(value instanceof TokenParam token) || token.getModifier() != TokenParamModifier.IN) {
+				return List.of();
+			}
+			String url = token.getValue();
+			if (!valueSetCache.containsKey(url) && lookedUpValueSets.add(url)) {
+				valueSetCacheWarmer.warm(List.of(url));
+			}
+			if (!(valueSetCache.get(url) instanceof IndexedCodeList valueSet)) {
+				return List.of();
+			}
+			valueSets.add(valueSet);
+		}
+		return valueSets;
+	}
+
+	private boolean isMember(
+			IBaseResource theResource, RuntimeSearchParam theSearchParam, List<IndexedCodeList> theValueSets) {
+		for (String path : theSearchParam.getPathsSplit()) {
+			for (IBase element : fhirPath.evaluate(theResource, path, IBase.class)) {
+				String type = fhirContext().getElementDefinition(element.getClass()).getName();
+				List<IBase> codings = "CodeableConcept".equals(type)
+						? terser.getValues(element, "coding")
+						: "Coding".equals(type) ? List.of(element) : List.of();
+				for (IBase coding : codings) {
+					String system = terser.getSinglePrimitiveValueOrNull(coding, "system");
+					String code = terser.getSinglePrimitiveValueOrNull(coding, "code");
+					if (theValueSets.stream().anyMatch(vs -> vs.contains(system, code))) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private <B extends IBaseBundle, T extends IBaseResource> IBaseBundle searchAllPages(
+			Class<B> theBundleType,
+			Class<T> theResourceType,
+			Multimap<String, List<IQueryParameterType>> theSearchParameters,
+			Map<String, String> theHeaders) {
+		B page = super.search(theBundleType, theResourceType, theSearchParameters, theHeaders);
+		BundleBuilder builder = new BundleBuilder(fhirContext());
+		builder.setType("searchset");
+		while (true) {
+			BundleUtil.toListOfResources(fhirContext(), page).forEach(builder::addCollectionEntry);
+			String next = BundleUtil.getLinkUrlOfType(fhirContext(), page, IBaseBundle.LINK_NEXT);
+			if (next == null) {
+				return builder.getBundle();
+			}
+			page = link(theBundleType, next);
+		}
+	}
+
+	private String keyOf(
+			Class<? extends IBaseResource> theResourceType,
+			Multimap<String, List<IQueryParameterType>> theParameters) {
+		Map<String, String> canonical = new TreeMap<>();
+		if (theParameters != null) {
+			for (Map.Entry<String, List<IQueryParameterType>> entry : theParameters.entries()) {
+				String values = entry.getValue().stream()
+						.map(p -> (p.getQueryParameterQualifier() != null ? p.getQueryParameterQualifier() : "") + "="
+								+ p.getValueAsQueryToken(fhirContext()))
+						.collect(Collectors.joining(","));
+				canonical.merge(entry.getKey(), values, (a, b) -> a + "&" + b);
+			}
+		}
+		return fhirContext().getResourceType(theResourceType) + "?" + canonical;
+	}
+}
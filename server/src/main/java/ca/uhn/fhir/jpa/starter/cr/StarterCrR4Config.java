@@ -1,6 +1,14 @@
 package ca.uhn.fhir.jpa.starter.cr;
 
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.starter.annotations.OnR4Condition;
+import ca.uhn.fhir.jpa.starter.cr.caregaps.CareGapsJobConfig;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.provider.ResourceProviderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.persistence.EntityManagerFactory;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.ApplyOperationConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.CrR4Config;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.DataRequirementsOperationConfig;
@@ -9,9 +17,14 @@ import org.opencds.cqf.fhir.cr.hapi.config.r4.ExtractOperationConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.PackageOperationConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.PopulateOperationConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.r4.QuestionnaireOperationConfig;
+import org.opencds.cqf.fhir.cr.hapi.r4.R4MeasureEvaluatorSingleFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 @Conditional({OnR4Condition.class, CrConfigCondition.class})
@@ -19,6 +32,7 @@ import org.springframework.context.annotation.Import;
 	CrCommonConfig.class,
 	CrR4Config.class,
 	ApplyOperationConfig.class,
+	CareGapsJobConfig.class,
 	DataRequirementsOperationConfig.class,
 	EvaluateOperationConfig.class,
 	ExtractOperationConfig.class,
@@ -26,4 +40,62 @@ import org.springframework.context.annotation.Import;
 	PopulateOperationConfig.class,
 	QuestionnaireOperationConfig.class
 })
-public class StarterCrR4Config {}
+public class StarterCrR4Config {
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.measure", name = "parallel_enabled", havingValue = "true")
+	public ParallelMeasureEvaluator parallelMeasureEvaluator(
+			R4MeasureEvaluatorSingleFactory theMeasureServiceFactory,
+			DaoRegistry theDaoRegistry,
+			MeasureProperties theMeasureProperties,
+			ObjectProvider<MeterRegistry> theMeterRegistry) {
+		return new ParallelMeasureEvaluator(
+				new MeasureServiceSubjectEvaluator(theMeasureServiceFactory),
+				new SubjectResolver(theDaoRegistry),
+				CqlExecutorFactory.createParallelMeasureExecutor(
+						theMeasureProperties, theMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry)),
+				theMeasureProperties);
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.measure", name = "parallel_enabled", havingValue = "true")
+	public ParallelMeasureOperationProvider parallelMeasureOperationProvider(
+			ParallelMeasureEvaluator theParallelMeasureEvaluator, ResourceProviderFactory theResourceProviderFactory) {
+		var provider = new ParallelMeasureOperationProvider(theParallelMeasureEvaluator);
+		theResourceProviderFactory.addSupplier(() -> provider);
+		return provider;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.cql.cache", name = "results_enabled", havingValue = "true")
+	public CqlResultCache cqlResultCache(
+			CqlCacheProperties theCqlCacheProperties, ObjectProvider<MeterRegistry> theMeterRegistry) {
+		CqlResultCache cache = new CqlResultCache(theCqlCacheProperties);
+		cache.bindTo(theMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+		return cache;
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.cql.cache", name = "results_enabled", havingValue = "true")
+	public CqlStoredVersions cqlStoredVersions(
+			EntityManagerFactory theEntityManagerFactory,
+			PlatformTransactionManager theTransactionManager,
+			CqlCacheProperties theCqlCacheProperties) {
+		return new CqlStoredVersions(
+				theEntityManagerFactory,
+				theTransactionManager,
+				theCqlCacheProperties.getResults_shared_resource_types());
+	}
+
+	@Bean
+	@ConditionalOnProperty(prefix = "hapi.fhir.cr.cql.cache", name = "results_enabled", havingValue = "true")
+	public CqlResultCacheInterceptor cqlResultCacheInterceptor(
+			FhirContext theFhirContext,
+			CqlResultCache theCqlResultCache,
+			CqlStoredVersions theCqlStoredVersions,
+			RestfulServer theRestfulServer) {
+		var interceptor = new CqlResultCacheInterceptor(theFhirContext, theCqlResultCache, theCqlStoredVersions);
+		theRestfulServer.registerInterceptor(interceptor);
+		return interceptor;
+	}
+}
@@ -0,0 +1,91 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.SearchTotalModeEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Lists;
+import org.hl7.fhir.r4.model.Group;
+import org.hl7.fhir.r4.model.IdType;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Expands the {@code subject} parameter of population-level operations into individual Patient references: a Group
+ * yields its active Patient members, a Patient yields itself, and no subject yields every Patient on the server.
+ * <p>
+ * The subjects are handed out in chunks. Every Patient on the server is read page by page from a persisted search,
+ * like the Batch2 id-loading steps do, so neither the synchronous search limit nor the heap bounds the population. If
+ * the search ends before its reported total, the iterator fails instead of returning a partial population.
+ */
+public class SubjectResolver {
+
+	private final DaoRegistry daoRegistry;
+
+	public SubjectResolver(DaoRegistry theDaoRegistry) {
+		this.daoRegistry = theDaoRegistry;
+	}
+
+	/**
+	 * The returned iterator is not thread-safe; callers that share it between workers must synchronize on it.
+	 *
+	 * @param theRequestDetails the request the Group and Patients are read under
+	 */
+	public Iterator<List<String>> resolveInChunks(
+			String theSubject, int theChunkSize, RequestDetails theRequestDetails) {
+		int chunkSize = Math.max(1, theChunkSize);
+		if (theSubject == null || theSubject.isBlank()) {
+			return allPatients(chunkSize, theRequestDetails);
+		}
+		return Lists.partition(resolveMembers(theSubject, theRequestDetails), chunkSize).iterator();
+	}
+
+	private Iterator<List<String>> allPatients(int theChunkSize, RequestDetails theRequestDetails) {
+		// An accurate total comes from a count query, so a capped fetch size cannot hide missing Patients
+		SearchParameterMap map = new SearchParameterMap();
+		map.setSearchTotalMode(SearchTotalModeEnum.ACCURATE);
+		IBundleProvider results = daoRegistry.getResourceDao("Patient").search(map, theRequestDetails);
+		return new AbstractIterator<>() {
+			private int offset;
+
+			@Override
+			protected List<String> computeNext() {
+				int from = offset;
+				offset += theChunkSize;
+				List<String> chunk = results.getResources(from, offset).stream()
+						.map(resource -> "Patient/" + resource.getIdElement().getIdPart())
+						.toList();
+				if (!chunk.isEmpty()) {
+					return chunk;
+				}
+				Integer total = results.size();
+				if (total != null && from < total) {
+					throw new InternalErrorException("The Patient search ended after " + from + " of " + total
+							+ " results; refusing to evaluate a partial population");
+				}
+				return endOfData();
+			}
+		};
+	}
+
+	private List<String> resolveMembers(String theSubject, RequestDetails theRequestDetails) {
+		IdType subject = new IdType(theSubject);
+		if ("Patient".equals(subject.getResourceType())) {
+			return List.of(subject.toUnqualifiedVersionless().getValue());
+		}
+		if (!"Group".equals(subject.getResourceType())) {
+			throw new InvalidRequestException("subject must reference a Patient or a Group: " + theSubject);
+		}
+		Group group = (Group) daoRegistry.getResourceDao("Group").read(subject, theRequestDetails);
+		return group.getMember().stream()
+				.filter(member -> !member.getInactive())
+				.map(member -> member.getEntity().getReference())
+				.filter(reference -> reference != null && reference.startsWith("Patient/"))
+				.toList();
+	}
+}
@@ -0,0 +1,119 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.opencds.cqf.cql.engine.runtime.Code;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the stored expansions of ValueSet resources into the global CQL ValueSet cache, so that the first evaluation
+ * touching a large ValueSet does not pay for reading and converting its expansion. ValueSets without a stored
+ * expansion are skipped and are expanded on demand as before.
+ */
+public class ValueSetCacheWarmer {
+	private static final Logger ourLog = LoggerFactory.getLogger(ValueSetCacheWarmer.class);
+
+	private static final int PAGE_SIZE = 100;
+
+	private final FhirContext fhirContext;
+	private final DaoRegistry daoRegistry;
+	private final Map<String, List<Code>> valueSetCache;
+
+	public ValueSetCacheWarmer(
+			FhirContext theFhirContext, DaoRegistry theDaoRegistry, Map<String, List<Code>> theValueSetCache) {
+		this.fhirContext = theFhirContext;
+		this.daoRegistry = theDaoRegistry;
+		this.valueSetCache = theValueSetCache;
+	}
+
+	/**
+	 * Caches the pre-expanded ValueSets with the given canonical URLs, looking each one up through the {@code url}
+	 * search parameter
+	 *
+	 * @return the number of ValueSets added to the cache
+	 */
+	public int warm(Collection<String> theUrls) {
+		FhirTerser terser = fhirContext.newTerser();
+		IFhirResourceDao<?> dao = daoRegistry.getResourceDao("ValueSet");
+		int warmed = 0;
+		for (String url : theUrls) {
+			if (valueSetCache.containsKey(url)) {
+				continue;
+			}
+			SearchParameterMap map = SearchParameterMap.newSynchronous("url", new UriParam(url));
+			for (IBaseResource valueSet : dao.search(map, new SystemRequestDetails()).getAllResources()) {
+				if (cache(terser, valueSet)) {
+					warmed++;
+					break;
+				}
+			}
+		}
+		ourLog.info("Warmed the CQL ValueSet cache with {} of {} expansions", warmed, theUrls.size());
+		return warmed;
+	}
+
+	/**
+	 * Caches every pre-expanded ValueSet on the server
+	 *
+	 * @return the number of ValueSets added to the cache
+	 */
+	public int warmAll() {
+		FhirTerser terser = fhirContext.newTerser();
+		IBundleProvider results =
+				daoRegistry.getResourceDao("ValueSet").search(new SearchParameterMap(), new SystemRequestDetails());
+		int warmed = 0;
+		for (int from = 0; ; from += PAGE_SIZE) {
+			List<IBaseResource> page = results.getResources(from, from + PAGE_SIZE);
+			if (page.isEmpty()) {
+				break;
+			}
+			for (IBaseResource valueSet : page) {
+				if (cache(terser, valueSet)) {
+					warmed++;
+				}
+			}
+		}
+		ourLog.info("Warmed the CQL ValueSet cache with {} expansions", warmed);
+		return warmed;
+	}
+
+	private boolean cache(FhirTerser theTerser, IBaseResource theValueSet) {
+		String url = theTerser.getSinglePrimitiveValueOrNull(theValueSet, "url");
+		if (url == null || valueSetCache.containsKey(url)) {
+			return false;
+		}
+		List<Code> codes = new ArrayList<>();
+		theTerser.getValues(theValueSet, "expansion.contains").forEach(c -> addCodes(theTerser, c, codes));
+		if (codes.isEmpty()) {
+			return false;
+		}
+		valueSetCache.put(url, List.copyOf(codes));
+		return true;
+	}
+
+	private static void addCodes(FhirTerser theTerser, IBase theContains, List<Code> theCodes) {
+		String code = theTerser.getSinglePrimitiveValueOrNull(theContains, "code");
+		if (code != null && !"true".equals(theTerser.getSinglePrimitiveValueOrNull(theContains, "abstract"))) {
+			theCodes.add(new Code()
+					.withCode(code)
+					.withSystem(theTerser.getSinglePrimitiveValueOrNull(theContains, "system"))
+					.withVersion(theTerser.getSinglePrimitiveValueOrNull(theContains, "version"))
+					.withDisplay(theTerser.getSinglePrimitiveValueOrNull(theContains, "display")));
+		}
+		theTerser.getValues(theContains, "contains").forEach(c -> addCodes(theTerser, c, theCodes));
+	}
+}
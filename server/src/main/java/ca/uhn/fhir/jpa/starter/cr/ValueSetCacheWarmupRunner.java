@@ -0,0 +1,91 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.util.FhirTerser;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the expansions of every ValueSet referenced by a stored Library into the global CQL ValueSet cache at startup.
+ * Application runners execute after all beans (including the {@code packageInstaller}, which installs the configured
+ * implementation guides) have been created, and Spring Boot only reports the application as ready once they return,
+ * so the readiness probe keeps traffic away until the cache is warm. A failed warm-up is logged and startup carries on.
+ */
+public class ValueSetCacheWarmupRunner implements ApplicationRunner {
+	private static final Logger ourLog = LoggerFactory.getLogger(ValueSetCacheWarmupRunner.class);
+
+	private static final int PAGE_SIZE = 100;
+
+	private final FhirContext fhirContext;
+	private final DaoRegistry daoRegistry;
+	private final ValueSetCacheWarmer valueSetCacheWarmer;
+
+	public ValueSetCacheWarmupRunner(
+			FhirContext theFhirContext, DaoRegistry theDaoRegistry, ValueSetCacheWarmer theValueSetCacheWarmer) {
+		this.fhirContext = theFhirContext;
+		this.daoRegistry = theDaoRegistry;
+		this.valueSetCacheWarmer = theValueSetCacheWarmer;
+	}
+
+	@Override
+	public void run(ApplicationArguments theArgs) {
+		long start = System.currentTimeMillis();
+		try {
+			Set<String> referenced = referencedValueSets();
+			int warmed = valueSetCacheWarmer.warm(referenced);
+			ourLog.info(
+					"ValueSet cache warm-up loaded {} of {} ValueSets referenced by Libraries in {} ms",
+					warmed,
+					referenced.size(),
+					System.currentTimeMillis() - start);
+		} catch (RuntimeException e) {
+			// A cold cache only costs the first evaluations some time, which is no reason to fail startup
+			ourLog.error("ValueSet cache warm-up failed, ValueSets will be expanded on demand", e);
+		}
+	}
+
+	Set<String> referencedValueSets() {
+		FhirTerser terser = fhirContext.newTerser();
+		IBundleProvider libraries =
+				daoRegistry.getResourceDao("Library").search(new SearchParameterMap(), new SystemRequestDetails());
+		Set<String> urls = new HashSet<>();
+		for (int from = 0; ; from += PAGE_SIZE) {
+			List<IBaseResource> page = libraries.getResources(from, from + PAGE_SIZE);
+			if (page.isEmpty()) {
+				break;
+			}
+			for (IBaseResource library : page) {
+				for (IBase codeFilter : terser.getValues(library, "dataRequirement.codeFilter")) {
+					addCanonical(urls, terser.getSinglePrimitiveValueOrNull(codeFilter, "valueSet"));
+				}
+				for (IBase artifact : terser.getValues(library, "relatedArtifact")) {
+					String resource = terser.getSinglePrimitiveValueOrNull(artifact, "resource");
+					if (resource != null && resource.contains("/ValueSet/")) {
+						addCanonical(urls, resource);
+					}
+				}
+			}
+		}
+		return urls;
+	}
+
+	private static void addCanonical(Set<String> theUrls, String theCanonical) {
+		if (theCanonical != null && !theCanonical.isBlank()) {
+			// The ValueSet cache is keyed by the unversioned canonical URL
+			int bar = theCanonical.indexOf('|');
+			theUrls.add(bar < 0 ? theCanonical : theCanonical.substring(0, bar));
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A work chunk of a care gaps job: the Patient references evaluated together by one step execution
+ */
+public class CareGapsChunkJson implements IModelJson {
+
+	@JsonProperty("subjects")
+	private List<String> subjects = new ArrayList<>();
+
+	public CareGapsChunkJson() {}
+
+	public CareGapsChunkJson(List<String> theSubjects) {
+		subjects = new ArrayList<>(theSubjects);
+	}
+
+	public List<String> getSubjects() {
+		return subjects;
+	}
+
+	public void setSubjects(List<String> theSubjects) {
+		subjects = theSubjects;
+	}
+}
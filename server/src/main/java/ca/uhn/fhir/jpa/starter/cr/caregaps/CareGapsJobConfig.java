@@ -0,0 +1,81 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.batch2.api.IJobCoordinator;
+import ca.uhn.fhir.batch2.api.IJobParametersValidator;
+import ca.uhn.fhir.batch2.model.JobDefinition;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.starter.annotations.OnR4Condition;
+import ca.uhn.fhir.jpa.starter.cr.CareGapsProperties;
+import ca.uhn.fhir.jpa.starter.cr.CrConfigCondition;
+import ca.uhn.fhir.jpa.starter.cr.LocalOperationInvoker;
+import ca.uhn.fhir.jpa.starter.cr.SubjectResolver;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.provider.ResourceProviderFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs {@code $care-gaps} for large populations as a Batch2 job, started through
+ * {@code Measure/$care-gaps-job} and monitored through {@code /control/jobs}
+ */
+@Configuration
+@Conditional({OnR4Condition.class, CrConfigCondition.class})
+@ConditionalOnProperty(prefix = "hapi.fhir.cr.caregaps", name = "job_enabled", havingValue = "true")
+public class CareGapsJobConfig {
+
+	public static final String JOB_CARE_GAPS = "CARE_GAPS";
+	public static final String RESULT_TAG_SYSTEM = "http://hapifhir.io/fhir/CodeSystem/care-gaps-job";
+
+	@Bean
+	public JobDefinition<CareGapsJobParameters> careGapsJobDefinition(
+			CareGapsProperties theCareGapsProperties, RestfulServer theRestfulServer, DaoRegistry theDaoRegistry) {
+		return JobDefinition.newBuilder()
+				.setJobDefinitionId(JOB_CARE_GAPS)
+				.setJobDescription("Evaluate care gaps for a population")
+				.setJobDefinitionVersion(1)
+				.setParametersType(CareGapsJobParameters.class)
+				.setParametersValidator(careGapsJobParametersValidator())
+				.addFirstStep(
+						"generate-chunks",
+						"Split the subjects into chunks",
+						CareGapsChunkJson.class,
+						new GenerateCareGapsChunksStep(
+								new SubjectResolver(theDaoRegistry), theCareGapsProperties.getJob_chunk_size()))
+				.addLastStep(
+						"evaluate-care-gaps",
+						"Evaluate and store care gaps for a chunk of subjects",
+						new EvaluateCareGapsStep(new LocalOperationInvoker(theRestfulServer), theDaoRegistry))
+				.build();
+	}
+
+	@Bean
+	public CareGapsJobProvider careGapsJobProvider(
+			IJobCoordinator theJobCoordinator, ResourceProviderFactory theResourceProviderFactory) {
+		var provider = new CareGapsJobProvider(theJobCoordinator);
+		theResourceProviderFactory.addSupplier(() -> provider);
+		return provider;
+	}
+
+	private static IJobParametersValidator<CareGapsJobParameters> careGapsJobParametersValidator() {
+		return (theRequestDetails, theParameters) -> {
+			List<String> errors = new ArrayList<>();
+			if (theParameters.getPeriodStart() == null || theParameters.getPeriodEnd() == null) {
+				errors.add("periodStart and periodEnd are required");
+			}
+			if (theParameters.getStatus().isEmpty()) {
+				errors.add("At least one status is required");
+			}
+			if (theParameters.getMeasureId().isEmpty()
+					&& theParameters.getMeasureUrl().isEmpty()
+					&& theParameters.getMeasureIdentifier().isEmpty()) {
+				errors.add("At least one measureId, measureUrl or measureIdentifier is required");
+			}
+			return errors;
+		};
+	}
+}
@@ -0,0 +1,97 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.model.api.IModelJson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parameters of a {@value CareGapsJobConfig#JOB_CARE_GAPS} job; these mirror the {@code $care-gaps} operation
+ */
+public class CareGapsJobParameters implements IModelJson {
+
+	@JsonProperty("periodStart")
+	private String periodStart;
+
+	@JsonProperty("periodEnd")
+	private String periodEnd;
+
+	@JsonProperty("subject")
+	private String subject;
+
+	@JsonProperty("status")
+	private List<String> status = new ArrayList<>();
+
+	@JsonProperty("measureId")
+	private List<String> measureId = new ArrayList<>();
+
+	@JsonProperty("measureUrl")
+	private List<String> measureUrl = new ArrayList<>();
+
+	@JsonProperty("measureIdentifier")
+	private List<String> measureIdentifier = new ArrayList<>();
+
+	public String getPeriodStart() {
+		return periodStart;
+	}
+
+	public CareGapsJobParameters setPeriodStart(String thePeriodStart) {
+		periodStart = thePeriodStart;
+		return this;
+	}
+
+	public String getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public CareGapsJobParameters setPeriodEnd(String thePeriodEnd) {
+		periodEnd = thePeriodEnd;
+		return this;
+	}
+
+	public String getSubject() {
+		return subject;
+	}
+
+	public CareGapsJobParameters setSubject(String theSubject) {
+		subject = theSubject;
+		return this;
+	}
+
+	public List<String> getStatus() {
+		return status;
+	}
+
+	public CareGapsJobParameters setStatus(List<String> theStatus) {
+		status = theStatus;
+		return this;
+	}
+
+	public List<String> getMeasureId() {
+		return measureId;
+	}
+
+	public CareGapsJobParameters setMeasureId(List<String> theMeasureId) {
+		measureId = theMeasureId;
+		return this;
+	}
+
+	public List<String> getMeasureUrl() {
+		return measureUrl;
+	}
+
+	public CareGapsJobParameters setMeasureUrl(List<String> theMeasureUrl) {
+		measureUrl = theMeasureUrl;
+		return this;
+	}
+
+	public List<String> getMeasureIdentifier() {
+		return measureIdentifier;
+	}
+
+	public CareGapsJobParameters setMeasureIdentifier(List<String> theMeasureIdentifier) {
+		measureIdentifier = theMeasureIdentifier;
+		return this;
+	}
+}
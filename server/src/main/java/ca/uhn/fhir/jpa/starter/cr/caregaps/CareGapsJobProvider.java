@@ -0,0 +1,62 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.batch2.api.IJobCoordinator;
+import ca.uhn.fhir.batch2.model.JobInstanceStartRequest;
+import ca.uhn.fhir.jpa.batch.models.Batch2JobStartResponse;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.annotation.OperationParam;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import org.hl7.fhir.r4.model.Measure;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.StringType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CareGapsJobProvider {
+
+	private final IJobCoordinator jobCoordinator;
+
+	public CareGapsJobProvider(IJobCoordinator theJobCoordinator) {
+		this.jobCoordinator = theJobCoordinator;
+	}
+
+	/**
+	 * Starts a care gaps job with the parameters of {@code $care-gaps}. The returned {@code jobId} can be followed
+	 * through {@code /control/jobs}; the result Bundles are found with {@code Bundle?_tag=[resultTag]}.
+	 */
+	@Operation(name = "$care-gaps-job", type = Measure.class)
+	public Parameters startCareGapsJob(
+			RequestDetails theRequestDetails,
+			@OperationParam(name = "periodStart", min = 1, max = 1) String thePeriodStart,
+			@OperationParam(name = "periodEnd", min = 1, max = 1) String thePeriodEnd,
+			@OperationParam(name = "subject", max = 1) String theSubject,
+			@OperationParam(name = "status", min = 1) List<String> theStatus,
+			@OperationParam(name = "measureId") List<String> theMeasureId,
+			@OperationParam(name = "measureUrl") List<String> theMeasureUrl,
+			@OperationParam(name = "measureIdentifier") List<String> theMeasureIdentifier) {
+		var parameters = new CareGapsJobParameters()
+				.setPeriodStart(thePeriodStart)
+				.setPeriodEnd(thePeriodEnd)
+				.setSubject(theSubject)
+				.setStatus(listOf(theStatus))
+				.setMeasureId(listOf(theMeasureId))
+				.setMeasureUrl(listOf(theMeasureUrl))
+				.setMeasureIdentifier(listOf(theMeasureIdentifier));
+
+		var request = new JobInstanceStartRequest();
+		request.setJobDefinitionId(CareGapsJobConfig.JOB_CARE_GAPS);
+		request.setParameters(parameters);
+		Batch2JobStartResponse response = jobCoordinator.startInstance(theRequestDetails, request);
+
+		var result = new Parameters();
+		result.addParameter("jobId", new StringType(response.getInstanceId()));
+		result.addParameter(
+				"resultTag", new StringType(CareGapsJobConfig.RESULT_TAG_SYSTEM + "|" + response.getInstanceId()));
+		return result;
+	}
+
+	private static List<String> listOf(List<String> theValues) {
+		return theValues == null ? new ArrayList<>() : new ArrayList<>(theValues);
+	}
+}
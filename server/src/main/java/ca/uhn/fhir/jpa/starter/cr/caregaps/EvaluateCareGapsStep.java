@@ -0,0 +1,86 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.batch2.api.IJobDataSink;
+import ca.uhn.fhir.batch2.api.ILastJobStepWorker;
+import ca.uhn.fhir.batch2.api.JobExecutionFailedException;
+import ca.uhn.fhir.batch2.api.RunOutcome;
+import ca.uhn.fhir.batch2.api.StepExecutionDetails;
+import ca.uhn.fhir.batch2.api.VoidModel;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.starter.cr.LocalOperationInvoker;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.Nonnull;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.Parameters;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs {@code Measure/$care-gaps} for each Patient of a chunk and stores every returned gaps-in-care Bundle, tagged
+ * with {@link CareGapsJobConfig#RESULT_TAG_SYSTEM} and the job instance id so that the results of one job can be
+ * retrieved with {@code Bundle?_tag=...}. Each Bundle is stored under an id derived from the instance, the subject
+ * and its position in the response, so a chunk that Batch2 retries after a failure overwrites its earlier results
+ * instead of duplicating them.
+ */
+public class EvaluateCareGapsStep implements ILastJobStepWorker<CareGapsJobParameters, CareGapsChunkJson> {
+
+	private final LocalOperationInvoker operationInvoker;
+	private final DaoRegistry daoRegistry;
+
+	public EvaluateCareGapsStep(LocalOperationInvoker theOperationInvoker, DaoRegistry theDaoRegistry) {
+		this.operationInvoker = theOperationInvoker;
+		this.daoRegistry = theDaoRegistry;
+	}
+
+	@Nonnull
+	@Override
+	public RunOutcome run(
+			@Nonnull StepExecutionDetails<CareGapsJobParameters, CareGapsChunkJson> theStepExecutionDetails,
+			@Nonnull IJobDataSink<VoidModel> theDataSink)
+			throws JobExecutionFailedException {
+		CareGapsJobParameters parameters = theStepExecutionDetails.getParameters();
+		String instanceId = theStepExecutionDetails.getInstance().getInstanceId();
+
+		int stored = 0;
+		for (String subject : theStepExecutionDetails.getData().getSubjects()) {
+			Parameters result = operationInvoker.invoke(
+					"/Measure/$care-gaps", operationParameters(parameters, subject), Parameters.class);
+			int position = 0;
+			for (Parameters.ParametersParameterComponent parameter : result.getParameter()) {
+				if (parameter.getResource() instanceof Bundle bundle) {
+					bundle.setId(new IdType("Bundle", resultId(instanceId, subject, position++)));
+					bundle.getMeta().addTag(CareGapsJobConfig.RESULT_TAG_SYSTEM, instanceId, null);
+					daoRegistry.getResourceDao(Bundle.class).update(bundle, new SystemRequestDetails());
+					stored++;
+				}
+			}
+		}
+		return new RunOutcome(stored);
+	}
+
+	/**
+	 * Subject ids may be up to 64 characters themselves, so they are hashed to keep the result id within the limit
+	 */
+	static String resultId(String theInstanceId, String theSubject, int thePosition) {
+		String key = theSubject + "|" + thePosition;
+		return theInstanceId + "-"
+				+ Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString().substring(0, 16);
+	}
+
+	static Map<String, List<String>> operationParameters(CareGapsJobParameters theParameters, String theSubject) {
+		Map<String, List<String>> parameters = new LinkedHashMap<>();
+		parameters.put("periodStart", List.of(theParameters.getPeriodStart()));
+		parameters.put("periodEnd", List.of(theParameters.getPeriodEnd()));
+		parameters.put("subject", List.of(theSubject));
+		parameters.put("status", theParameters.getStatus());
+		parameters.put("measureId", theParameters.getMeasureId());
+		parameters.put("measureUrl", theParameters.getMeasureUrl());
+		parameters.put("measureIdentifier", theParameters.getMeasureIdentifier());
+		return parameters;
+	}
+}
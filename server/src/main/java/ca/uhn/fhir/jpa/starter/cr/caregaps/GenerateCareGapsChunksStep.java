@@ -0,0 +1,54 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.batch2.api.IFirstJobStepWorker;
+import ca.uhn.fhir.batch2.api.IJobDataSink;
+import ca.uhn.fhir.batch2.api.JobExecutionFailedException;
+import ca.uhn.fhir.batch2.api.RunOutcome;
+import ca.uhn.fhir.batch2.api.StepExecutionDetails;
+import ca.uhn.fhir.batch2.api.VoidModel;
+import ca.uhn.fhir.jpa.starter.cr.SubjectResolver;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import jakarta.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Resolves the job subject into Patients and emits them in chunks of {@code hapi.fhir.cr.caregaps.job_chunk_size} as
+ * they are paged in, so the population is never held in memory at once
+ */
+public class GenerateCareGapsChunksStep implements IFirstJobStepWorker<CareGapsJobParameters, CareGapsChunkJson> {
+	private static final Logger ourLog = LoggerFactory.getLogger(GenerateCareGapsChunksStep.class);
+
+	private final SubjectResolver subjectResolver;
+	private final int chunkSize;
+
+	public GenerateCareGapsChunksStep(SubjectResolver theSubjectResolver, int theChunkSize) {
+		this.subjectResolver = theSubjectResolver;
+		this.chunkSize = Math.max(1, theChunkSize);
+	}
+
+	@Nonnull
+	@Override
+	public RunOutcome run(
+			@Nonnull StepExecutionDetails<CareGapsJobParameters, VoidModel> theStepExecutionDetails,
+			@Nonnull IJobDataSink<CareGapsChunkJson> theDataSink)
+			throws JobExecutionFailedException {
+		Iterator<List<String>> chunks = subjectResolver.resolveInChunks(
+				theStepExecutionDetails.getParameters().getSubject(), chunkSize, new SystemRequestDetails());
+		int subjects = 0;
+		while (chunks.hasNext()) {
+			List<String> chunk = chunks.next();
+			theDataSink.accept(new CareGapsChunkJson(chunk));
+			subjects += chunk.size();
+		}
+		ourLog.info(
+				"Care gaps job {} split {} subjects into chunks of {}",
+				theStepExecutionDetails.getInstance().getInstanceId(),
+				subjects,
+				chunkSize);
+		return new RunOutcome(subjects);
+	}
+}
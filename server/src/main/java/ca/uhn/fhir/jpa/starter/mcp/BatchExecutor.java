@@ -0,0 +1,214 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Runs the entries of an MCP batch tool call on a bounded pool. Reads and searches are independent and run
+ * concurrently; creates run one after another, in request order, on a single worker so that later entries can rely on
+ * earlier ones (e.g. conditional references), while still overlapping with the reads.
+ * <p>
+ * Reads that miss the batch deadline are cancelled. Creates are never interrupted, since a create may still commit
+ * after the caller gives up: creates that had not started by the deadline are skipped, and the one in flight is
+ * reported with an unknown status so that the client checks before retrying it.
+ */
+public class BatchExecutor implements AutoCloseable {
+
+	static final String TIMED_OUT = "Batch entry did not complete in time";
+	static final String NOT_STARTED = "Batch entry was not started before the batch timed out";
+	static final String STATUS_UNKNOWN =
+			"Create did not complete in time and may still commit; its status is unknown, check before retrying";
+
+	private final ThreadPoolExecutor executor;
+	private final int maxRequests;
+	private final Duration timeout;
+
+	/**
+	 * A create entry. Whichever of the create worker and the caller claims it first decides whether it runs.
+	 */
+	private record Create(int index, CompletableFuture<McpSchema.CallToolResult> result, AtomicBoolean claimed) {
+		Create(int index) {
+			this(index, new CompletableFuture<>(), new AtomicBoolean());
+		}
+	}
+
+	public BatchExecutor(int parallelism, int queueCapacity, int maxRequests, Duration timeout) {
+		this.executor = new ThreadPoolExecutor(
+				parallelism,
+				parallelism,
+				60,
+				TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+				new BasicThreadFactory.Builder()
+						.namingPattern("mcp-batch-%d")
+						.daemon(true)
+						.build());
+		this.executor.allowCoreThreadTimeOut(true);
+		this.maxRequests = maxRequests;
+		this.timeout = timeout;
+	}
+
+	public int getMaxRequests() {
+		return maxRequests;
+	}
+
+	/**
+	 * @return one result per request, in request order
+	 */
+	public List<McpSchema.CallToolResult> execute(
+			List<Map<String, Object>> requests,
+			BiFunction<Map<String, Object>, Interaction, McpSchema.CallToolResult> call) {
+		if (requests.size() > maxRequests) {
+			throw new IllegalArgumentException(
+					"A batch may contain at most " + maxRequests + " requests, got " + requests.size());
+		}
+
+		// Only the calling thread writes here; workers hand their results back through the futures
+		McpSchema.CallToolResult[] results = new McpSchema.CallToolResult[requests.size()];
+		Map<Integer, Future<McpSchema.CallToolResult>> reads = new LinkedHashMap<>();
+		List<Create> creates = new ArrayList<>();
+
+		for (int i = 0; i < requests.size(); i++) {
+			Map<String, Object> request = requests.get(i);
+			Interaction interaction = interactionOf(request);
+			if (interaction == null) {
+				results[i] = CallToolResultFactory.failure(
+						"Unsupported batch interaction '" + request.get("interaction") + "'; use read, search or create");
+			} else if (interaction == Interaction.CREATE) {
+				creates.add(new Create(i));
+			} else {
+				try {
+					reads.put(i, executor.submit(() -> call.apply(request, interaction)));
+				} catch (RejectedExecutionException e) {
+					results[i] = busy();
+				}
+			}
+		}
+		if (!creates.isEmpty()) {
+			try {
+				executor.execute(() -> runCreates(creates, requests, call));
+			} catch (RejectedExecutionException e) {
+				creates.forEach(create -> results[create.index()] = busy());
+				creates.clear();
+			}
+		}
+
+		long deadline = System.nanoTime() + timeout.toNanos();
+		boolean interrupted = false;
+		for (Map.Entry<Integer, Future<McpSchema.CallToolResult>> read : reads.entrySet()) {
+			Future<McpSchema.CallToolResult> future = read.getValue();
+			if (interrupted) {
+				future.cancel(true);
+				results[read.getKey()] = CallToolResultFactory.failure(TIMED_OUT);
+				continue;
+			}
+			try {
+				results[read.getKey()] = future.get(remaining(deadline), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException | CancellationException e) {
+				future.cancel(true);
+				results[read.getKey()] = CallToolResultFactory.failure(TIMED_OUT);
+			} catch (ExecutionException e) {
+				results[read.getKey()] = failure(e);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				future.cancel(true);
+				results[read.getKey()] = CallToolResultFactory.failure(TIMED_OUT);
+			}
+		}
+		for (Create create : creates) {
+			results[create.index()] = interrupted ? abandon(create) : await(create, deadline);
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return List.of(results);
+	}
+
+	private McpSchema.CallToolResult await(Create create, long deadline) {
+		try {
+			return create.result().get(remaining(deadline), TimeUnit.NANOSECONDS);
+		} catch (TimeoutException e) {
+			return abandon(create);
+		} catch (ExecutionException e) {
+			return failure(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return abandon(create);
+		}
+	}
+
+	/**
+	 * Gives up on a create: if the worker has not claimed it yet it never will, otherwise it is running or finished.
+	 */
+	private static McpSchema.CallToolResult abandon(Create create) {
+		if (create.claimed().compareAndSet(false, true)) {
+			return CallToolResultFactory.failure(NOT_STARTED);
+		}
+		McpSchema.CallToolResult done = create.result().getNow(null);
+		return done != null ? done : CallToolResultFactory.failure(STATUS_UNKNOWN);
+	}
+
+	private static void runCreates(
+			List<Create> creates,
+			List<Map<String, Object>> requests,
+			BiFunction<Map<String, Object>, Interaction, McpSchema.CallToolResult> call) {
+		for (Create create : creates) {
+			if (!create.claimed().compareAndSet(false, true)) {
+				// The caller gave up on this entry and every later one
+				return;
+			}
+			try {
+				create.result().complete(call.apply(requests.get(create.index()), Interaction.CREATE));
+			} catch (RuntimeException | Error e) {
+				create.result().completeExceptionally(e);
+			}
+		}
+	}
+
+	private static long remaining(long deadline) {
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+	private static McpSchema.CallToolResult failure(ExecutionException e) {
+		return CallToolResultFactory.failure("Unexpected error: " + e.getCause().getMessage());
+	}
+
+	private static McpSchema.CallToolResult busy() {
+		return CallToolResultFactory.failure("Server is busy; retry the batch later");
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private static Interaction interactionOf(Map<String, Object> request) {
+		if (!(request.get("interaction") instanceof String name)) {
+			return null;
+		}
+		return switch (name.toLowerCase(Locale.ROOT)) {
+			case "read" -> Interaction.READ;
+			case "search" -> Interaction.SEARCH;
+			case "create" -> Interaction.CREATE;
+			default -> null;
+		};
+	}
+}
@@ -2,23 +2,57 @@ package ca.uhn.fhir.jpa.starter.mcp;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
 import io.modelcontextprotocol.spec.McpSchema;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
+import java.util.List;
 
 @Component
 public class CallToolResultFactory {
 
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
 	public static McpSchema.CallToolResult success(
 			String resourceType, Interaction interaction, String response, int status) {
-		Map<String, Object> payload = Map.of(
-				"resourceType", resourceType,
-				"interaction", interaction,
-				"response", response,
-				"status", status);
+		return success(resourceType, interaction, response, status, null, null);
+	}
+
+	/**
+	 * Builds the tool result envelope. The FHIR response body is already JSON produced by the FHIR parser, so it is
+	 * written verbatim as a nested object rather than re-escaped as a string.
+	 *
+	 * @param cursor continuation token for the next page of a search, or {@code null} if there are no more pages
+	 * @param truncation what the size cap removed from the response, or {@code null} if it was returned in full
+	 */
+	public static McpSchema.CallToolResult success(
+			String resourceType,
+			Interaction interaction,
+			String response,
+			int status,
+			SearchCursor cursor,
+			ResultSizeLimiter.Truncation truncation) {
+		ObjectNode payload = objectMapper.createObjectNode();
+		payload.put("resourceType", resourceType);
+		payload.putPOJO("interaction", interaction);
+		if (isJsonValue(response) && (truncation == null || !truncation.bodyCut())) {
+			payload.putRawValue("response", new RawValue(response));
+		} else {
+			payload.put("response", response);
+		}
+		payload.put("status", status);
+		if (cursor != null) {
+			payload.put("cursor", cursor.encode());
+		}
+		if (truncation != null) {
+			ObjectNode truncated = payload.putObject("truncated");
+			truncated.put("originalLength", truncation.originalLength());
+			truncated.put("omittedEntries", truncation.omittedEntries());
+			truncated.put("bodyCut", truncation.bodyCut());
+		}
 
-		ObjectMapper objectMapper = new ObjectMapper();
 		String jacksonData;
 		try {
 			jacksonData = objectMapper.writeValueAsString(payload);
@@ -31,10 +65,63 @@ public class CallToolResultFactory {
 				.build();
 	}
 
+	/**
+	 * Combines the results of a batch tool call into one envelope. Entry envelopes are nested as raw JSON, in the same
+	 * order as the batch requests; the batch itself only fails if every entry failed.
+	 */
+	public static McpSchema.CallToolResult batch(List<McpSchema.CallToolResult> results) {
+		ObjectNode payload = objectMapper.createObjectNode();
+		ArrayNode entries = payload.putArray("results");
+		boolean allFailed = !results.isEmpty();
+		for (int i = 0; i < results.size(); i++) {
+			McpSchema.CallToolResult result = results.get(i);
+			boolean isError = Boolean.TRUE.equals(result.isError());
+			allFailed &= isError;
+			String text = result.content().stream()
+					.filter(McpSchema.TextContent.class::isInstance)
+					.map(c -> ((McpSchema.TextContent) c).text())
+					.findFirst()
+					.orElse("");
+
+			ObjectNode entry = entries.addObject();
+			entry.put("index", i);
+			entry.put("isError", isError);
+			if (isError || !isJsonValue(text)) {
+				entry.put("error", text);
+			} else {
+				entry.putRawValue("result", new RawValue(text));
+			}
+		}
+
+		String jacksonData;
+		try {
+			jacksonData = objectMapper.writeValueAsString(payload);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+		return McpSchema.CallToolResult.builder()
+				.isError(allFailed)
+				.addContent(new McpSchema.TextContent(jacksonData))
+				.build();
+	}
+
 	public static McpSchema.CallToolResult failure(String message) {
 		return McpSchema.CallToolResult.builder()
 				.isError(true)
 				.addTextContent(message)
 				.build();
 	}
+
+	private static boolean isJsonValue(String body) {
+		if (body == null) {
+			return false;
+		}
+		for (int i = 0; i < body.length(); i++) {
+			char c = body.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				return c == '{' || c == '[';
+			}
+		}
+		return false;
+	}
 }
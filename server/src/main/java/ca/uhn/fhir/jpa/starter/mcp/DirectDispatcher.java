@@ -0,0 +1,226 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.api.model.DaoMethodOutcome;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.model.valueset.BundleTypeEnum;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.rest.api.BundleLinks;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.IPagingProvider;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
+import ca.uhn.fhir.util.OperationOutcomeUtil;
+import org.hl7.fhir.instance.model.api.IBaseOperationOutcome;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IIdType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Executes MCP tool calls directly against the resource DAOs, skipping the mock servlet request/response and the
+ * extra serialization passes that {@link RequestBuilder} needs. Storage pointcuts fire as usual, but server-level
+ * interceptors (authorization, request validation, access logging) are not invoked, which is why this path is opt-in
+ * via {@code hapi.fhir.mcp.direct_dispatch}.
+ * <p>
+ * Patch, transaction and conditional update calls are not handled here and still go through the servlet.
+ */
+public class DirectDispatcher {
+
+	private static final int DEFAULT_PAGE_SIZE = 20;
+
+	private final FhirContext fhirContext;
+	private final DaoRegistry daoRegistry;
+	private final MatchUrlService matchUrlService;
+	private final RestfulServer restfulServer;
+	private final String serverBase;
+
+	public record Result(int status, String body, SearchCursor cursor) {
+		public Result(int status, String body) {
+			this(status, body, null);
+		}
+	}
+
+	public DirectDispatcher(
+			RestfulServer restfulServer, DaoRegistry daoRegistry, MatchUrlService matchUrlService, String serverBase) {
+		this.restfulServer = restfulServer;
+		this.fhirContext = restfulServer.getFhirContext();
+		this.daoRegistry = daoRegistry;
+		this.matchUrlService = matchUrlService;
+		this.serverBase = serverBase == null ? "" : serverBase;
+	}
+
+	public boolean supports(Interaction interaction, Map<String, Object> arguments) {
+		return switch (interaction) {
+			case READ, SEARCH, CREATE, DELETE -> true;
+			case UPDATE -> arguments.get("id") instanceof String id && !id.isBlank();
+			default -> false;
+		};
+	}
+
+	/**
+	 * Failures are reported the way the servlet path reports them: the HTTP status of the exception and an
+	 * OperationOutcome body. Invalid arguments and unparseable resource bodies are reported as {@code 400}.
+	 */
+	public Result dispatch(Interaction interaction, Map<String, Object> arguments) {
+		try {
+			if (!(arguments.get("resourceType") instanceof String resourceType) || resourceType.isBlank()) {
+				throw new IllegalArgumentException("Missing or invalid 'resourceType' in contextMap");
+			}
+			IFhirResourceDao<IBaseResource> dao = daoRegistry.getResourceDao(resourceType);
+			RequestDetails requestDetails = newRequestDetails();
+			Projection projection = Projection.from(arguments);
+
+			return switch (interaction) {
+				case READ -> new Result(
+						200, projection.encode(fhirContext, dao.read(idOf(resourceType, arguments), requestDetails), false));
+				case SEARCH -> search(dao, resourceType, arguments, projection, requestDetails);
+				case CREATE -> {
+					DaoMethodOutcome outcome =
+							dao.create(parseResource(arguments), ifNoneExist(resourceType, arguments), requestDetails);
+					yield new Result(
+							Boolean.TRUE.equals(outcome.getCreated()) ? 201 : 200,
+							encode(resultOf(dao, outcome, requestDetails)));
+				}
+				case UPDATE -> {
+					IBaseResource resource = parseResource(arguments);
+					resource.setId(idOf(resourceType, arguments));
+					DaoMethodOutcome outcome = dao.update(resource, requestDetails);
+					yield new Result(
+							Boolean.TRUE.equals(outcome.getCreated()) ? 201 : 200,
+							encode(resultOf(dao, outcome, requestDetails)));
+				}
+				case DELETE -> {
+					DaoMethodOutcome outcome = dao.delete(idOf(resourceType, arguments), requestDetails);
+					IBaseOperationOutcome operationOutcome = outcome.getOperationOutcome();
+					if (operationOutcome == null) {
+						operationOutcome = OperationOutcomeUtil.newInstance(fhirContext);
+						OperationOutcomeUtil.addIssue(
+								fhirContext, operationOutcome, "information", "Successfully deleted", null, "informational");
+					}
+					yield new Result(200, encode(operationOutcome));
+				}
+				default -> throw new IllegalArgumentException("Unsupported interaction: " + interaction);
+			};
+		} catch (BaseServerResponseException e) {
+			IBaseOperationOutcome operationOutcome = e.getOperationOutcome();
+			return new Result(
+					e.getStatusCode(),
+					encode(operationOutcome != null ? operationOutcome : errorOutcome(e.getMessage())));
+		} catch (IllegalArgumentException | DataFormatException e) {
+			return new Result(Constants.STATUS_HTTP_400_BAD_REQUEST, encode(errorOutcome(e.getMessage())));
+		}
+	}
+
+	private IBaseOperationOutcome errorOutcome(String message) {
+		IBaseOperationOutcome operationOutcome = OperationOutcomeUtil.newInstance(fhirContext);
+		OperationOutcomeUtil.addIssue(fhirContext, operationOutcome, "error", message, null, "processing");
+		return operationOutcome;
+	}
+
+	private Result search(
+			IFhirResourceDao<IBaseResource> dao,
+			String resourceType,
+			Map<String, Object> arguments,
+			Projection projection,
+			RequestDetails requestDetails) {
+		IPagingProvider pagingProvider = restfulServer.getPagingProvider();
+		IBundleProvider results;
+		int offset;
+		Integer requestedCount;
+		String self;
+
+		if (arguments.get("cursor") instanceof String token && !token.isBlank()) {
+			SearchCursor cursor = SearchCursor.decode(token);
+			results = pagingProvider != null ? pagingProvider.retrieveResultList(requestDetails, cursor.searchId()) : null;
+			if (results == null) {
+				throw new ResourceGoneException("Search " + cursor.searchId() + " has expired; run the search again");
+			}
+			offset = cursor.offset();
+			requestedCount = cursor.count() > 0 ? cursor.count() : null;
+			self = serverBase + "?" + Constants.PARAM_PAGINGACTION + "=" + cursor.searchId() + "&"
+					+ Constants.PARAM_PAGINGOFFSET + "=" + offset;
+		} else {
+			String query = SearchQuery.toQueryString(arguments);
+			SearchParameterMap map = matchUrlService.translateMatchUrl(
+					resourceType + "?" + query, fhirContext.getResourceDefinition(resourceType));
+			results = dao.search(map, requestDetails);
+			offset = 0;
+			requestedCount = map.getCount();
+			self = serverBase + "/" + resourceType + (query.isEmpty() ? "" : "?" + query);
+		}
+
+		int count = requestedCount != null
+				? requestedCount
+				: pagingProvider != null ? pagingProvider.getDefaultPageSize() : DEFAULT_PAGE_SIZE;
+		if (pagingProvider != null) {
+			count = Math.min(count, pagingProvider.getMaximumPageSize());
+		}
+		if (projection.summary() == SummaryEnum.COUNT) {
+			count = 0;
+		}
+		List<IBaseResource> page = results.getResources(offset, offset + count);
+
+		// Only hand out a cursor when the paging provider persisted the search and more results may follow
+		Integer total = results.size();
+		SearchCursor next = results.getUuid() != null && count > 0 && (total == null || total > offset + count)
+				? new SearchCursor(results.getUuid(), offset + count, count)
+				: null;
+
+		var bundleFactory = fhirContext.newBundleFactory();
+		BundleLinks links = new BundleLinks(serverBase, Set.of(), false, BundleTypeEnum.SEARCHSET);
+		links.setSelf(self);
+		bundleFactory.addRootPropertiesToBundle(results.getUuid(), links, total, results.getPublished());
+		bundleFactory.addResourcesToBundle(page, BundleTypeEnum.SEARCHSET, serverBase, null, Set.of());
+		return new Result(200, projection.encode(fhirContext, bundleFactory.getResourceBundle(), true), next);
+	}
+
+	private IBaseResource resultOf(
+			IFhirResourceDao<IBaseResource> dao, DaoMethodOutcome outcome, RequestDetails requestDetails) {
+		// Conditional create that matched an existing resource does not carry the resource body
+		return outcome.getResource() != null
+				? outcome.getResource()
+				: dao.read(outcome.getId().toUnqualifiedVersionless(), requestDetails);
+	}
+
+	private RequestDetails newRequestDetails() {
+		SystemRequestDetails requestDetails = new SystemRequestDetails(restfulServer.getInterceptorService());
+		requestDetails.setServer(restfulServer);
+		requestDetails.setFhirServerBase(serverBase);
+		return requestDetails;
+	}
+
+	private IIdType idOf(String resourceType, Map<String, Object> arguments) {
+		if (!(arguments.get("id") instanceof String id) || id.isBlank()) {
+			throw new IllegalArgumentException("Missing or invalid 'id'");
+		}
+		return fhirContext.getVersion().newIdType().setValue(resourceType + "/" + id);
+	}
+
+	private IBaseResource parseResource(Map<String, Object> arguments) {
+		return ResourceBodies.parse(fhirContext.newJsonParser(), arguments.get("resource"));
+	}
+
+	private static String ifNoneExist(String resourceType, Map<String, Object> arguments) {
+		if (arguments.get("headers") instanceof Map<?, ?> headers
+				&& headers.get("If-None-Exist") instanceof String criteria
+				&& !criteria.isBlank()) {
+			return criteria.contains("?") ? criteria : resourceType + "?" + criteria;
+		}
+		return null;
+	}
+
+	private String encode(IBaseResource resource) {
+		return fhirContext.newJsonParser().encodeResourceToString(resource);
+	}
+}
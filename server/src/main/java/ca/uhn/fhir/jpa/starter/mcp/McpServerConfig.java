@@ -1,6 +1,9 @@
 package ca.uhn.fhir.jpa.starter.mcp;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.starter.AppProperties;
 import ca.uhn.fhir.rest.server.McpBridge;
 import ca.uhn.fhir.rest.server.McpCdsBridge;
 import ca.uhn.fhir.rest.server.McpFhirBridge;
@@ -8,16 +11,22 @@ import ca.uhn.fhir.rest.server.RestfulServer;
 import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceRegistry;
 import ca.uhn.hapi.fhir.cdshooks.module.CdsHooksObjectMapperFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.modelcontextprotocol.json.jackson.JacksonMcpJsonMapper;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.server.transport.HttpServletStreamableServerTransportProvider;
 import org.springframework.ai.mcp.server.common.autoconfigure.properties.McpServerStreamableHttpProperties;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.List;
 
 // https://mcp-cn.ssshooter.com/sdk/java/mcp-server#sse-servlet
@@ -38,15 +47,80 @@ public class McpServerConfig {
 	private static final String SSE_MESSAGE_ENDPOINT = "/mcp/message";
 
 	@Bean
-	public List<McpServerFeatures.SyncToolSpecification> syncServer(List<McpBridge> mcpBridges) {
+	@ConditionalOnProperty(
+			prefix = "spring.ai.mcp.server",
+			name = {"type"},
+			havingValue = "SYNC",
+			matchIfMissing = true)
+	public List<McpServerFeatures.SyncToolSpecification> syncServer(
+			List<McpBridge> mcpBridges, McpToolGuard mcpToolGuard) {
+		return mcpBridges.stream()
+				.flatMap(bridge -> mcpToolGuard.wrap(bridge.generateTools()).stream())
+				.toList();
+	}
+
+	@Bean
+	public McpToolGuard mcpToolGuard(AppProperties appProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+		return new McpToolGuard(appProperties.getMcp(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+	}
+
+	@Bean(destroyMethod = "dispose")
+	@ConditionalOnProperty(
+			prefix = "spring.ai.mcp.server",
+			name = {"type"},
+			havingValue = "ASYNC")
+	public Scheduler mcpToolScheduler(AppProperties appProperties) {
+		AppProperties.Mcp mcp = appProperties.getMcp();
+		return Schedulers.newBoundedElastic(mcp.getAsync_thread_cap(), mcp.getAsync_queued_task_cap(), "mcp-tools");
+	}
+
+	@Bean
+	@ConditionalOnProperty(
+			prefix = "spring.ai.mcp.server",
+			name = {"type"},
+			havingValue = "ASYNC")
+	public List<McpServerFeatures.AsyncToolSpecification> asyncServer(
+			List<McpBridge> mcpBridges,
+			McpToolGuard mcpToolGuard,
+			Scheduler mcpToolScheduler,
+			AppProperties appProperties) {
+		Duration timeout = Duration.ofSeconds(appProperties.getMcp().getTool_timeout_seconds());
 		return mcpBridges.stream()
-				.flatMap(bridge -> bridge.generateTools().stream())
+				.flatMap(bridge ->
+						McpBridge.toAsync(mcpToolGuard.wrap(bridge.generateTools()), mcpToolScheduler, timeout).stream())
 				.toList();
 	}
 
 	@Bean
-	public McpFhirBridge mcpFhirBridge(RestfulServer restfulServer) {
-		return new McpFhirBridge(restfulServer);
+	public McpFhirBridge mcpFhirBridge(
+			RestfulServer restfulServer,
+			AppProperties appProperties,
+			DaoRegistry daoRegistry,
+			MatchUrlService matchUrlService,
+			ObjectProvider<BatchExecutor> mcpBatchExecutor) {
+		DirectDispatcher directDispatcher = Boolean.TRUE.equals(appProperties.getMcp().getDirect_dispatch())
+				? new DirectDispatcher(restfulServer, daoRegistry, matchUrlService, appProperties.getServer_address())
+				: null;
+		return new McpFhirBridge(
+				restfulServer,
+				directDispatcher,
+				mcpBatchExecutor.getIfAvailable(),
+				appProperties.getMcp().getMax_result_length());
+	}
+
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(
+			prefix = "hapi.fhir.mcp",
+			name = {"batch_enabled"},
+			havingValue = "true",
+			matchIfMissing = true)
+	public BatchExecutor mcpBatchExecutor(AppProperties appProperties) {
+		AppProperties.Mcp mcp = appProperties.getMcp();
+		return new BatchExecutor(
+				mcp.getBatch_parallelism(),
+				mcp.getBatch_queue_capacity(),
+				mcp.getBatch_max_requests(),
+				Duration.ofSeconds(mcp.getTool_timeout_seconds()));
 	}
 
 	@Bean
@@ -0,0 +1,151 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.spec.McpSchema;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps MCP tool specifications with per-session and per-tool token-bucket rate limits, and records a
+ * {@code mcp.tool.calls} timer tagged by tool, {@link Interaction} and outcome. Calls over a limit are answered with
+ * a tool error instead of reaching the FHIR server.
+ */
+public class McpToolGuard {
+
+	public static final String CALLS_TIMER = "mcp.tool.calls";
+	public static final String RATE_LIMITED_COUNTER = "mcp.tool.rate_limited";
+
+	private static final String UNKNOWN_SESSION = "unknown";
+
+	private final AppProperties.Mcp settings;
+	private final MeterRegistry meterRegistry;
+	private final Cache<String, TokenBucket> sessionBuckets;
+	private final Map<String, TokenBucket> toolBuckets = new ConcurrentHashMap<>();
+
+	public McpToolGuard(AppProperties.Mcp settings, MeterRegistry meterRegistry) {
+		this.settings = settings;
+		this.meterRegistry = meterRegistry;
+		// Sessions come and go with agents; idle buckets are dropped rather than kept for the life of the server
+		this.sessionBuckets = Caffeine.newBuilder()
+				.expireAfterAccess(Duration.ofMinutes(10))
+				.maximumSize(10_000)
+				.build();
+	}
+
+	public List<McpServerFeatures.SyncToolSpecification> wrap(List<McpServerFeatures.SyncToolSpecification> specs) {
+		return specs.stream().map(this::wrap).toList();
+	}
+
+	public McpServerFeatures.SyncToolSpecification wrap(McpServerFeatures.SyncToolSpecification spec) {
+		String tool = spec.tool().name();
+		String interaction = interactionOf(tool);
+		return new McpServerFeatures.SyncToolSpecification.Builder()
+				.tool(spec.tool())
+				.callHandler((exchange, request) -> {
+					String limitedBy = checkLimits(exchange.sessionId(), tool, costOf(interaction, request));
+					if (limitedBy != null) {
+						Counter.builder(RATE_LIMITED_COUNTER)
+								.description("MCP tool calls rejected by rate limiting")
+								.tag("tool", tool)
+								.tag("scope", limitedBy)
+								.register(meterRegistry)
+								.increment();
+						record(tool, interaction, "rate_limited", 0);
+						return CallToolResultFactory.failure(
+								"Rate limit exceeded for this " + limitedBy + "; slow down and retry the tool call");
+					}
+
+					long start = System.nanoTime();
+					String outcome = "error";
+					try {
+						McpSchema.CallToolResult result = spec.callHandler().apply(exchange, request);
+						outcome = Boolean.TRUE.equals(result.isError()) ? "error" : "success";
+						return result;
+					} finally {
+						record(tool, interaction, outcome, System.nanoTime() - start);
+					}
+				})
+				.build();
+	}
+
+	String checkLimits(String sessionId, String tool) {
+		return checkLimits(sessionId, tool, 1);
+	}
+
+	/**
+	 * Takes {@code cost} tokens from both the session's and the tool's bucket, or from neither if either is short.
+	 *
+	 * @return {@code "session"} or {@code "tool"} if the call exceeds that limit, otherwise {@code null}
+	 */
+	String checkLimits(String sessionId, String tool, int cost) {
+		if (!Boolean.TRUE.equals(settings.getRate_limit_enabled())) {
+			return null;
+		}
+		TokenBucket session = sessionBuckets.get(
+				sessionId == null ? UNKNOWN_SESSION : sessionId,
+				id -> new TokenBucket(settings.getSession_requests_per_second(), settings.getSession_burst()));
+		TokenBucket perTool = toolBuckets.computeIfAbsent(
+				tool, t -> new TokenBucket(settings.getTool_requests_per_second(), settings.getTool_burst()));
+		// Always session before tool, so that concurrent calls cannot lock the two in opposite orders
+		synchronized (session) {
+			synchronized (perTool) {
+				if (!session.canConsume(cost)) {
+					return "session";
+				}
+				if (!perTool.canConsume(cost)) {
+					return "tool";
+				}
+				session.tryConsume(cost);
+				perTool.tryConsume(cost);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * A batch call runs one operation per entry, so it costs one token per entry; any other call costs one
+	 */
+	static int costOf(String interaction, McpSchema.CallToolRequest request) {
+		if ("batch".equals(interaction)
+				&& request.arguments() != null
+				&& request.arguments().get("requests") instanceof List<?> entries) {
+			return Math.max(1, entries.size());
+		}
+		return 1;
+	}
+
+	private void record(String tool, String interaction, String outcome, long nanos) {
+		Timer.builder(CALLS_TIMER)
+				.description("MCP tool call latency")
+				.tag("tool", tool)
+				.tag("interaction", interaction)
+				.tag("outcome", outcome)
+				.register(meterRegistry)
+				.record(Duration.ofNanos(nanos));
+	}
+
+	static String interactionOf(String tool) {
+		if (tool.startsWith("batch-")) {
+			return "batch";
+		}
+		if (tool.endsWith("-transaction")) {
+			return Interaction.TRANSACTION.getName();
+		}
+		String base = tool.startsWith("conditional-") ? tool.substring("conditional-".length()) : tool;
+		for (Interaction interaction : Interaction.values()) {
+			if (base.equals(interaction.getName()) || base.startsWith(interaction.getName() + "-")) {
+				return interaction.getName();
+			}
+		}
+		return "other";
+	}
+}
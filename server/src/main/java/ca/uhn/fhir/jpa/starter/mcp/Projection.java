@@ -0,0 +1,135 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SummaryEnum;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Output projection requested by an MCP tool call: {@code _elements} and {@code _summary} with their usual FHIR
+ * meaning, or a {@code fhirpath} expression whose results are returned as a JSON array instead of the resource.
+ * A FHIRPath selector is evaluated against the full resource (or search Bundle) and takes precedence over the other
+ * two.
+ */
+public record Projection(Set<String> elements, SummaryEnum summary, String fhirPath) {
+
+	public static final Projection NONE = new Projection(Set.of(), null, null);
+
+	private static final Set<String> TEXT_SUMMARY_ELEMENTS = Set.of("*.text", "*.id", "*.meta", "*.(mandatory)");
+
+	public static Projection from(Map<String, Object> arguments) {
+		Set<String> elements = new LinkedHashSet<>();
+		Object elementsArg = arguments.get(Constants.PARAM_ELEMENTS);
+		if (elementsArg instanceof String s) {
+			Arrays.stream(s.split(",")).map(String::trim).filter(e -> !e.isEmpty()).forEach(elements::add);
+		} else if (elementsArg instanceof List<?> list) {
+			list.stream().map(Object::toString).map(String::trim).filter(e -> !e.isEmpty()).forEach(elements::add);
+		}
+
+		SummaryEnum summary = null;
+		if (arguments.get(Constants.PARAM_SUMMARY) instanceof String s && !s.isBlank()) {
+			summary = SummaryEnum.fromCode(s.trim());
+			if (summary == null) {
+				throw new IllegalArgumentException("Invalid _summary value '" + s + "'");
+			}
+		}
+
+		String fhirPath = arguments.get("fhirpath") instanceof String s && !s.isBlank() ? s : null;
+		if (elements.isEmpty() && summary == null && fhirPath == null) {
+			return NONE;
+		}
+		return new Projection(Set.copyOf(elements), summary, fhirPath);
+	}
+
+	public boolean isEmpty() {
+		return elements.isEmpty() && summary == null && fhirPath == null;
+	}
+
+	/**
+	 * Passes {@code _elements} and {@code _summary} on to a servlet request, so the server encodes the projected form
+	 * itself. FHIRPath selectors are applied to the response afterwards.
+	 */
+	public void addTo(MockHttpServletRequest request) {
+		if (fhirPath != null) {
+			return;
+		}
+		if (!elements.isEmpty()) {
+			request.addParameter(Constants.PARAM_ELEMENTS, String.join(",", elements));
+		}
+		if (summary != null) {
+			request.addParameter(Constants.PARAM_SUMMARY, summary.getCode());
+		}
+	}
+
+	/**
+	 * Encodes a resource with this projection applied.
+	 *
+	 * @param bundle whether the resource is a search Bundle, in which case {@code _elements} applies to its entries
+	 */
+	public String encode(FhirContext fhirContext, IBaseResource resource, boolean bundle) {
+		if (fhirPath != null) {
+			return select(fhirContext, resource);
+		}
+
+		IParser parser = fhirContext.newJsonParser();
+		if (!elements.isEmpty()) {
+			Set<String> qualified = new LinkedHashSet<>();
+			for (String element : elements) {
+				qualified.add(element.contains(".") ? element : "*." + element);
+			}
+			parser.setEncodeElements(qualified);
+			parser.setEncodeElementsAppliesToChildResourcesOnly(bundle);
+		}
+		if (summary != null) {
+			switch (summary) {
+				case TRUE -> parser.setSummaryMode(true);
+				case DATA -> parser.setSuppressNarratives(true);
+				case TEXT -> {
+					parser.setEncodeElements(TEXT_SUMMARY_ELEMENTS);
+					parser.setEncodeElementsAppliesToChildResourcesOnly(bundle);
+				}
+				default -> {
+					// COUNT is handled by the search itself; FALSE encodes everything
+				}
+			}
+		}
+		return parser.encodeResourceToString(resource);
+	}
+
+	/**
+	 * Evaluates the FHIRPath selector and returns the matches as a JSON array. Resources and complex types are encoded
+	 * as FHIR JSON, primitives as JSON strings.
+	 */
+	public String select(FhirContext fhirContext, IBaseResource resource) {
+		List<IBase> matches = fhirContext.newFhirPath().evaluate(resource, fhirPath, IBase.class);
+		IParser parser = fhirContext.newJsonParser();
+		ArrayNode array = ToolFactory.mapper.createArrayNode();
+		for (IBase match : matches) {
+			if (match instanceof IBaseResource r) {
+				array.addRawValue(new RawValue(parser.encodeResourceToString(r)));
+			} else if (match instanceof IPrimitiveType<?> primitive) {
+				array.add(primitive.getValueAsString());
+			} else {
+				array.addRawValue(new RawValue(parser.encodeToString(match)));
+			}
+		}
+		try {
+			return ToolFactory.mapper.writeValueAsString(array);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
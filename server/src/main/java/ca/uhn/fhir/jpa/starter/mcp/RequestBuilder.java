@@ -1,6 +1,7 @@
 package ca.uhn.fhir.jpa.starter.mcp;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.Constants;
 import com.google.gson.Gson;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.mock.web.MockHttpServletRequest;
@@ -39,21 +40,25 @@ public class RequestBuilder {
 		switch (interaction) {
 			case SEARCH -> {
 				method = "GET";
-				req = new MockHttpServletRequest(method, basePath);
-				Map<?, ?> sp = null;
-				if (config.get("query") instanceof Map<?, ?> q) {
-					sp = q;
-				} else if (config.get("searchParams") instanceof Map<?, ?> s) {
-					sp = s;
-				}
-				if (sp != null) {
-					sp.forEach((k, v) -> req.addParameter(k.toString(), v.toString()));
+				if (config.get("cursor") instanceof String token && !token.isBlank()) {
+					// Continue a stored search; the paging provider resolves it without re-running the query
+					SearchCursor cursor = SearchCursor.decode(token);
+					req = new MockHttpServletRequest(method, "/");
+					req.addParameter(Constants.PARAM_PAGINGACTION, cursor.searchId());
+					req.addParameter(Constants.PARAM_PAGINGOFFSET, Integer.toString(cursor.offset()));
+					req.addParameter(Constants.PARAM_COUNT, Integer.toString(cursor.count()));
+					req.addParameter(Constants.PARAM_BUNDLETYPE, "searchset");
+				} else {
+					req = new MockHttpServletRequest(method, basePath);
+					SearchQuery.parameters(config).forEach(e -> req.addParameter(e.getKey(), e.getValue()));
 				}
+				Projection.from(config).addTo(req);
 			}
 			case READ -> {
 				method = "GET";
 				String id = requireString();
 				req = new MockHttpServletRequest(method, basePath + "/" + id);
+				Projection.from(config).addTo(req);
 			}
 			case CREATE, TRANSACTION -> {
 				method = "POST";
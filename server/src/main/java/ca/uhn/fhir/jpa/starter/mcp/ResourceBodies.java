@@ -0,0 +1,42 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IJsonLikeParser;
+import ca.uhn.fhir.parser.IParser;
+import ca.uhn.fhir.parser.json.jackson.JacksonStructure;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+
+import java.util.Map;
+
+/**
+ * Parses the resource bodies of MCP tool calls. The MCP SDK has already decoded a JSON body into a {@code Map}, so it
+ * is converted to a Jackson tree and handed to HAPI's JSON parser as is, rather than written back out to a string for
+ * the parser to tokenize again. Bodies sent as strings are parsed as usual.
+ */
+public final class ResourceBodies {
+
+	private ResourceBodies() {}
+
+	/**
+	 * @throws IllegalArgumentException if the body is neither a JSON string nor a JSON object
+	 * @throws DataFormatException if the body is not a valid resource
+	 */
+	public static IBaseResource parse(IParser theParser, Object theBody) {
+		if (theBody instanceof String json) {
+			return theParser.parseResource(json);
+		}
+		if (!(theBody instanceof Map<?, ?> map)) {
+			throw new IllegalArgumentException("Unsupported resource body type: "
+					+ (theBody == null ? "null" : theBody.getClass().getName()));
+		}
+		JsonNode tree = ToolFactory.mapper.valueToTree(map);
+		if (!(tree instanceof ObjectNode object) || !(theParser instanceof IJsonLikeParser jsonParser)) {
+			throw new IllegalArgumentException("Resource body is not a JSON object");
+		}
+		JacksonStructure structure = new JacksonStructure();
+		structure.setNativeObject(object);
+		return jsonParser.parseResource(structure);
+	}
+}
@@ -0,0 +1,77 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Caps the size of a tool result body. Search Bundles lose entries from the end of the page (and the search cursor is
+ * rewound so the dropped entries come back on the next page); any other oversized body is cut and returned as a plain
+ * string. Either way the envelope reports what was removed.
+ * <p>
+ * On the last page there is no cursor to rewind, so one is built from the stored search the page belongs to. A page
+ * that cannot be resumed that way is returned in full rather than losing entries.
+ */
+public final class ResultSizeLimiter {
+
+	public record Truncation(int originalLength, int omittedEntries, boolean bodyCut) {}
+
+	public record Limited(String body, SearchCursor cursor, Truncation truncation) {}
+
+	private ResultSizeLimiter() {}
+
+	public static Limited apply(String body, SearchCursor cursor, int maxLength) {
+		if (maxLength <= 0 || body.length() <= maxLength) {
+			return new Limited(body, cursor, null);
+		}
+
+		try {
+			JsonNode root = ToolFactory.mapper.readTree(body);
+			if (root instanceof ObjectNode bundle
+					&& "Bundle".equals(bundle.path("resourceType").asText())
+					&& "searchset".equals(bundle.path("type").asText())
+					&& bundle.get("entry") instanceof ArrayNode entries
+					&& !entries.isEmpty()) {
+				SearchCursor page = cursor == null ? currentPage(bundle) : null;
+				if (cursor == null && page == null) {
+					return new Limited(body, null, null);
+				}
+				int length = body.length();
+				int omitted = 0;
+				while (length > maxLength && !entries.isEmpty()) {
+					JsonNode last = entries.remove(entries.size() - 1);
+					length -= ToolFactory.mapper.writeValueAsString(last).length() + 1;
+					omitted++;
+				}
+				SearchCursor rewound = cursor != null
+						? new SearchCursor(cursor.searchId(), cursor.offset() - omitted, cursor.count())
+						: new SearchCursor(page.searchId(), page.offset() + entries.size(), omitted);
+				return new Limited(
+						ToolFactory.mapper.writeValueAsString(bundle),
+						rewound,
+						new Truncation(body.length(), omitted, false));
+			}
+		} catch (JsonProcessingException e) {
+			// Not JSON; fall through and cut the text
+		}
+		return new Limited(body.substring(0, maxLength), cursor, new Truncation(body.length(), 0, true));
+	}
+
+	/**
+	 * @return the stored search and offset of this page, from its {@code self} paging link or else the Bundle id
+	 *     (which is the search id for searches the paging provider persisted), or {@code null} if there is none
+	 */
+	private static SearchCursor currentPage(ObjectNode bundle) {
+		for (JsonNode link : bundle.path("link")) {
+			if ("self".equals(link.path("relation").asText())) {
+				SearchCursor self = SearchCursor.fromNextLink(link.path("url").asText(null));
+				if (self != null) {
+					return self;
+				}
+			}
+		}
+		String id = bundle.path("id").asText("");
+		return id.isEmpty() ? null : new SearchCursor(id, 0, 0);
+	}
+}
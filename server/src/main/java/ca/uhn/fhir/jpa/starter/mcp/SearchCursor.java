@@ -0,0 +1,71 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.rest.api.Constants;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for the MCP search tool. It wraps the search id that the
+ * {@link ca.uhn.fhir.jpa.search.DatabaseBackedPagingProvider} persisted for the first page, plus the offset and page
+ * size of the next page, so agents can walk a large result set one page at a time.
+ */
+public record SearchCursor(String searchId, int offset, int count) {
+
+	private static final String SEPARATOR = ":";
+
+	public String encode() {
+		String raw = searchId + SEPARATOR + offset + SEPARATOR + count;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public static SearchCursor decode(String token) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int last = raw.lastIndexOf(SEPARATOR);
+			int middle = raw.lastIndexOf(SEPARATOR, last - 1);
+			if (middle <= 0) {
+				throw new IllegalArgumentException("Invalid search cursor");
+			}
+			return new SearchCursor(
+					raw.substring(0, middle),
+					Integer.parseInt(raw.substring(middle + 1, last)),
+					Integer.parseInt(raw.substring(last + 1)));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid search cursor: " + token, e);
+		}
+	}
+
+	/**
+	 * Derives the cursor from a Bundle {@code next} link produced by the paging provider, e.g.
+	 * {@code http://host/fhir?_getpages=abc&_getpagesoffset=20&_count=20&_bundletype=searchset}.
+	 *
+	 * @return the cursor, or {@code null} if the link is not a paging link
+	 */
+	public static SearchCursor fromNextLink(String nextLink) {
+		if (nextLink == null || nextLink.indexOf('?') < 0) {
+			return null;
+		}
+		String searchId = null;
+		int offset = 0;
+		int count = 0;
+		for (String pair : nextLink.substring(nextLink.indexOf('?') + 1).split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals <= 0) {
+				continue;
+			}
+			String name = pair.substring(0, equals);
+			String value = URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+			switch (name) {
+				case Constants.PARAM_PAGINGACTION -> searchId = value;
+				case Constants.PARAM_PAGINGOFFSET -> offset = Integer.parseInt(value);
+				case Constants.PARAM_COUNT -> count = Integer.parseInt(value);
+				default -> {
+					// Other link parameters (_format, _bundletype, ...) are not part of the cursor
+				}
+			}
+		}
+		return searchId == null ? null : new SearchCursor(searchId, offset, count);
+	}
+}
@@ -0,0 +1,60 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Normalizes the search parameters of an MCP tool call. Agents send either a {@code query}/{@code searchParams} object
+ * or a {@code query} string such as {@code "_id=pt-1,name=ivan"} or {@code "name=ivan&_count=5"}.
+ */
+final class SearchQuery {
+
+	// Split on '&' or ',' only when the next token is a parameter name, so "code=a,b" keeps its OR list
+	private static final Pattern PARAMETER_SEPARATOR = Pattern.compile("[&,](?=[^=&,]+=)");
+
+	private SearchQuery() {}
+
+	static List<Map.Entry<String, String>> parameters(Map<String, Object> arguments) {
+		Object query = arguments.get("query");
+		if (!(query instanceof Map<?, ?>) && !(query instanceof String)) {
+			query = arguments.get("searchParams");
+		}
+
+		List<Map.Entry<String, String>> parameters = new ArrayList<>();
+		if (query instanceof Map<?, ?> map) {
+			map.forEach((k, v) -> parameters.add(new AbstractMap.SimpleEntry<>(k.toString(), v.toString())));
+		} else if (query instanceof String s && !s.isBlank()) {
+			String queryString = s.startsWith("?") ? s.substring(1) : s;
+			for (String pair : PARAMETER_SEPARATOR.split(queryString)) {
+				int equals = pair.indexOf('=');
+				if (equals <= 0) {
+					continue;
+				}
+				parameters.add(new AbstractMap.SimpleEntry<>(
+						decode(pair.substring(0, equals)), decode(pair.substring(equals + 1))));
+			}
+		}
+		return parameters;
+	}
+
+	static String toQueryString(Map<String, Object> arguments) {
+		return parameters(arguments).stream()
+				.map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+				.collect(Collectors.joining("&"));
+	}
+
+	private static String decode(String value) {
+		return URLDecoder.decode(value, StandardCharsets.UTF_8);
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+}
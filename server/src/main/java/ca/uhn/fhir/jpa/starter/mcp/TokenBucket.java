@@ -0,0 +1,45 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+/**
+ * Classic token bucket: holds up to {@code capacity} tokens and refills continuously at {@code refillPerSecond}.
+ * <p>
+ * A call costing more tokens than the capacity is let through from a full bucket and leaves it in debt, so that it is
+ * still charged in full rather than being rejected forever.
+ */
+public class TokenBucket {
+
+	private final double capacity;
+	private final double refillPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	public TokenBucket(double refillPerSecond, double capacity) {
+		this.capacity = capacity;
+		this.refillPerNano = refillPerSecond / 1_000_000_000d;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	public synchronized boolean tryConsume() {
+		return tryConsume(1);
+	}
+
+	public synchronized boolean tryConsume(int permits) {
+		if (!canConsume(permits)) {
+			return false;
+		}
+		tokens -= permits;
+		return true;
+	}
+
+	/**
+	 * Whether {@code permits} tokens could be consumed now. Hold the bucket's monitor across this and
+	 * {@link #tryConsume(int)} to take tokens from several buckets only if all of them have enough.
+	 */
+	public synchronized boolean canConsume(int permits) {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+		lastRefill = now;
+		return tokens >= Math.min(permits, capacity);
+	}
+}
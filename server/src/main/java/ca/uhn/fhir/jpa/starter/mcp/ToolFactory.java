@@ -21,6 +21,19 @@ public class ToolFactory {
 			"id": {
 			"type": "string",
 			"description": "id of the resource to read"
+			},
+			"_elements": {
+			"type": "string",
+			"description": "Comma-separated list of top-level elements to return, e.g. \\"name,birthDate\\""
+			},
+			"_summary": {
+			"type": "string",
+			"enum": ["true", "text", "data", "count", "false"],
+			"description": "Return a FHIR summary form of the result"
+			},
+			"fhirpath": {
+			"type": "string",
+			"description": "FHIRPath expression; when set, only its matches are returned as a JSON array, e.g. \\"Patient.name.family\\""
 			}
 		}
 		
@@ -175,9 +188,26 @@ public class ToolFactory {
 			"query": {
 			"type": "string",
 			"description": "Query string with search params separate by \\",\\". For example: \\"_id=pt-1,name=ivan\\""
+			},
+			"cursor": {
+			"type": "string",
+			"description": "Continuation token returned as 'cursor' by a previous search call. When present, the next page of that search is returned and 'query' is ignored."
+			},
+			"_elements": {
+			"type": "string",
+			"description": "Comma-separated list of top-level elements to return, e.g. \\"name,birthDate\\""
+			},
+			"_summary": {
+			"type": "string",
+			"enum": ["true", "text", "data", "count", "false"],
+			"description": "Return a FHIR summary form of the result"
+			},
+			"fhirpath": {
+			"type": "string",
+			"description": "FHIRPath expression; when set, only its matches are returned as a JSON array, e.g. \\"Patient.name.family\\""
 			}
 		},
-		"required": ["resourceType", "query"]
+		"required": ["resourceType"]
 		}
 		""";
 
@@ -199,6 +229,58 @@ public class ToolFactory {
 		}
 		""";
 
+	private static final String BATCH_FHIR_INTERACTIONS_SCHEMA =
+			"""
+		{
+		"type": "object",
+		"properties": {
+			"requests": {
+			"type": "array",
+			"description": "Interactions to run together. Reads and searches run concurrently; creates run in the given order. Results are returned in request order.",
+			"items": {
+				"type": "object",
+				"properties": {
+					"interaction": {
+					"type": "string",
+					"enum": ["read", "search", "create"]
+					},
+					"resourceType": {
+					"type": "string"
+					},
+					"id": {
+					"type": "string",
+					"description": "ID of the resource to read"
+					},
+					"query": {
+					"type": "string",
+					"description": "Search params for a search, e.g. \\"patient=pt-1,status=active\\""
+					},
+					"cursor": {
+					"type": "string",
+					"description": "Continuation token from a previous search"
+					},
+					"resource": {
+					"type": "object",
+					"description": "Resource content to create in JSON format"
+					},
+					"_elements": {
+					"type": "string"
+					},
+					"_summary": {
+					"type": "string"
+					},
+					"fhirpath": {
+					"type": "string"
+					}
+				},
+				"required": ["interaction", "resourceType"]
+			}
+			}
+		},
+		"required": ["requests"]
+		}
+		""";
+
 	// TODO Add a tool for the CDS Hooks discovery endpoint
 	// Alternatively, should each service be a separate tool?
 
@@ -320,6 +402,14 @@ public class ToolFactory {
 				.build();
 	}
 
+	public static Tool batchFhirInteractions() throws JsonProcessingException {
+		return new Tool.Builder()
+				.name("batch-fhir-interactions")
+				.description("Run several FHIR read, search and create interactions in one call")
+				.inputSchema(mapper.readValue(BATCH_FHIR_INTERACTIONS_SCHEMA, McpSchema.JsonSchema.class))
+				.build();
+	}
+
 	public static Tool callCdsHook() throws JsonProcessingException {
 		return new Tool.Builder()
 				.name("call-cds-hook")
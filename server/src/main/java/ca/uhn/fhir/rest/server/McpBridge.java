@@ -1,9 +1,63 @@
 package ca.uhn.fhir.rest.server;
 
+import ca.uhn.fhir.jpa.starter.mcp.CallToolResultFactory;
 import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 public interface McpBridge {
 	List<McpServerFeatures.SyncToolSpecification> generateTools();
+
+	/**
+	 * Async variants of {@link #generateTools()} for {@code spring.ai.mcp.server.type=ASYNC}.
+	 *
+	 * @see #toAsync(List, Scheduler, Duration)
+	 */
+	default List<McpServerFeatures.AsyncToolSpecification> generateAsyncTools(Scheduler scheduler, Duration timeout) {
+		return toAsync(generateTools(), scheduler, timeout);
+	}
+
+	/**
+	 * Converts sync tool specifications to async ones. Each call runs on the given bounded scheduler instead of the
+	 * transport thread. When the client disconnects or the timeout elapses, a read or search is cancelled, which
+	 * interrupts the worker thread running the FHIR operation. Any other tool may write, and a write may still commit
+	 * after the caller gives up, so it is left to finish and a timeout reports its status as unknown instead.
+	 */
+	static List<McpServerFeatures.AsyncToolSpecification> toAsync(
+			List<McpServerFeatures.SyncToolSpecification> specs, Scheduler scheduler, Duration timeout) {
+		return specs.stream()
+				.map(spec -> new McpServerFeatures.AsyncToolSpecification.Builder()
+						.tool(spec.tool())
+						.callHandler((exchange, request) -> {
+							Mono<McpSchema.CallToolResult> call = Mono.fromCallable(() -> spec.callHandler()
+											.apply(new McpSyncServerExchange(exchange), request))
+									.subscribeOn(scheduler);
+							boolean readOnly = isReadOnly(spec.tool());
+							String timedOut = readOnly
+									? "Tool call timed out after " + timeout.toSeconds() + "s"
+									: "Tool call did not complete within " + timeout.toSeconds() + "s and may still"
+											+ " commit; its status is unknown, check before retrying";
+							// Cancelling a write would interrupt it, so it is awaited without propagating cancellation
+							return (readOnly ? call : Mono.defer(() -> Mono.fromFuture(call.toFuture(), true)))
+									.timeout(timeout)
+									.onErrorResume(TimeoutException.class, e -> Mono.just(
+											CallToolResultFactory.failure(timedOut)))
+									.onErrorResume(RejectedExecutionException.class, e -> Mono.just(
+											CallToolResultFactory.failure(
+													"Server is busy; retry the tool call later")));
+						})
+						.build())
+				.toList();
+	}
+
+	private static boolean isReadOnly(McpSchema.Tool tool) {
+		return "read-fhir-resource".equals(tool.name()) || "search-fhir-resources".equals(tool.name());
+	}
 }
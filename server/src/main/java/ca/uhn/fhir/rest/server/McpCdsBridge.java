@@ -3,21 +3,27 @@ package ca.uhn.fhir.rest.server;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.starter.cdshooks.CdsHooksRequest;
 import ca.uhn.fhir.jpa.starter.mcp.Interaction;
+import ca.uhn.fhir.jpa.starter.mcp.ResourceBodies;
 import ca.uhn.fhir.jpa.starter.mcp.ToolFactory;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestContextJson;
 import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.McpSchema;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 public class McpCdsBridge implements McpBridge {
@@ -66,11 +72,11 @@ public class McpCdsBridge implements McpBridge {
 				.build();
 	}
 
-	private @NotNull CdsHooksRequest constructCdsHooksRequest(McpSchema.CallToolRequest callToolRequest) {
+	private @NotNull LazyPrefetchRequest constructCdsHooksRequest(McpSchema.CallToolRequest callToolRequest) {
 
 		// TODO Build up CDS Hooks request JSON from contextMap
 		var contextMap = callToolRequest.arguments();
-		var request = new CdsHooksRequest();
+		var request = new LazyPrefetchRequest(fhirContext);
 		request.setHook(contextMap.get("hook").toString());
 		request.setHookInstance(contextMap.get("hookInstance").toString());
 
@@ -90,20 +96,15 @@ public class McpCdsBridge implements McpBridge {
 		}
 		request.setContext(context);
 
-		// Prefetch
+		// Prefetch entries are kept as the decoded JSON tree and only turned into resources when the service asks
+		// for them
 		if (contextMap.containsKey("prefetch")) {
 			var prefetch = contextMap.get("prefetch");
-			if (prefetch instanceof Map) {
-				@SuppressWarnings("unchecked")
-				var prefetchMap = (Map<String, Object>) prefetch;
-				for (Map.Entry<String, Object> entry : prefetchMap.entrySet()) {
-					var key = entry.getKey();
-					var value = entry.getValue();
-
-					// Object is a String -> Object map
-					// Use a standard JSON library to convert it
-					var resource = fhirContext.newJsonParser().parseResource(new Gson().toJson(value));
-					request.addPrefetch(key, resource);
+			if (prefetch instanceof Map<?, ?> prefetchMap) {
+				for (Map.Entry<?, ?> entry : prefetchMap.entrySet()) {
+					if (entry.getValue() != null) {
+						request.addRawPrefetch(entry.getKey().toString(), entry.getValue());
+					}
 				}
 			} else {
 				logger.warn(
@@ -114,4 +115,61 @@ public class McpCdsBridge implements McpBridge {
 
 		return request;
 	}
+
+	/**
+	 * CDS Hooks request whose prefetch entries are parsed on first access, from the JSON tree the MCP SDK decoded, with
+	 * one parser per request. Entries the service never looks at are never parsed.
+	 */
+	static class LazyPrefetchRequest extends CdsHooksRequest {
+		private final FhirContext fhirContext;
+		private final Map<String, Object> pending = new LinkedHashMap<>();
+		private IParser parser;
+
+		LazyPrefetchRequest(FhirContext fhirContext) {
+			this.fhirContext = fhirContext;
+		}
+
+		void addRawPrefetch(String key, Object value) {
+			pending.put(key, value);
+		}
+
+		@Override
+		public void addPrefetch(String theKey, IBaseResource theResource) {
+			pending.remove(theKey);
+			super.addPrefetch(theKey, theResource);
+		}
+
+		@Override
+		public IBaseResource getPrefetch(String theKey) {
+			Object raw = pending.remove(theKey);
+			if (raw != null) {
+				super.addPrefetch(theKey, parse(theKey, raw));
+			}
+			return super.getPrefetch(theKey);
+		}
+
+		@Override
+		public Set<String> getPrefetchKeys() {
+			if (pending.isEmpty()) {
+				return super.getPrefetchKeys();
+			}
+			Set<String> keys = new LinkedHashSet<>(super.getPrefetchKeys());
+			keys.addAll(pending.keySet());
+			return keys;
+		}
+
+		private IBaseResource parse(String key, Object raw) {
+			if (raw instanceof IBaseResource resource) {
+				return resource;
+			}
+			if (parser == null) {
+				parser = fhirContext.newJsonParser();
+			}
+			try {
+				return ResourceBodies.parse(parser, raw);
+			} catch (DataFormatException e) {
+				throw new IllegalArgumentException("Invalid prefetch entry '" + key + "': " + e.getMessage(), e);
+			}
+		}
+	}
 }
@@ -1,11 +1,17 @@
 package ca.uhn.fhir.rest.server;
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.starter.mcp.BatchExecutor;
 import ca.uhn.fhir.jpa.starter.mcp.CallToolResultFactory;
+import ca.uhn.fhir.jpa.starter.mcp.DirectDispatcher;
 import ca.uhn.fhir.jpa.starter.mcp.Interaction;
+import ca.uhn.fhir.jpa.starter.mcp.Projection;
 import ca.uhn.fhir.jpa.starter.mcp.RequestBuilder;
+import ca.uhn.fhir.jpa.starter.mcp.ResultSizeLimiter;
+import ca.uhn.fhir.jpa.starter.mcp.SearchCursor;
 import ca.uhn.fhir.jpa.starter.mcp.ToolFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.spec.McpSchema;
 import org.slf4j.Logger;
@@ -13,7 +19,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class McpFhirBridge implements McpBridge {
@@ -22,16 +30,33 @@ public class McpFhirBridge implements McpBridge {
 
 	private final RestfulServer restfulServer;
 	private final FhirContext fhirContext;
+	private final DirectDispatcher directDispatcher;
+	private final BatchExecutor batchExecutor;
+	private final int maxResultLength;
 
 	public McpFhirBridge(RestfulServer restfulServer) {
+		this(restfulServer, null, null, 0);
+	}
+
+	/**
+	 * @param maxResultLength cap on the response body in characters; {@code 0} disables the cap
+	 */
+	public McpFhirBridge(
+			RestfulServer restfulServer,
+			DirectDispatcher directDispatcher,
+			BatchExecutor batchExecutor,
+			int maxResultLength) {
 		this.restfulServer = restfulServer;
 		this.fhirContext = restfulServer.getFhirContext();
+		this.directDispatcher = directDispatcher;
+		this.batchExecutor = batchExecutor;
+		this.maxResultLength = maxResultLength;
 	}
 
 	public List<McpServerFeatures.SyncToolSpecification> generateTools() {
 
 		try {
-			return List.of(
+			List<McpServerFeatures.SyncToolSpecification> tools = new ArrayList<>(List.of(
 					new McpServerFeatures.SyncToolSpecification.Builder()
 							.tool(ToolFactory.createFhirResource())
 							.callHandler((exchange, request) -> getToolResult(request, Interaction.CREATE))
@@ -67,29 +92,82 @@ public class McpFhirBridge implements McpBridge {
 					new McpServerFeatures.SyncToolSpecification.Builder()
 							.tool(ToolFactory.createFhirTransaction())
 							.callHandler((exchange, request) -> getToolResult(request, Interaction.TRANSACTION))
-							.build());
+							.build()));
+			if (batchExecutor != null) {
+				tools.add(new McpServerFeatures.SyncToolSpecification.Builder()
+						.tool(ToolFactory.batchFhirInteractions())
+						.callHandler((exchange, request) -> getBatchResult(request))
+						.build());
+			}
+			return List.copyOf(tools);
 		} catch (JsonProcessingException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
 	private McpSchema.CallToolResult getToolResult(McpSchema.CallToolRequest contextMap, Interaction interaction) {
+		return getToolResult(contextMap.arguments(), interaction);
+	}
 
-		var response = new MockHttpServletResponse();
-		var request = new RequestBuilder(fhirContext, contextMap.arguments(), interaction).buildRequest();
+	private McpSchema.CallToolResult getBatchResult(McpSchema.CallToolRequest contextMap) {
+		if (!(contextMap.arguments().get("requests") instanceof List<?> entries)) {
+			return CallToolResultFactory.failure("Missing or invalid 'requests' array");
+		}
+		List<Map<String, Object>> requests = new ArrayList<>(entries.size());
+		for (Object entry : entries) {
+			if (!(entry instanceof Map<?, ?> map)) {
+				return CallToolResultFactory.failure("Each batch request must be an object");
+			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> arguments = (Map<String, Object>) map;
+			requests.add(arguments);
+		}
+		try {
+			return CallToolResultFactory.batch(batchExecutor.execute(requests, this::getToolResult));
+		} catch (IllegalArgumentException e) {
+			return CallToolResultFactory.failure(e.getMessage());
+		}
+	}
+
+	private McpSchema.CallToolResult getToolResult(Map<String, Object> arguments, Interaction interaction) {
 
 		try {
-			restfulServer.handleRequest(interaction.asRequestType(), request, response);
-			var status = response.getStatus();
-			var body = response.getContentAsString();
+			int status;
+			String body;
+			SearchCursor cursor = null;
+			if (directDispatcher != null && directDispatcher.supports(interaction, arguments)) {
+				var result = directDispatcher.dispatch(interaction, arguments);
+				status = result.status();
+				body = result.body();
+				cursor = result.cursor();
+			} else {
+				var response = new MockHttpServletResponse();
+				var request = new RequestBuilder(fhirContext, arguments, interaction).buildRequest();
+				restfulServer.handleRequest(interaction.asRequestType(), request, response);
+				status = response.getStatus();
+				body = response.getContentAsString();
+				if (interaction == Interaction.SEARCH && status == 200) {
+					cursor = nextCursor(body);
+				}
+				Projection projection = Projection.from(arguments);
+				if (projection.fhirPath() != null && status >= 200 && status < 300 && !body.isBlank()) {
+					body = projection.select(fhirContext, fhirContext.newJsonParser().parseResource(body));
+				}
+			}
 
 			if (status >= 200 && status < 300) {
 				if (body.isBlank()) {
 					return CallToolResultFactory.failure("Empty successful response for " + interaction);
 				}
 
+				var limited = ResultSizeLimiter.apply(body, cursor, maxResultLength);
 				return CallToolResultFactory.success(
-						contextMap.arguments().get("resourceType").toString(), interaction, body, status);
+						arguments.get("resourceType").toString(),
+						interaction,
+						limited.body(),
+						status,
+						limited.cursor(),
+						limited.truncation());
 			} else {
 				return CallToolResultFactory.failure(String.format("FHIR server error %d: %s", status, body));
 			}
@@ -98,4 +176,13 @@ public class McpFhirBridge implements McpBridge {
 			return CallToolResultFactory.failure("Unexpected error: " + e.getMessage());
 		}
 	}
+
+	private static SearchCursor nextCursor(String searchsetJson) throws JsonProcessingException {
+		for (JsonNode link : ToolFactory.mapper.readTree(searchsetJson).path("link")) {
+			if ("next".equals(link.path("relation").asText())) {
+				return SearchCursor.fromNextLink(link.path("url").asText(null));
+			}
+		}
+		return null;
+	}
 }
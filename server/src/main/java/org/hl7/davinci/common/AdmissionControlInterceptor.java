@@ -0,0 +1,75 @@
+package org.hl7.davinci.common;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.starter.admission.AdmissionController;
+import ca.uhn.fhir.rest.annotation.Operation;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Applies admission control to the operations exposed by {@link BaseProvider} subclasses. Each operation gets its
+ * own adaptive permit pool; requests that arrive while the pool is exhausted fail fast with HTTP 429.
+ */
+@Component
+public class AdmissionControlInterceptor extends BaseInterceptor {
+
+  private static final String PERMIT_KEY = AdmissionControlInterceptor.class.getName() + "_PERMIT";
+
+  @Autowired
+  private AdmissionController admissionController;
+
+  @Autowired(required = false)
+  private List<BaseProvider> providers = List.of();
+
+  private final Set<String> operationNames = new HashSet<>();
+
+  @PostConstruct
+  public void collectOperationNames() {
+    for (BaseProvider provider : providers) {
+      for (Method method : provider.getClass().getMethods()) {
+        Operation operation = method.getAnnotation(Operation.class);
+        if (operation != null) {
+          operationNames.add(normalize(operation.name()));
+        }
+      }
+    }
+  }
+
+  @Hook(Pointcut.SERVER_INCOMING_REQUEST_PRE_HANDLED)
+  public void acquirePermit(RequestDetails theRequestDetails) {
+    String operation = theRequestDetails.getOperation();
+    if (operation == null || !operationNames.contains(normalize(operation))) {
+      return;
+    }
+
+    String endpoint = "$" + normalize(operation);
+    AdmissionController.Permit permit = admissionController.tryAcquire(endpoint);
+    if (permit == null) {
+      throw new UnclassifiedServerFailureException(
+          429, "Too many concurrent " + endpoint + " requests; retry later.");
+    }
+    theRequestDetails.getUserData().put(PERMIT_KEY, permit);
+  }
+
+  @Hook(Pointcut.SERVER_PROCESSING_COMPLETED)
+  public void releasePermit(RequestDetails theRequestDetails) {
+    Object permit = theRequestDetails.getUserData().remove(PERMIT_KEY);
+    if (permit instanceof AdmissionController.Permit p) {
+      p.release();
+    }
+  }
+
+  private static String normalize(String theOperationName) {
+    return theOperationName.startsWith("$") ? theOperationName.substring(1) : theOperationName;
+  }
+}
@@ -3,6 +3,7 @@ package ca.uhn.fhir.jpa.starter;
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
 import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.cdshooks.CdsHooksMetrics;
 import ca.uhn.fhir.jpa.starter.cdshooks.StarterCdsHooksConfig;
 import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
@@ -11,6 +12,8 @@ import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceRegistry;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -24,6 +27,7 @@ import org.junit.jupiter.api.Test;
 import org.opencds.cqf.fhir.cr.hapi.config.CrCdsHooksConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
 import org.opencds.cqf.fhir.cr.hapi.config.test.TestCdsHooksConfig;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
@@ -34,6 +38,7 @@ import java.util.concurrent.TimeUnit;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class, TestCdsHooksConfig.class, CrCdsHooksConfig.class, StarterCdsHooksConfig.class},
@@ -62,6 +67,9 @@ class CdsHooksServletIT implements IServerSupport {
 	@Autowired
 	ICdsServiceRegistry myCdsServiceRegistry;
 
+	@Autowired
+	ObjectProvider<MeterRegistry> myMeterRegistry;
+
 	@LocalServerPort
 	private int port;
 
@@ -113,6 +121,23 @@ class CdsHooksServletIT implements IServerSupport {
 		assertEquals(200, response.getStatusLine().getStatusCode());
 	}
 
+	@Test
+	void unregisteredServicesAreTaggedAsUnknown() throws IOException {
+		try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+			HttpPost request = new HttpPost(ourCdsBase + "/made-up-service");
+			request.setEntity(new StringEntity("{\"hookInstance\": \"1\", \"hook\": \"made-up-hook\"}"));
+			request.addHeader("Content-Type", "application/json");
+			EntityUtils.consume(httpClient.execute(request).getEntity());
+		}
+
+		MeterRegistry registry = myMeterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+		assertNull(registry.find(CdsHooksMetrics.REQUEST_TIMER).tag("service", "made-up-service").timer());
+		assertNull(registry.find(CdsHooksMetrics.REQUEST_TIMER).tag("hook", "made-up-hook").timer());
+		assertNotNull(registry.find(CdsHooksMetrics.REQUEST_TIMER)
+				.tag("service", CdsHooksMetrics.UNKNOWN)
+				.timer());
+	}
+
 	@Test
 	void testCdsHooks() throws IOException {
 		loadBundle("r4/HelloWorld-Bundle.json", ourCtx, ourClient);
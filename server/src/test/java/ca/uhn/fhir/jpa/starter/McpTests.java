@@ -69,7 +69,7 @@ public class McpTests {
 
 		var content = ((McpSchema.TextContent) searchResult.content().get(0));
 		var embeddedResponseBundle = new Gson().fromJson(content.text(), LinkedHashMap.class).get("response");
-		var responseBundle = fhirContext.newJsonParser().parseResource(Bundle.class, embeddedResponseBundle.toString());
+		var responseBundle = fhirContext.newJsonParser().parseResource(Bundle.class, new Gson().toJson(embeddedResponseBundle));
 		var entries = BundleUtil.toListOfEntries(fhirContext, responseBundle);
 		assertThat(entries.size()).isEqualTo(1);
 
@@ -0,0 +1,71 @@
+package ca.uhn.fhir.jpa.starter.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+	private static final long FAST = 10_000_000L;
+	private static final long SLOW = 100_000_000L;
+
+	@Test
+	void rejectsWhenLimitIsExhausted() {
+		var limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 0.5);
+
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isTrue();
+		assertThat(limiter.tryAcquire()).isFalse();
+		assertThat(limiter.getInFlight()).isEqualTo(2);
+
+		limiter.release(FAST);
+		assertThat(limiter.tryAcquire()).isTrue();
+	}
+
+	@Test
+	void growsWhileLatencyStaysNearBaseline() {
+		var limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 0.5);
+
+		for (int i = 0; i < 5; i++) {
+			limiter.tryAcquire();
+			limiter.tryAcquire();
+			limiter.release(FAST);
+			limiter.release(FAST);
+		}
+
+		assertThat(limiter.getLimit()).isGreaterThan(2);
+	}
+
+	@Test
+	void backsOffWhenLatencyExceedsTolerance() {
+		var limiter = new AdaptiveConcurrencyLimiter(8, 1, 10, 2.0, 0.5);
+		limiter.tryAcquire();
+		limiter.release(FAST);
+
+		limiter.tryAcquire();
+		limiter.release(SLOW);
+
+		assertThat(limiter.getLimit()).isEqualTo(4);
+	}
+
+	@Test
+	void neverDropsBelowMinimum() {
+		var limiter = new AdaptiveConcurrencyLimiter(4, 3, 10, 2.0, 0.1);
+		limiter.tryAcquire();
+		limiter.release(FAST);
+
+		for (int i = 0; i < 10; i++) {
+			limiter.tryAcquire();
+			limiter.release(SLOW);
+		}
+
+		assertThat(limiter.getLimit()).isEqualTo(3);
+	}
+
+	@Test
+	void rejectsInvalidBounds() {
+		assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(1, 5, 2, 2.0, 0.5))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
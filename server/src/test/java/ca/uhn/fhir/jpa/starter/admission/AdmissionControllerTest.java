@@ -0,0 +1,33 @@
+package ca.uhn.fhir.jpa.starter.admission;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControllerTest {
+
+	@Test
+	void endpointsBeyondTheCapShareOneLimiterAndMeterSeries() {
+		var properties = new AppProperties.AdmissionControl();
+		properties.setEnabled(true);
+		var registry = new SimpleMeterRegistry();
+		var controller = new AdmissionController(properties, registry);
+
+		for (int i = 0; i < AdmissionController.MAX_ENDPOINTS + 10; i++) {
+			controller.tryAcquire("endpoint-" + i).release();
+		}
+
+		assertThat(registry.find(AdmissionController.LIMIT_GAUGE).gauges())
+				.hasSize(AdmissionController.MAX_ENDPOINTS + 1);
+		assertThat(registry.find(AdmissionController.LIMIT_GAUGE)
+						.tag("endpoint", AdmissionController.OVERFLOW_ENDPOINT)
+						.gauge())
+				.isNotNull();
+		assertThat(registry.find(AdmissionController.LIMIT_GAUGE)
+						.tag("endpoint", "endpoint-" + AdmissionController.MAX_ENDPOINTS)
+						.gauge())
+				.isNull();
+	}
+}
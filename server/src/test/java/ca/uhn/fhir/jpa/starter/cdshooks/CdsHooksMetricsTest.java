@@ -0,0 +1,66 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CdsHooksMetricsTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final CdsHooksMetrics metrics = new CdsHooksMetrics(registry);
+
+	@Test
+	void recordsPhaseTimersPerServiceAndHook() {
+		metrics.recordPhase("crd-order-sign", "order-sign", CdsHooksMetrics.Phase.EVALUATE, 5_000_000);
+
+		var timer = registry.get(CdsHooksMetrics.PHASE_TIMER)
+				.tag("service", "crd-order-sign")
+				.tag("hook", "order-sign")
+				.tag("phase", "evaluate")
+				.timer();
+		assertThat(timer.count()).isEqualTo(1);
+		assertThat(timer.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(5.0);
+	}
+
+	@Test
+	void prefetchTimeIsAccumulatedUntilDrained() {
+		metrics.resetPrefetchNanos();
+		metrics.recordPrefetch("svc", "order-sign", "item1", 100);
+		metrics.recordPrefetch("svc", "order-sign", "item2", 250);
+
+		assertThat(metrics.drainPrefetchNanos()).isEqualTo(350);
+		assertThat(metrics.drainPrefetchNanos()).isZero();
+		assertThat(registry.get(CdsHooksMetrics.PREFETCH_TIMER).tag("key", "item2").timer().count())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void countsPrefetchHitsMissesAndTimeouts() {
+		metrics.prefetchHit("svc", "item1");
+		metrics.prefetchMiss("svc", "item2");
+		metrics.prefetchMiss("svc", "item2");
+		metrics.prefetchTimeout("svc", "item2");
+
+		assertThat(registry.get(CdsHooksMetrics.PREFETCH_CACHE_COUNTER).tag("result", "hit").counter().count())
+				.isEqualTo(1.0);
+		assertThat(registry.get(CdsHooksMetrics.PREFETCH_CACHE_COUNTER).tag("result", "miss").counter().count())
+				.isEqualTo(2.0);
+		assertThat(registry.get(CdsHooksMetrics.PREFETCH_TIMEOUT_COUNTER).counter().count())
+				.isEqualTo(1.0);
+	}
+
+	@Test
+	void blankTagValuesAreReportedAsUnknown() {
+		metrics.recordRequest(null, "", "error", 1);
+
+		assertThat(registry.get(CdsHooksMetrics.REQUEST_TIMER)
+						.tag("service", CdsHooksMetrics.UNKNOWN)
+						.tag("hook", CdsHooksMetrics.UNKNOWN)
+						.timer()
+						.count())
+				.isEqualTo(1);
+	}
+}
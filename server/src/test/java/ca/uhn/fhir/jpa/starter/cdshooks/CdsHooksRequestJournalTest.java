@@ -0,0 +1,86 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CdsHooksRequestJournalTest {
+
+	@TempDir
+	Path tempDir;
+
+	private CdsHooksProperties.Journal settings(Path file) {
+		var settings = new CdsHooksProperties.Journal();
+		settings.setFile(file.toString());
+		settings.setSampleRate(1.0);
+		return settings;
+	}
+
+	@Test
+	void writesSampledEntriesWithTruncatedBodies() throws Exception {
+		Path file = tempDir.resolve("journal.jsonl");
+		var settings = settings(file);
+		settings.setMaxBodyLength(5);
+
+		var journal = new CdsHooksRequestJournal(settings);
+		journal.record("svc", "order-sign", "abc", null, "success", 12, "0123456789", "{}");
+		journal.close();
+
+		List<String> lines = Files.readAllLines(file);
+		assertThat(lines).hasSize(1);
+		assertThat(lines.get(0)).contains("\"service\":\"svc\"").contains("01234...[truncated 5 chars]");
+	}
+
+	@Test
+	void skipsUnsampledSuccessesButKeepsErrors() throws Exception {
+		Path file = tempDir.resolve("journal.jsonl");
+		var settings = settings(file);
+		settings.setSampleRate(0.0);
+
+		var journal = new CdsHooksRequestJournal(settings);
+		journal.record("svc", "order-sign", "1", null, "success", 1, "{}", "{}");
+		journal.record("svc", "order-sign", "2", null, "error", 1, "{}", null);
+		journal.close();
+
+		List<String> lines = Files.readAllLines(file);
+		assertThat(lines).hasSize(1);
+		assertThat(lines.get(0)).contains("\"outcome\":\"error\"");
+	}
+
+	@Test
+	void rotatesFilesWhenSizeIsExceeded() throws Exception {
+		Path file = tempDir.resolve("journal.jsonl");
+		var settings = settings(file);
+		settings.setMaxFileSize(200);
+		settings.setMaxFiles(2);
+
+		var journal = new CdsHooksRequestJournal(settings);
+		for (int i = 0; i < 10; i++) {
+			journal.record("svc", "order-sign", String.valueOf(i), null, "success", 1, "{}", "{}");
+		}
+		journal.close();
+
+		assertThat(file).exists();
+		assertThat(tempDir.resolve("journal.jsonl.1")).exists();
+		assertThat(tempDir.resolve("journal.jsonl.2")).exists();
+		assertThat(tempDir.resolve("journal.jsonl.3")).doesNotExist();
+	}
+
+	@Test
+	void disabledJournalWritesNothing() throws Exception {
+		Path file = tempDir.resolve("journal.jsonl");
+		var settings = settings(file);
+		settings.setEnabled(false);
+
+		var journal = new CdsHooksRequestJournal(settings);
+		journal.record("svc", "order-sign", "1", null, "error", 1, "{}", "{}");
+		journal.close();
+
+		assertThat(file).doesNotExist();
+	}
+}
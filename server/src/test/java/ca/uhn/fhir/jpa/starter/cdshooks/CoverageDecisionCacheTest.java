@@ -0,0 +1,129 @@
+package ca.uhn.fhir.jpa.starter.cdshooks;
+
+import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestContextJson;
+import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseCardJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseSystemActionJson;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Coverage;
+import org.hl7.fhir.r4.model.Extension;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.ServiceRequest;
+import org.hl7.fhir.r4.model.StringType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoverageDecisionCacheTest {
+
+	private static CoverageDecisionCache newCache() {
+		var settings = new CdsHooksProperties.CoverageCache();
+		settings.setEnabled(true);
+		return new CoverageDecisionCache(settings);
+	}
+
+	private static CdsServiceRequestJson request(String orderId, String coverageId) {
+		var order = new ServiceRequest();
+		order.setId(orderId);
+		order.setCode(new CodeableConcept(new Coding("http://www.ama-assn.org/go/cpt", "94660", null)));
+		var draftOrders = new Bundle();
+		draftOrders.addEntry().setResource(order);
+
+		var coverage = new Coverage();
+		coverage.setId(coverageId);
+		coverage.addPayor(new Reference("Organization/payer"));
+		coverage.addClass_().setValue("gold").getType().addCoding().setCode("plan");
+
+		var context = new CdsServiceRequestContextJson();
+		context.put("draftOrders", draftOrders);
+		var request = new CdsServiceRequestJson();
+		request.setContext(context);
+		request.addPrefetch("coverage", coverage);
+		return request;
+	}
+
+	private static CdsServiceResponseJson decision(String orderId) {
+		var extension = new Extension(CoverageDecisionCache.COVERAGE_INFORMATION_URL);
+		extension.addExtension("covered", new StringType("covered"));
+		extension.addExtension("coverage-assertion-id", new StringType("first"));
+		var order = new ServiceRequest();
+		order.setId(orderId);
+		order.addExtension(extension);
+
+		var action = new CdsServiceResponseSystemActionJson();
+		action.setType("update");
+		action.setResource(order);
+		var response = new CdsServiceResponseJson();
+		response.addServiceAction(action);
+		return response;
+	}
+
+	@Test
+	void replaysDecisionForSamePlanAndCode() {
+		var cache = newCache();
+		cache.store("crd", request("a", "cov-1"), decision("a"));
+
+		CdsServiceResponseJson replayed = cache.lookup("crd", request("b", "cov-2"));
+
+		assertThat(replayed).isNotNull();
+		var order = (ServiceRequest) replayed.getServiceActions().get(0).getResource();
+		assertThat(order.getIdElement().getIdPart()).isEqualTo("b");
+		Extension info = order.getExtensionByUrl(CoverageDecisionCache.COVERAGE_INFORMATION_URL);
+		assertThat(info.getExtensionByUrl("covered").getValue().primitiveValue()).isEqualTo("covered");
+		assertThat(info.getExtensionByUrl("coverage-assertion-id").getValue().primitiveValue())
+				.isNotEqualTo("first");
+	}
+
+	@Test
+	void doesNotCacheResponsesWithCards() {
+		var cache = newCache();
+		var response = decision("a");
+		response.addCard(new CdsServiceResponseCardJson());
+		cache.store("crd", request("a", "cov-1"), response);
+
+		assertThat(cache.lookup("crd", request("b", "cov-2"))).isNull();
+	}
+
+	@Test
+	void ruleChangesClearTheCache() {
+		var cache = newCache();
+		cache.store("crd", request("a", "cov-1"), decision("a"));
+		cache.handleChange(null);
+
+		assertThat(cache.lookup("crd", request("b", "cov-2"))).isNull();
+	}
+
+	@Test
+	void replayReplacesExistingCoverageInformation() {
+		var cache = newCache();
+		cache.store("crd", request("a", "cov-1"), decision("a"));
+		var request = request("b", "cov-2");
+		var draft = (ServiceRequest) ((Bundle) request.getContext().getResource("draftOrders"))
+				.getEntryFirstRep()
+				.getResource();
+		draft.addExtension(CoverageDecisionCache.COVERAGE_INFORMATION_URL, new StringType("stale"));
+
+		CdsServiceResponseJson replayed = cache.lookup("crd", request);
+
+		var order = (ServiceRequest) replayed.getServiceActions().get(0).getResource();
+		assertThat(order.getExtensionsByUrl(CoverageDecisionCache.COVERAGE_INFORMATION_URL))
+				.singleElement()
+				.satisfies(e -> assertThat(e.hasValue()).isFalse());
+	}
+
+	@Test
+	void doesNotCacheResponsesWithOtherSystemActions() {
+		var cache = newCache();
+		var response = decision("a");
+		var task = new CdsServiceResponseSystemActionJson();
+		task.setType("create");
+		task.setResource(new ServiceRequest());
+		response.addServiceAction(task);
+		cache.store("crd", request("a", "cov-1"), response);
+
+		assertThat(cache.lookup("crd", request("b", "cov-2"))).isNull();
+	}
+}
@@ -0,0 +1,46 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkImportWriteTuningTest {
+
+	@Test
+	void insertsAreOrderedAndBatched() {
+		AppProperties properties = new AppProperties();
+		properties.setBulk_import_jdbc_batch_size(1000);
+		Map<String, Object> jpaProperties = new HashMap<>();
+		jpaProperties.put(AvailableSettings.STATEMENT_BATCH_SIZE, "20");
+
+		BulkImportWriteTuning.configure(properties, jpaProperties);
+
+		assertThat(jpaProperties)
+				.containsEntry(AvailableSettings.ORDER_INSERTS, "true")
+				.containsEntry(AvailableSettings.ORDER_UPDATES, "true")
+				.containsEntry(AvailableSettings.STATEMENT_BATCH_SIZE, "1000");
+	}
+
+	@Test
+	void batchRewritingIsOnlyEnabledForPostgres() {
+		BeanPostProcessor rewriter = BulkImportWriteTuning.postgresBatchRewriter();
+		HikariDataSource postgres = new HikariDataSource();
+		postgres.setJdbcUrl("jdbc:postgresql://localhost:5432/hapi");
+		HikariDataSource h2 = new HikariDataSource();
+		h2.setJdbcUrl("jdbc:h2:mem:test");
+
+		rewriter.postProcessBeforeInitialization(postgres, "dataSource");
+		rewriter.postProcessBeforeInitialization(h2, "dataSource");
+
+		assertThat(postgres.getDataSourceProperties())
+				.containsEntry(BulkImportWriteTuning.REWRITE_BATCHED_INSERTS, "true");
+		assertThat(h2.getDataSourceProperties()).doesNotContainKey(BulkImportWriteTuning.REWRITE_BATCHED_INSERTS);
+	}
+}
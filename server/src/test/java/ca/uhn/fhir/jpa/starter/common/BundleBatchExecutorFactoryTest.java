@@ -0,0 +1,109 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class BundleBatchExecutorFactoryTest {
+
+	@Test
+	void pooledExecutorUsesConfiguredSizes() {
+		ThreadPoolExecutor executor = BundleBatchExecutorFactory.newPooledExecutor(4, 16, 50);
+
+		assertThat(executor.getCorePoolSize()).isEqualTo(4);
+		assertThat(executor.getMaximumPoolSize()).isEqualTo(16);
+		assertThat(executor.getQueue().remainingCapacity()).isEqualTo(50);
+		executor.shutdown();
+	}
+
+	@Test
+	void maximumIsNeverBelowCore() {
+		ThreadPoolExecutor executor = BundleBatchExecutorFactory.newPooledExecutor(8, 2, 10);
+
+		assertThat(executor.getMaximumPoolSize()).isEqualTo(8);
+		executor.shutdown();
+	}
+
+	@Test
+	void boundedExecutorRunsEntriesBeyondTheCapOnTheCaller() throws InterruptedException {
+		ExecutorService unbounded = Executors.newCachedThreadPool();
+		ExecutorService executor = BundleBatchExecutorFactory.callerRunsBeyond(unbounded, 2);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(2);
+		try {
+			for (int i = 0; i < 2; i++) {
+				executor.execute(() -> {
+					started.countDown();
+					awaitQuietly(release);
+				});
+			}
+			assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+			AtomicReference<Thread> ranOn = new AtomicReference<>();
+			executor.execute(() -> ranOn.set(Thread.currentThread()));
+			assertThat(ranOn.get()).isSameAs(Thread.currentThread());
+
+			release.countDown();
+			// Once the running entries finish, their permits are handed back
+			await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> {
+				CountDownLatch done = new CountDownLatch(1);
+				AtomicReference<Thread> thread = new AtomicReference<>();
+				executor.execute(() -> {
+					thread.set(Thread.currentThread());
+					done.countDown();
+				});
+				assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+				assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+			});
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	private static void awaitQuietly(CountDownLatch theLatch) {
+		try {
+			theLatch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void entriesAreTimedAndQueueIsReported() throws InterruptedException {
+		AppProperties properties = new AppProperties();
+		properties.setBundle_batch_pool_size(2);
+		properties.setBundle_batch_pool_max_size(2);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TaskExecutor executor = BundleBatchExecutorFactory.create(properties, registry);
+
+		CountDownLatch done = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			executor.execute(done::countDown);
+		}
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(registry.find("executor.queued")
+						.tag("name", BundleBatchExecutorFactory.METRIC_NAME)
+						.gauge())
+				.isNotNull();
+		// The timer records once the task has returned, which may be just after the latch opens
+		await().atMost(5, TimeUnit.SECONDS)
+				.untilAsserted(() -> assertThat(registry.find("executor")
+								.tag("name", BundleBatchExecutorFactory.METRIC_NAME)
+								.timer()
+								.count())
+						.isEqualTo(3));
+	}
+}
@@ -0,0 +1,74 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable;
+import ca.uhn.fhir.jpa.model.entity.ResourceTable;
+import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.Application;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hl7.fhir.instance.model.api.IIdType;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.cache.Cache;
+import javax.cache.Caching;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the server's Hibernate persistence unit with {@code hapi.fhir.second_level_cache.enabled} to check that the
+ * settings produced by {@link HibernateSecondLevelCache} are accepted and that stored resources land in the region.
+ */
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class},
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:dbr4-second-level-cache",
+			"hapi.fhir.fhir_version=r4",
+			"spring.ai.mcp.server.enabled=false",
+			"hapi.fhir.second_level_cache.enabled=true"
+		})
+class HibernateSecondLevelCacheJpaTest {
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	DaoRegistry daoRegistry;
+
+	@Test
+	void storedResourcesAreCachedInTheResourceRegion() {
+		SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+		assertThat(sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()).isTrue();
+		assertThat(sessionFactory
+						.getMappingMetamodel()
+						.getEntityDescriptor(ResourceTable.class)
+						.canReadFromCache())
+				.isTrue();
+		assertThat(sessionFactory
+						.getMappingMetamodel()
+						.getEntityDescriptor(ResourceHistoryTable.class)
+						.canReadFromCache())
+				.isFalse();
+
+		IFhirResourceDao<Patient> dao = daoRegistry.getResourceDao(Patient.class);
+		IIdType id = dao.create(new Patient().setActive(true), new SystemRequestDetails())
+				.getId()
+				.toUnqualifiedVersionless();
+		assertThat(dao.read(id, new SystemRequestDetails()).getActive()).isTrue();
+
+		Cache<Object, Object> region = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+				.getCacheManager(
+						HibernateSecondLevelCache.CACHE_MANAGER_URI, HibernateSecondLevelCache.class.getClassLoader())
+				.getCache("resource");
+		assertThat(region).isNotNull();
+		assertThat(region.iterator().hasNext()).isTrue();
+	}
+}
@@ -0,0 +1,95 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HibernateSecondLevelCacheTest {
+
+	@Test
+	void defaultRegionsAreUsedWhenNoneAreConfigured() {
+		AppProperties.SecondLevelCache settings = new AppProperties.SecondLevelCache();
+		settings.setEnabled(true);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "false");
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+		HibernateSecondLevelCache.configure(settings, properties, registry);
+
+		assertThat(properties)
+				.containsEntry(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true")
+				.containsEntry(AvailableSettings.USE_QUERY_CACHE, "false")
+				.containsEntry(
+						AvailableSettings.CLASS_CACHE_PREFIX + ".ca.uhn.fhir.jpa.model.entity.ResourceTable",
+						"read-write,resource")
+				.containsEntry(
+						AvailableSettings.CLASS_CACHE_PREFIX + ".ca.uhn.fhir.jpa.entity.TermConcept",
+						"read-write,terminology")
+				.doesNotContainKey(
+						AvailableSettings.CLASS_CACHE_PREFIX + ".ca.uhn.fhir.jpa.model.entity.ResourceHistoryTable");
+		CacheManager cacheManager = (CacheManager) properties.get(ConfigSettings.CACHE_MANAGER);
+		assertThat(cacheManager.getURI()).isEqualTo(HibernateSecondLevelCache.CACHE_MANAGER_URI);
+		assertThat(cacheManager.getCache("resource")).isNotNull();
+		assertThat(cacheManager.getCache("search-parameter")).isNull();
+		assertThat(registry.find("cache.gets").tag("cache", "terminology").meters()).isNotEmpty();
+	}
+
+	@Test
+	void configuredRegionsAndQueryCache() {
+		AppProperties.SecondLevelCache.Region region = new AppProperties.SecondLevelCache.Region();
+		region.setEntities(List.of("ca.uhn.fhir.jpa.entity.TermValueSet"));
+		region.setConcurrency_strategy("nonstrict-read-write");
+		region.setMaximum_size(100L);
+		AppProperties.SecondLevelCache settings = new AppProperties.SecondLevelCache();
+		settings.setEnabled(true);
+		settings.setQuery_cache_enabled(true);
+		settings.setRegions(Map.of("valuesets", region));
+		Map<String, Object> properties = new HashMap<>();
+
+		HibernateSecondLevelCache.configure(settings, properties, new SimpleMeterRegistry());
+
+		assertThat(properties)
+				.containsEntry(AvailableSettings.USE_QUERY_CACHE, "true")
+				.containsEntry(
+						AvailableSettings.CLASS_CACHE_PREFIX + ".ca.uhn.fhir.jpa.entity.TermValueSet",
+						"nonstrict-read-write,valuesets")
+				.doesNotContainKey(AvailableSettings.CLASS_CACHE_PREFIX + ".ca.uhn.fhir.jpa.entity.TermConcept");
+		CacheManager cacheManager = (CacheManager) properties.get(ConfigSettings.CACHE_MANAGER);
+		assertThat(cacheManager.getCache(HibernateSecondLevelCache.QUERY_RESULTS_REGION)).isNotNull();
+		assertThat(cacheManager.getCache(HibernateSecondLevelCache.UPDATE_TIMESTAMPS_REGION)).isNotNull();
+	}
+
+	@Test
+	void existingRegionIsRecreatedWhenItsBoundsChange() {
+		AppProperties.SecondLevelCache.Region region = new AppProperties.SecondLevelCache.Region();
+		region.setEntities(List.of("ca.uhn.fhir.jpa.entity.TermConceptMap"));
+		region.setMaximum_size(10L);
+		AppProperties.SecondLevelCache settings = new AppProperties.SecondLevelCache();
+		settings.setEnabled(true);
+		settings.setRegions(Map.of("resized", region));
+		Map<String, Object> properties = new HashMap<>();
+		HibernateSecondLevelCache.configure(settings, properties, new SimpleMeterRegistry());
+		CacheManager cacheManager = (CacheManager) properties.get(ConfigSettings.CACHE_MANAGER);
+		Cache<Object, Object> first = cacheManager.getCache("resized");
+
+		HibernateSecondLevelCache.configure(settings, new HashMap<>(), new SimpleMeterRegistry());
+		assertThat(cacheManager.getCache("resized")).isSameAs(first);
+
+		region.setMaximum_size(20L);
+		HibernateSecondLevelCache.configure(settings, new HashMap<>(), new SimpleMeterRegistry());
+		Cache<Object, Object> resized = cacheManager.getCache("resized");
+		assertThat(resized).isNotSameAs(first);
+		assertThat(resized.getConfiguration(CaffeineConfiguration.class).getMaximumSize()).hasValue(20L);
+	}
+}
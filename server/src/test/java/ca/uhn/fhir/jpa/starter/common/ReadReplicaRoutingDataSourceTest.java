@@ -0,0 +1,70 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaRoutingDataSourceTest {
+
+	private static DataSource database(String theName) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + theName + ";DB_CLOSE_DELAY=-1");
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("CREATE TABLE IF NOT EXISTS WHICH_DB (NAME VARCHAR(20))");
+		jdbc.execute("DELETE FROM WHICH_DB");
+		jdbc.update("INSERT INTO WHICH_DB VALUES (?)", theName);
+		return dataSource;
+	}
+
+	private static String whichDatabase(DataSource theDataSource, boolean theReadOnly) {
+		TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(theDataSource));
+		tx.setReadOnly(theReadOnly);
+		JdbcTemplate jdbc = new JdbcTemplate(theDataSource);
+		return tx.execute(s -> jdbc.queryForObject("SELECT NAME FROM WHICH_DB", String.class));
+	}
+
+	@Test
+	void readOnlyTransactionsGoToReplicasRoundRobin() {
+		DataSource routing = ReadReplicaRoutingDataSource.create(
+				database("primary"), List.of(database("replica_a"), database("replica_b")));
+
+		ReadReplicaRoutingDataSource.allowReplicaReads();
+		try {
+			assertThat(whichDatabase(routing, true)).isEqualTo("replica_a");
+			assertThat(whichDatabase(routing, true)).isEqualTo("replica_b");
+			assertThat(whichDatabase(routing, true)).isEqualTo("replica_a");
+		} finally {
+			ReadReplicaRoutingDataSource.clearReplicaReads();
+		}
+	}
+
+	@Test
+	void readOnlyTransactionsStayOnPrimaryUnlessTheThreadOptsIn() {
+		DataSource routing = ReadReplicaRoutingDataSource.create(database("primary"), List.of(database("replica_a")));
+
+		assertThat(whichDatabase(routing, true)).isEqualTo("primary");
+	}
+
+	@Test
+	void writesAndNonTransactionalAccessGoToPrimary() {
+		DataSource routing = ReadReplicaRoutingDataSource.create(database("primary"), List.of(database("replica_a")));
+
+		assertThat(whichDatabase(routing, false)).isEqualTo("primary");
+		assertThat(new JdbcTemplate(routing).queryForObject("SELECT NAME FROM WHICH_DB", String.class))
+				.isEqualTo("primary");
+	}
+
+	@Test
+	void withoutReplicasThePrimaryIsUsedDirectly() {
+		DataSource primary = database("primary");
+
+		assertThat(ReadReplicaRoutingDataSource.create(primary, List.of())).isSameAs(primary);
+	}
+}
@@ -0,0 +1,93 @@
+package ca.uhn.fhir.jpa.starter.common;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.Application;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the server with a read replica that has no HAPI schema, so that any query routed to it by mistake fails, and
+ * checks the routing through the server's own {@code entityManagerFactory} and {@code transactionManager}.
+ */
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class},
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:dbr4-read-replica-primary",
+			"hapi.fhir.fhir_version=r4",
+			"spring.ai.mcp.server.enabled=false",
+			"hapi.fhir.read_replica.enabled=true",
+			"hapi.fhir.read_replica.databases[0].url=jdbc:h2:mem:dbr4-read-replica-replica;DB_CLOSE_DELAY=-1"
+		})
+class ReadReplicaRoutingJpaTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	PlatformTransactionManager transactionManager;
+
+	private String whichDatabase(boolean theReadOnly) {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		tx.setReadOnly(theReadOnly);
+		return tx.execute(s -> {
+			EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+			return String.valueOf(entityManager.createNativeQuery("SELECT DATABASE()").getSingleResult());
+		});
+	}
+
+	@Test
+	void onlyReadOnlyTransactionsOfAnOptedInThreadUseTheReplica() {
+		assertThat(whichDatabase(true)).isEqualToIgnoringCase("dbr4-read-replica-primary");
+
+		ReadReplicaRoutingDataSource.allowReplicaReads();
+		try {
+			assertThat(whichDatabase(true)).isEqualToIgnoringCase("dbr4-read-replica-replica");
+			assertThat(whichDatabase(false)).isEqualToIgnoringCase("dbr4-read-replica-primary");
+		} finally {
+			ReadReplicaRoutingDataSource.clearReplicaReads();
+		}
+	}
+
+	@Test
+	void searchesPageThroughTheSearchCacheOnThePrimary() {
+		IGenericClient client =
+				FhirContext.forR4Cached().newRestfulGenericClient("http://localhost:" + port + "/fhir/");
+		for (int i = 0; i < 25; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("http://example.org/replica").setValue(String.valueOf(i));
+			client.create().resource(patient).execute();
+		}
+
+		Bundle page = client.search()
+				.forResource(Patient.class)
+				.where(Patient.IDENTIFIER.hasSystemWithAnyCode("http://example.org/replica"))
+				.count(10)
+				.returnBundle(Bundle.class)
+				.execute();
+		int seen = page.getEntry().size();
+		while (page.getLink(Bundle.LINK_NEXT) != null) {
+			page = client.loadPage().next(page).execute();
+			seen += page.getEntry().size();
+		}
+
+		assertThat(seen).isEqualTo(25);
+	}
+}
@@ -0,0 +1,62 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CodeIndexTest {
+
+	private static final String LOINC = "http://loinc.org";
+	private static final String SNOMED = "http://snomed.info/sct";
+
+	private static List<Code> codes(int theCount) {
+		List<Code> codes = new ArrayList<>();
+		for (int i = 0; i < theCount; i++) {
+			codes.add(new Code().withSystem(LOINC).withCode(i + "-" + (i % 10)));
+		}
+		return codes;
+	}
+
+	@Test
+	void containsEveryIndexedCodeAndNothingElse() {
+		List<Code> codes = codes(10_000);
+		CodeIndex index = CodeIndex.of(codes, Code::getSystem, Code::getCode);
+
+		assertThat(index.size()).isEqualTo(10_000);
+		assertThat(codes).allMatch(c -> index.contains(c.getSystem(), c.getCode()));
+		assertThat(index.contains(SNOMED, "0-0")).isFalse();
+		assertThat(index.contains(LOINC, "10000-0")).isFalse();
+		assertThat(index.contains(null, "0-0")).isFalse();
+	}
+
+	@Test
+	void duplicatesAreCountedOnce() {
+		Code code = new Code().withSystem(LOINC).withCode("1234-5");
+		CodeIndex index = CodeIndex.of(List.of(code, code), Code::getSystem, Code::getCode);
+
+		assertThat(index.size()).isEqualTo(1);
+	}
+
+	@Test
+	void emptyIndexContainsNothing() {
+		CodeIndex index = CodeIndex.of(List.<Code>of(), Code::getSystem, Code::getCode);
+
+		assertThat(index.contains(LOINC, "1234-5")).isFalse();
+	}
+
+	@Test
+	void indexedValueSetCacheIndexesExpansionsOnPut() {
+		Map<String, List<Code>> cache = new CqlGlobalCaches(new CqlCacheProperties()).indexedValueSets();
+		cache.put("http://example.org/ValueSet/vs", codes(100));
+
+		List<Code> cached = cache.get("http://example.org/ValueSet/vs");
+		assertThat(cached).isInstanceOf(IndexedCodeList.class).hasSize(100);
+		assertThat(((IndexedCodeList) cached).contains(LOINC, "42-2")).isTrue();
+		assertThat(((IndexedCodeList) cached).contains(SNOMED, "42-2")).isFalse();
+	}
+}
@@ -0,0 +1,37 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cql.engine.retrieve.RetrieveSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CqlDataTest {
+
+	@Test
+	void configuredModesAreUsedWithoutPrefetch() {
+		CqlData data = new CqlData();
+		data.setSearchParameterMode(RetrieveSettings.SEARCH_FILTER_MODE.USE_SEARCH_PARAMETERS);
+		data.setTerminologyParameterMode(RetrieveSettings.TERMINOLOGY_FILTER_MODE.USE_VALUE_SET_URL);
+
+		RetrieveSettings settings = data.getRetrieveSettings();
+
+		assertThat(settings.getSearchParameterMode())
+				.isEqualTo(RetrieveSettings.SEARCH_FILTER_MODE.USE_SEARCH_PARAMETERS);
+		assertThat(settings.getTerminologyParameterMode())
+				.isEqualTo(RetrieveSettings.TERMINOLOGY_FILTER_MODE.USE_VALUE_SET_URL);
+	}
+
+	@Test
+	void prefetchFiltersInMemory() {
+		CqlData data = new CqlData();
+		data.setSearchParameterMode(RetrieveSettings.SEARCH_FILTER_MODE.USE_SEARCH_PARAMETERS);
+		data.setTerminologyParameterMode(RetrieveSettings.TERMINOLOGY_FILTER_MODE.USE_VALUE_SET_URL);
+		data.setPrefetchEnabled(true);
+
+		RetrieveSettings settings = data.getRetrieveSettings();
+
+		assertThat(settings.getSearchParameterMode()).isEqualTo(RetrieveSettings.SEARCH_FILTER_MODE.FILTER_IN_MEMORY);
+		assertThat(settings.getTerminologyParameterMode())
+				.isEqualTo(RetrieveSettings.TERMINOLOGY_FILTER_MODE.FILTER_IN_MEMORY);
+	}
+}
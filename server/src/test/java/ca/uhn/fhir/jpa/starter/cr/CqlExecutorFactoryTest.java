@@ -0,0 +1,56 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CqlExecutorFactoryTest {
+
+	@Test
+	void fixedPoolHonoursSizeAndQueueBound() {
+		var properties = new CqlExecutorProperties();
+		properties.setPool_size(3);
+		properties.setQueue_capacity(5);
+
+		ExecutorService executor = CqlExecutorFactory.newExecutor(properties);
+
+		assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+		assertThat(pool.getMaximumPoolSize()).isEqualTo(3);
+		assertThat(pool.getQueue().remainingCapacity()).isEqualTo(5);
+		pool.shutdown();
+	}
+
+	@Test
+	void workStealingPoolUsesConfiguredParallelism() {
+		var properties = new CqlExecutorProperties();
+		properties.setType(CqlExecutorProperties.Type.WORK_STEALING);
+		properties.setPool_size(4);
+
+		ExecutorService executor = CqlExecutorFactory.newExecutor(properties);
+
+		assertThat(executor).isInstanceOf(ForkJoinPool.class);
+		assertThat(((ForkJoinPool) executor).getParallelism()).isEqualTo(4);
+		executor.shutdown();
+	}
+
+	@Test
+	void publishesQueueAndLatencyMetrics() throws Exception {
+		var registry = new SimpleMeterRegistry();
+		ExecutorService executor = CqlExecutorFactory.create(new CqlExecutorProperties(), registry);
+
+		executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(registry.find("executor.queued").tag("name", "cql").gauge())
+				.isNotNull();
+		assertThat(registry.find("executor").tag("name", "cql").timer().count())
+				.isEqualTo(1);
+	}
+}
@@ -0,0 +1,44 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CqlGlobalCachesTest {
+
+	private static List<Code> codes(int count) {
+		return Collections.nCopies(count, new Code().withSystem("http://loinc.org").withCode("1234-5"));
+	}
+
+	@Test
+	void valueSetCacheIsBoundedByCodeCount() {
+		var properties = new CqlCacheProperties();
+		properties.setValueset_maximum_codes(100L);
+		var caches = new CqlGlobalCaches(properties);
+
+		caches.valueSets().put("http://example.org/ValueSet/small", codes(10));
+		caches.valueSets().put("http://example.org/ValueSet/large", codes(500));
+
+		CqlGlobalCaches.Statistics statistics = caches.statistics().get(CqlGlobalCaches.VALUESETS);
+		assertThat(statistics.evictions()).isEqualTo(1);
+		assertThat(caches.valueSets()).containsOnlyKeys("http://example.org/ValueSet/small");
+	}
+
+	@Test
+	void flushesNamedCache() {
+		var caches = new CqlGlobalCaches(new CqlCacheProperties());
+		caches.valueSets().put("http://example.org/ValueSet/a", codes(1));
+
+		caches.invalidate(CqlGlobalCaches.LIBRARIES);
+		assertThat(caches.valueSets()).hasSize(1);
+
+		caches.invalidate(null);
+		assertThat(caches.valueSets()).isEmpty();
+		assertThatThrownBy(() -> caches.invalidate("elm")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,254 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.Application;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import ca.uhn.fhir.rest.server.interceptor.auth.AuthorizationInterceptor;
+import ca.uhn.fhir.rest.server.interceptor.auth.IAuthRule;
+import ca.uhn.fhir.rest.server.interceptor.auth.RuleBuilder;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.hl7.fhir.r4.model.Attachment;
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Library;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives {@code Library/$evaluate} over HTTP to check that repeated evaluations are served from the result cache, that
+ * a write to the patient's data, through the REST server or not, turns the next one into a miss, and that a hit is
+ * still subject to authorization.
+ */
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class},
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:dbr4-cr-results",
+			"hapi.fhir.fhir_version=r4",
+			"spring.ai.mcp.server.enabled=false",
+			"hapi.fhir.cr.enabled=true",
+			"hapi.fhir.cr.cql.cache.results_enabled=true"
+		})
+class CqlResultCacheInterceptorTest {
+
+	private static final String HAS_OBSERVATION = "Has Observation";
+	private static final String OBSERVATION_COUNT = "Observation Count";
+	private static final String CQL =
+			"""
+			library CacheTest version '1.0.0'
+
+			using FHIR version '4.0.1'
+
+			context Patient
+
+			define "Has Observation":
+			  exists [Observation]
+
+			define "Observation Count":
+			  Count([Observation])
+			""";
+
+	private final FhirContext fhirContext = FhirContext.forR4Cached();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	IInterceptorService interceptorService;
+
+	@Autowired
+	CqlResultCache cache;
+
+	@Autowired
+	CqlStoredVersions storedVersions;
+
+	@Autowired
+	DaoRegistry daoRegistry;
+
+	@Autowired
+	RestfulServer restfulServer;
+
+	private final SearchCounter counter = new SearchCounter();
+	private IGenericClient client;
+
+	@Interceptor
+	public static class SearchCounter {
+		private final AtomicInteger searches = new AtomicInteger();
+
+		@Hook(Pointcut.STORAGE_PRESEARCH_REGISTERED)
+		public void searchRegistered() {
+			searches.incrementAndGet();
+		}
+	}
+
+	private record Response(int status, String contentType, String body) {}
+
+	@BeforeEach
+	void setUp() {
+		client = fhirContext.newRestfulGenericClient("http://localhost:" + port + "/fhir/");
+		Library library = new Library();
+		library.setId("CacheTest");
+		library.setUrl("http://example.org/Library/CacheTest");
+		library.setName("CacheTest");
+		library.setVersion("1.0.0");
+		library.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		library.setType(new CodeableConcept(
+				new Coding("http://terminology.hl7.org/CodeSystem/library-type", "logic-library", null)));
+		library.addContent(new Attachment().setContentType("text/cql").setData(CQL.getBytes(StandardCharsets.UTF_8)));
+		client.update().resource(library).execute();
+		for (String patient : new String[] {"p1", "p2", "p3"}) {
+			client.update().resource(new Patient().setId(patient)).execute();
+		}
+		interceptorService.registerInterceptor(counter);
+	}
+
+	@AfterEach
+	void tearDown() {
+		interceptorService.unregisterInterceptor(counter);
+	}
+
+	private Response evaluate(String thePatient, String theFormat, String... theExpressions) throws Exception {
+		URIBuilder uri = new URIBuilder("http://localhost:" + port + "/fhir/Library/CacheTest/$evaluate")
+				.addParameter("subject", "Patient/" + thePatient);
+		for (String expression : theExpressions) {
+			uri.addParameter("expression", expression);
+		}
+		if (theFormat != null) {
+			uri.addParameter("_format", theFormat);
+		}
+		try (CloseableHttpClient httpClient = HttpClients.createDefault();
+				CloseableHttpResponse response = httpClient.execute(new HttpGet(uri.build()))) {
+			return new Response(
+					response.getStatusLine().getStatusCode(),
+					response.getEntity().getContentType().getValue(),
+					EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+		}
+	}
+
+	private Parameters json(Response theResponse) {
+		assertThat(theResponse.status()).as(theResponse.body()).isEqualTo(200);
+		return fhirContext.newJsonParser().parseResource(Parameters.class, theResponse.body());
+	}
+
+	@Test
+	void repeatedEvaluationIsAHitUntilThePatientsDataChanges() throws Exception {
+		// Miss: both expressions are evaluated and stored one by one
+		int searches = counter.searches.get();
+		Parameters first = json(evaluate("p1", null, HAS_OBSERVATION, OBSERVATION_COUNT));
+		assertThat(counter.searches.get()).isGreaterThan(searches);
+		assertThat(((BooleanType) first.getParameterValue(HAS_OBSERVATION)).booleanValue()).isFalse();
+
+		// Hit: written before the operation runs, without touching the database
+		searches = counter.searches.get();
+		Response hit = evaluate("p1", null, HAS_OBSERVATION, OBSERVATION_COUNT);
+		assertThat(hit.contentType()).startsWith("application/fhir+json");
+		assertThat(json(hit).equalsDeep(first)).isTrue();
+
+		// The multi-expression result was split, so a single expression is a hit on its own
+		Parameters single = json(evaluate("p1", null, OBSERVATION_COUNT));
+		assertThat(single.getParameter())
+				.extracting(Parameters.ParametersParameterComponent::getName)
+				.containsExactly(OBSERVATION_COUNT);
+
+		// A hit is encoded in the requested format
+		Response xml = evaluate("p1", "xml", HAS_OBSERVATION);
+		assertThat(xml.contentType()).startsWith("application/fhir+xml");
+		Parameters decoded = fhirContext.newXmlParser().parseResource(Parameters.class, xml.body());
+		assertThat(decoded.getParameterValue(HAS_OBSERVATION)).isInstanceOf(BooleanType.class);
+		assertThat(counter.searches.get()).isEqualTo(searches);
+
+		// A write to the patient's compartment turns the next evaluation into a miss with fresh results
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.setCode(new CodeableConcept(new Coding("http://loinc.org", "8867-4", "Heart rate")));
+		observation.setSubject(new Reference("Patient/p1"));
+		client.create().resource(observation).execute();
+
+		searches = counter.searches.get();
+		Parameters refreshed = json(evaluate("p1", null, HAS_OBSERVATION, OBSERVATION_COUNT));
+		assertThat(counter.searches.get()).isGreaterThan(searches);
+		assertThat(((BooleanType) refreshed.getParameterValue(HAS_OBSERVATION)).booleanValue()).isTrue();
+		assertThat(((IntegerType) refreshed.getParameterValue(OBSERVATION_COUNT)).getValue()).isEqualTo(1);
+	}
+
+	@Test
+	void writeOutsideTheRestServerTurnsTheNextEvaluationIntoAMiss() throws Exception {
+		json(evaluate("p3", null, HAS_OBSERVATION));
+		int searches = counter.searches.get();
+		json(evaluate("p3", null, HAS_OBSERVATION));
+		assertThat(counter.searches.get()).isEqualTo(searches);
+
+		// As written by a Batch2 job or package installation, without going through the RestfulServer
+		Observation observation = new Observation();
+		observation.setStatus(Observation.ObservationStatus.FINAL);
+		observation.setSubject(new Reference("Patient/p3"));
+		daoRegistry.getResourceDao(Observation.class).create(observation, new SystemRequestDetails());
+
+		Parameters refreshed = json(evaluate("p3", null, HAS_OBSERVATION));
+		assertThat(((BooleanType) refreshed.getParameterValue(HAS_OBSERVATION)).booleanValue()).isTrue();
+	}
+
+	@Test
+	void cachedResultIsStillAuthorized() throws Exception {
+		json(evaluate("p2", null, HAS_OBSERVATION));
+
+		AuthorizationInterceptor denyAll = new AuthorizationInterceptor() {
+			@Override
+			public List<IAuthRule> buildRuleList(RequestDetails theRequestDetails) {
+				return new RuleBuilder().denyAll("no access").build();
+			}
+		};
+		restfulServer.registerInterceptor(denyAll);
+		try {
+			assertThat(evaluate("p2", null, HAS_OBSERVATION).status()).isEqualTo(403);
+		} finally {
+			restfulServer.unregisterInterceptor(denyAll);
+		}
+	}
+
+	@Test
+	void resultsWithAnOperationOutcomeAreNotStored() throws Exception {
+		evaluate("p2", null, HAS_OBSERVATION, "Not Defined");
+
+		String knowledgeVersion = storedVersions.knowledge();
+		String dataVersion = storedVersions.patientData("p2");
+		assertThat(cache.get(new CqlResultCache.Key(
+						"Library/CacheTest", knowledgeVersion, HAS_OBSERVATION, "p2", dataVersion)))
+				.isNull();
+		assertThat(cache.get(new CqlResultCache.Key(
+						"Library/CacheTest", knowledgeVersion, "Not Defined", "p2", dataVersion)))
+				.isNull();
+	}
+}
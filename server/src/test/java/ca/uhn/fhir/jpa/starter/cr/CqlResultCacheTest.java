@@ -0,0 +1,61 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.hl7.fhir.r4.model.BooleanType;
+import org.hl7.fhir.r4.model.Parameters;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CqlResultCacheTest {
+
+	private final CqlCacheProperties properties = new CqlCacheProperties();
+	private final AtomicLong nanos = new AtomicLong();
+	private final CqlResultCache cache = new CqlResultCache(properties, nanos::get);
+
+	private static CqlResultCache.Key key(String thePatient, String theDataVersion, String theKnowledgeVersion) {
+		return new CqlResultCache.Key("Library/lib", theKnowledgeVersion, "InDenominator", thePatient, theDataVersion);
+	}
+
+	private static List<Parameters.ParametersParameterComponent> result(boolean theValue) {
+		return List.of(new Parameters.ParametersParameterComponent()
+				.setName("InDenominator")
+				.setValue(new BooleanType(theValue)));
+	}
+
+	@Test
+	void resultIsReturnedWhileTheStoredVersionsAreUnchanged() {
+		cache.put(key("p1", "d1", "k1"), result(true));
+
+		assertThat(cache.get(key("p1", "d1", "k1"))).hasSize(1);
+		assertThat(cache.get(key("p2", "d1", "k1"))).isNull();
+	}
+
+	@Test
+	void changedPatientDataVersionIsAMiss() {
+		cache.put(key("p1", "d1", "k1"), result(true));
+
+		assertThat(cache.get(key("p1", "d2", "k1"))).isNull();
+	}
+
+	@Test
+	void changedKnowledgeVersionIsAMiss() {
+		cache.put(key("p1", "d1", "k1"), result(true));
+
+		assertThat(cache.get(key("p1", "d1", "k2"))).isNull();
+	}
+
+	@Test
+	void resultsExpireAfterTheConfiguredTime() {
+		cache.put(key("p1", "d1", "k1"), result(true));
+
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(properties.getResults_expire_after_write_seconds() - 1));
+		assertThat(cache.get(key("p1", "d1", "k1"))).hasSize(1);
+
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertThat(cache.get(key("p1", "d1", "k1"))).isNull();
+	}
+}
@@ -0,0 +1,109 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.MeasureReport;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MeasureReportAggregatorTest {
+
+	private static CodeableConcept population(String code) {
+		return new CodeableConcept(
+				new Coding("http://terminology.hl7.org/CodeSystem/measure-population", code, null));
+	}
+
+	private static MeasureReport individual(int denominator, int exclusion, int numerator, String gender) {
+		var report = new MeasureReport();
+		report.setType(MeasureReport.MeasureReportType.INDIVIDUAL);
+		report.setMeasure("http://example.org/Measure/example");
+		var group = report.addGroup();
+		group.addPopulation().setCode(population("denominator")).setCount(denominator);
+		group.addPopulation().setCode(population("denominator-exclusion")).setCount(exclusion);
+		group.addPopulation().setCode(population("numerator")).setCount(numerator);
+		var stratum = group.addStratifier().addStratum().setValue(new CodeableConcept().setText(gender));
+		stratum.addPopulation().setCode(population("denominator")).setCount(denominator);
+		stratum.addPopulation().setCode(population("numerator")).setCount(numerator);
+		return report;
+	}
+
+	@Test
+	void sumsPopulationsAndRecomputesScores() {
+		MeasureReport summary = MeasureReportAggregator.aggregate(List.of(
+				individual(1, 0, 1, "female"),
+				individual(1, 0, 0, "male"),
+				individual(1, 1, 0, "female"),
+				individual(1, 0, 1, "female")));
+
+		assertThat(summary.getType()).isEqualTo(MeasureReport.MeasureReportType.SUMMARY);
+		assertThat(summary.getMeasure()).isEqualTo("http://example.org/Measure/example");
+		var group = summary.getGroupFirstRep();
+		assertThat(group.getPopulation())
+				.extracting(MeasureReport.MeasureReportGroupPopulationComponent::getCount)
+				.containsExactly(4, 1, 2);
+		assertThat(group.getMeasureScore().getValue().doubleValue()).isEqualTo(2.0 / 3.0);
+
+		var strata = group.getStratifierFirstRep().getStratum();
+		assertThat(strata).extracting(s -> s.getValue().getText()).containsExactly("female", "male");
+		assertThat(strata.get(0).getPopulation())
+				.extracting(MeasureReport.StratifierGroupPopulationComponent::getCount)
+				.containsExactly(3, 2);
+		assertThat(strata.get(1).getMeasureScore().getValue().doubleValue()).isEqualTo(0.0);
+	}
+
+	@Test
+	void matchesStratifiersByIdRegardlessOfPosition() {
+		var ageFirst = new MeasureReport();
+		var group = ageFirst.addGroup();
+		var age = group.addStratifier();
+		age.setId("age");
+		age.addStratum()
+				.setValue(new CodeableConcept().setText("adult"))
+				.addPopulation()
+				.setCode(population("denominator"))
+				.setCount(1);
+		var gender = group.addStratifier();
+		gender.setId("gender");
+		gender.addStratum()
+				.setValue(new CodeableConcept().setText("female"))
+				.addPopulation()
+				.setCode(population("denominator"))
+				.setCount(1);
+
+		// A subject for whom the age stratifier produced nothing reports gender first
+		var genderOnly = new MeasureReport();
+		var onlyGender = genderOnly.addGroup().addStratifier();
+		onlyGender.setId("gender");
+		onlyGender.addStratum()
+				.setValue(new CodeableConcept().setText("female"))
+				.addPopulation()
+				.setCode(population("denominator"))
+				.setCount(1);
+
+		MeasureReport summary = MeasureReportAggregator.aggregate(List.of(ageFirst, genderOnly));
+
+		var stratifiers = summary.getGroupFirstRep().getStratifier();
+		assertThat(stratifiers).extracting(s -> s.getId()).containsExactly("age", "gender");
+		assertThat(stratifiers.get(0).getStratumFirstRep().getPopulationFirstRep().getCount()).isEqualTo(1);
+		assertThat(stratifiers.get(1).getStratumFirstRep().getPopulationFirstRep().getCount()).isEqualTo(2);
+	}
+
+	@Test
+	void reportsCanBeAddedOneAtATime() {
+		var aggregator = new MeasureReportAggregator();
+		aggregator.add(individual(1, 0, 1, "female"));
+		assertThat(aggregator.getSummary().getGroupFirstRep().getMeasureScore().getValue().doubleValue())
+				.isEqualTo(1.0);
+
+		aggregator.add(individual(1, 0, 0, "male"));
+		var group = aggregator.getSummary().getGroupFirstRep();
+
+		assertThat(group.getPopulation())
+				.extracting(MeasureReport.MeasureReportGroupPopulationComponent::getCount)
+				.containsExactly(2, 0, 1);
+		assertThat(group.getMeasureScore().getValue().doubleValue()).isEqualTo(0.5);
+	}
+}
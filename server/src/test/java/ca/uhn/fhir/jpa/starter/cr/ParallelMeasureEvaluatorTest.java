@@ -0,0 +1,182 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.UnclassifiedServerFailureException;
+import com.google.common.collect.Lists;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.IdType;
+import org.hl7.fhir.r4.model.MeasureReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ParallelMeasureEvaluatorTest {
+
+	private static final IdType MEASURE = new IdType("Measure/example");
+	private static final RequestDetails REQUEST = new SystemRequestDetails();
+
+	private final SubjectResolver subjectResolver = mock(SubjectResolver.class);
+	private final MeasureProperties properties = new MeasureProperties();
+	private ExecutorService executor;
+	private ParallelMeasureEvaluator evaluator;
+
+	@BeforeEach
+	void setUp() {
+		properties.setParallel_chunk_size(2);
+		properties.setParallel_pool_size(2);
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static List<String> patients(int theCount) {
+		return IntStream.range(0, theCount).mapToObj(i -> "Patient/p" + i).toList();
+	}
+
+	private static MeasureReport individual(boolean theNumerator) {
+		var report = new MeasureReport();
+		report.setMeasure("http://example.org/Measure/example");
+		var group = report.addGroup();
+		group.addPopulation()
+				.setCode(new CodeableConcept(new Coding(null, "denominator", null)))
+				.setCount(1);
+		group.addPopulation()
+				.setCode(new CodeableConcept(new Coding(null, "numerator", null)))
+				.setCount(theNumerator ? 1 : 0);
+		return report;
+	}
+
+	@Test
+	void everySubjectIsEvaluatedOnceAndAggregated() {
+		when(subjectResolver.resolveInChunks(null, 2, REQUEST)).thenReturn(Lists.partition(patients(7), 2).iterator());
+		List<String> evaluated = new CopyOnWriteArrayList<>();
+		evaluator = new ParallelMeasureEvaluator(
+				(measure, start, end, subject, request) -> {
+					assertThat(request).isSameAs(REQUEST);
+					evaluated.add(subject);
+					return individual(subject.endsWith("1") || subject.endsWith("2"));
+				},
+				subjectResolver,
+				executor,
+				properties);
+
+		MeasureReport summary = evaluator.evaluate(MEASURE, "2024", "2024", null, REQUEST);
+
+		assertThat(evaluated).containsExactlyInAnyOrderElementsOf(patients(7));
+		assertThat(summary.getGroupFirstRep().getPopulation())
+				.extracting(MeasureReport.MeasureReportGroupPopulationComponent::getCount)
+				.containsExactly(7, 2);
+	}
+
+	@Test
+	void aFailedSubjectCancelsTheRemainingWork() throws InterruptedException {
+		when(subjectResolver.resolveInChunks(null, 2, REQUEST)).thenReturn(Lists.partition(patients(20), 2).iterator());
+		CountDownLatch interrupted = new CountDownLatch(1);
+		List<String> evaluated = new CopyOnWriteArrayList<>();
+		evaluator = new ParallelMeasureEvaluator(
+				(measure, start, end, subject, request) -> {
+					evaluated.add(subject);
+					if ("Patient/p0".equals(subject)) {
+						throw new IllegalStateException("p0 failed");
+					}
+					try {
+						Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+						Thread.currentThread().interrupt();
+					}
+					return individual(false);
+				},
+				subjectResolver,
+				executor,
+				properties);
+
+		assertThatThrownBy(() -> evaluator.evaluate(MEASURE, null, null, null, REQUEST))
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("p0 failed");
+
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(100);
+		assertThat(evaluated).hasSizeLessThan(20);
+	}
+
+	@Test
+	void exceedingTheTimeoutInterruptsTheWorkers() throws InterruptedException {
+		when(subjectResolver.resolveInChunks(null, 2, REQUEST)).thenReturn(Lists.partition(patients(4), 2).iterator());
+		properties.setParallel_timeout_seconds(1);
+		CountDownLatch interrupted = new CountDownLatch(2);
+		evaluator = new ParallelMeasureEvaluator(
+				(measure, start, end, subject, request) -> {
+					try {
+						Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+						Thread.currentThread().interrupt();
+					}
+					return individual(false);
+				},
+				subjectResolver,
+				executor,
+				properties);
+
+		assertThatThrownBy(() -> evaluator.evaluate(MEASURE, null, null, null, REQUEST))
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessageContaining("exceeded 1 seconds after 0 subjects");
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void aFullExecutorRejectsTheRequest() {
+		when(subjectResolver.resolveInChunks(null, 2, REQUEST)).thenReturn(Lists.partition(patients(4), 2).iterator());
+		executor.shutdown();
+		evaluator = new ParallelMeasureEvaluator(
+				(measure, start, end, subject, request) -> {
+					throw new AssertionError("should not run");
+				},
+				subjectResolver,
+				executor,
+				properties);
+
+		assertThatThrownBy(() -> evaluator.evaluate(MEASURE, null, null, null, REQUEST))
+				.isInstanceOfSatisfying(
+						UnclassifiedServerFailureException.class,
+						e -> assertThat(e.getStatusCode()).isEqualTo(503));
+	}
+
+	@Test
+	void noSubjectsYieldAnEmptySummary() {
+		when(subjectResolver.resolveInChunks("Group/empty", 2, REQUEST)).thenReturn(Collections.emptyIterator());
+		evaluator = new ParallelMeasureEvaluator(
+				(measure, start, end, subject, request) -> {
+					throw new AssertionError("should not run");
+				},
+				subjectResolver,
+				executor,
+				properties);
+
+		MeasureReport summary = evaluator.evaluate(MEASURE, null, null, "Group/empty", REQUEST);
+
+		assertThat(summary.getType()).isEqualTo(MeasureReport.MeasureReportType.SUMMARY);
+		assertThat(summary.getGroup()).isEmpty();
+	}
+}
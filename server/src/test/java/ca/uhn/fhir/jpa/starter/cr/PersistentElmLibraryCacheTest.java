@@ -0,0 +1,124 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import org.cqframework.cql.cql2elm.LibraryContentType;
+import org.cqframework.cql.cql2elm.model.CompiledLibrary;
+import org.hl7.elm.r1.Library;
+import org.hl7.elm.r1.VersionedIdentifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class PersistentElmLibraryCacheTest {
+
+	@TempDir
+	Path directory;
+
+	private static VersionedIdentifier identifier() {
+		return new VersionedIdentifier().withId("Example").withVersion("1.0.0");
+	}
+
+	private static CompiledLibrary compiled(VersionedIdentifier identifier) {
+		var library = new CompiledLibrary();
+		library.setIdentifier(identifier);
+		library.setLibrary(new Library().withIdentifier(identifier));
+		return library;
+	}
+
+	@Test
+	void compiledLibrariesAreServedAfterRestart() throws Exception {
+		var cache = new PersistentElmLibraryCache(directory, "options", id -> "content");
+		Map<VersionedIdentifier, CompiledLibrary> libraries = cache.wrap(new ConcurrentHashMap<>());
+		libraries.put(identifier(), compiled(identifier()));
+
+		var restarted = new PersistentElmLibraryCache(directory, "options", id -> "content");
+		try (InputStream elm = restarted.getLibraryContent(identifier(), LibraryContentType.JSON)) {
+			assertThat(elm).isNotNull();
+			assertThat(new String(elm.readAllBytes(), StandardCharsets.UTF_8)).contains("Example");
+		}
+		assertThat(restarted.getLibraryContent(identifier(), LibraryContentType.XML))
+				.isNull();
+	}
+
+	@Test
+	void changedContentOrOptionsMiss() {
+		var cache = new PersistentElmLibraryCache(directory, "options", id -> "content");
+		cache.wrap(new ConcurrentHashMap<>()).put(identifier(), compiled(identifier()));
+
+		assertThat(new PersistentElmLibraryCache(directory, "options", id -> "edited")
+						.getLibraryContent(identifier(), LibraryContentType.JSON))
+				.isNull();
+		assertThat(new PersistentElmLibraryCache(directory, "other", id -> "content")
+						.getLibraryContent(identifier(), LibraryContentType.JSON))
+				.isNull();
+	}
+
+	@Test
+	void librariesWithoutSourceAreNotPersisted() {
+		var cache = new PersistentElmLibraryCache(directory, "options", id -> null);
+		cache.wrap(new ConcurrentHashMap<>()).put(identifier(), compiled(identifier()));
+
+		assertThat(directory.toFile().list()).isEmpty();
+	}
+
+	@Test
+	void contentHashCoversIncludedLibraries() {
+		String cql = "library Example version '1.0.0'\n"
+				+ "include FHIRHelpers version '4.0.1' called FHIRHelpers\n"
+				+ "include hl7.fhir.Common version '2.1'\n";
+
+		assertThat(PersistentElmLibraryCache.includesOf(cql))
+				.extracting(VersionedIdentifier::getId, VersionedIdentifier::getVersion)
+				.containsExactly(tuple("FHIRHelpers", "4.0.1"), tuple("Common", "2.1"));
+		String before = PersistentElmLibraryCache.contentHash(cql, id -> "Common".equals(id.getId()) ? "v1" : null);
+		String after = PersistentElmLibraryCache.contentHash(cql, id -> "Common".equals(id.getId()) ? "v2" : null);
+		assertThat(after).isNotEqualTo(before);
+	}
+
+	@Test
+	void storingANewVersionPrunesTheOldOne() {
+		new PersistentElmLibraryCache(directory, "options", id -> "content")
+				.wrap(new ConcurrentHashMap<>())
+				.put(identifier(), compiled(identifier()));
+		var other = new VersionedIdentifier().withId("Other").withVersion("1.0.0");
+		new PersistentElmLibraryCache(directory, "options", id -> "content")
+				.wrap(new ConcurrentHashMap<>())
+				.put(other, compiled(other));
+
+		var edited = new PersistentElmLibraryCache(directory, "options", id -> "edited");
+		edited.wrap(new ConcurrentHashMap<>()).put(identifier(), compiled(identifier()));
+
+		assertThat(directory.toFile().list())
+				.containsExactlyInAnyOrder(
+						edited.fileFor(identifier()).getFileName().toString(),
+						edited.fileFor(other).getFileName().toString().replace(".edited.", ".content."));
+	}
+
+	@Test
+	void filesFromOtherCompilerOptionsArePrunedOnStartup() {
+		new PersistentElmLibraryCache(directory, "options", id -> "content")
+				.wrap(new ConcurrentHashMap<>())
+				.put(identifier(), compiled(identifier()));
+
+		new PersistentElmLibraryCache(directory, "other", id -> "content");
+
+		assertThat(directory.toFile().list()).isEmpty();
+	}
+
+	@Test
+	void optionsHashTracksCompilerSettings() {
+		var properties = new CqlCompilerProperties();
+		String defaults = PersistentElmLibraryCache.optionsHash(CrCommonConfig.cqlCompilerOptions(properties));
+		properties.setEnableLocators(false);
+
+		assertThat(PersistentElmLibraryCache.optionsHash(CrCommonConfig.cqlCompilerOptions(properties)))
+				.isNotEqualTo(defaults);
+	}
+}
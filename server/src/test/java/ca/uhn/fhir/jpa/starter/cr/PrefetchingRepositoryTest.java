@@ -0,0 +1,269 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.interceptor.api.Hook;
+import ca.uhn.fhir.interceptor.api.IInterceptorService;
+import ca.uhn.fhir.interceptor.api.Interceptor;
+import ca.uhn.fhir.interceptor.api.Pointcut;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.Application;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.client.api.IGenericClient;
+import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.param.TokenParamModifier;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import org.hl7.fhir.r4.model.Attachment;
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.CodeableConcept;
+import org.hl7.fhir.r4.model.Coding;
+import org.hl7.fhir.r4.model.Condition;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.IntegerType;
+import org.hl7.fhir.r4.model.Library;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
+import org.hl7.fhir.r4.model.StringType;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cr.hapi.common.IRepositoryFactory;
+import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class},
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:dbr4-cr-prefetch",
+			"hapi.fhir.fhir_version=r4",
+			"spring.ai.mcp.server.enabled=false",
+			"hapi.fhir.cr.enabled=true",
+			"hapi.fhir.cr.cql.data.prefetch_enabled=true"
+		})
+class PrefetchingRepositoryTest {
+
+	private static final String GLUCOSE = "http://example.org/ValueSet/glucose";
+	private static final String LOINC = "http://loinc.org";
+	private static final String CQL =
+			"""
+			library PrefetchTest version '1.0.0'
+
+			using FHIR version '4.0.1'
+
+			valueset "Glucose": 'http://example.org/ValueSet/glucose'
+
+			context Patient
+
+			define "Glucose Count":
+			  Count([Observation: "Glucose"])
+			""";
+
+	private final FhirContext fhirContext = FhirContext.forR4Cached();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	IRepositoryFactory repositoryFactory;
+
+	@Autowired
+	RestfulServer restfulServer;
+
+	@Autowired
+	DaoRegistry daoRegistry;
+
+	@Autowired
+	IInterceptorService interceptorService;
+
+	@Interceptor
+	public static class SearchCounter {
+		private final AtomicInteger searches = new AtomicInteger();
+		private final List<Set<String>> parameters = new CopyOnWriteArrayList<>();
+
+		@Hook(Pointcut.STORAGE_PRESEARCH_REGISTERED)
+		public void searchRegistered(SearchParameterMap theParameters) {
+			searches.incrementAndGet();
+			parameters.add(Set.copyOf(theParameters.keySet()));
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		IGenericClient client = fhirContext.newRestfulGenericClient("http://localhost:" + port + "/fhir/");
+		ValueSet valueSet = new ValueSet();
+		valueSet.setId("glucose");
+		valueSet.setUrl(GLUCOSE);
+		valueSet.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		valueSet.getExpansion().setTimestamp(new Date());
+		valueSet.getExpansion().addContains().setSystem(LOINC).setCode("2339-0");
+		valueSet.getExpansion().addContains().setSystem(LOINC).setCode("2345-7");
+		client.update().resource(valueSet).execute();
+
+		Library library = new Library();
+		library.setId("PrefetchTest");
+		library.setUrl("http://example.org/Library/PrefetchTest");
+		library.setName("PrefetchTest");
+		library.setVersion("1.0.0");
+		library.setStatus(Enumerations.PublicationStatus.ACTIVE);
+		library.setType(new CodeableConcept(
+				new Coding("http://terminology.hl7.org/CodeSystem/library-type", "logic-library", null)));
+		library.addContent(new Attachment().setContentType("text/cql").setData(CQL.getBytes(StandardCharsets.UTF_8)));
+		client.update().resource(library).execute();
+
+		client.update().resource(new Patient().setId("vs")).execute();
+		String[] codes = {"2339-0", "2345-7", "4548-4"};
+		for (int i = 0; i < codes.length; i++) {
+			Observation observation = new Observation();
+			observation.setId("vs-" + i);
+			observation.setStatus(Observation.ObservationStatus.FINAL);
+			observation.setSubject(new Reference("Patient/vs"));
+			observation.setCode(new CodeableConcept(new Coding(LOINC, codes[i], null)));
+			client.update().resource(observation).execute();
+		}
+	}
+
+	private static Multimap<String, List<IQueryParameterType>> subject(String thePatient) {
+		Multimap<String, List<IQueryParameterType>> parameters = ArrayListMultimap.create();
+		parameters.put("subject", List.of(new ReferenceParam(thePatient)));
+		return parameters;
+	}
+
+	@Test
+	void repeatedRetrievesSearchTheDaoOnce() {
+		SystemRequestDetails requestDetails = new SystemRequestDetails(restfulServer.getInterceptorService());
+		requestDetails.setServer(restfulServer);
+		requestDetails.setFhirServerBase("http://localhost/fhir");
+		var repository = (PrefetchingRepository) repositoryFactory.create(requestDetails);
+		var counter = new SearchCounter();
+		interceptorService.registerInterceptor(counter);
+		try {
+			Bundle first = repository.search(Bundle.class, Observation.class, subject("Patient/p1"), Map.of());
+			Bundle second = repository.search(Bundle.class, Observation.class, subject("Patient/p1"), Map.of());
+			assertThat(second).isSameAs(first);
+			assertThat(counter.searches).hasValue(1);
+
+			repository.search(Bundle.class, Observation.class, subject("Patient/p2"), Map.of());
+			repository.search(Bundle.class, Condition.class, subject("Patient/p1"), Map.of());
+			assertThat(counter.searches).hasValue(3);
+
+			// Requests that carry headers bypass the cache
+			Multimap<String, List<IQueryParameterType>> coded = subject("Patient/p1");
+			coded.put("code", List.of(new TokenParam("http://loinc.org", "4548-4")));
+			repository.search(Bundle.class, Observation.class, coded, Map.of("Prefer", "handling=strict"));
+			repository.search(Bundle.class, Observation.class, coded, Map.of("Prefer", "handling=strict"));
+			assertThat(counter.searches).hasValue(5);
+		} finally {
+			interceptorService.unregisterInterceptor(counter);
+		}
+	}
+
+	@Test
+	void searchesHoldingMoreResourcesThanTheBoundAreNotKept() {
+		SystemRequestDetails requestDetails = new SystemRequestDetails(restfulServer.getInterceptorService());
+		requestDetails.setServer(restfulServer);
+		requestDetails.setFhirServerBase("http://localhost/fhir");
+		var repository = new PrefetchingRepository(daoRegistry, requestDetails, restfulServer, 2, Map.of(), null);
+		var counter = new SearchCounter();
+		interceptorService.registerInterceptor(counter);
+		try {
+			// Patient/vs has three Observations, more than the two resources the repository may keep
+			repository.search(Bundle.class, Observation.class, subject("Patient/vs"), Map.of());
+			repository.search(Bundle.class, Observation.class, subject("Patient/vs"), Map.of());
+			assertThat(counter.searches).hasValue(2);
+
+			repository.search(Bundle.class, Condition.class, subject("Patient/vs"), Map.of());
+			repository.search(Bundle.class, Condition.class, subject("Patient/vs"), Map.of());
+			assertThat(counter.searches).hasValue(3);
+		} finally {
+			interceptorService.unregisterInterceptor(counter);
+		}
+	}
+
+	@Test
+	void valueSetParametersAreMatchedAgainstTheIndexedExpansion() {
+		SystemRequestDetails requestDetails = new SystemRequestDetails(restfulServer.getInterceptorService());
+		requestDetails.setServer(restfulServer);
+		requestDetails.setFhirServerBase("http://localhost/fhir");
+		var repository = (PrefetchingRepository) repositoryFactory.create(requestDetails);
+		var counter = new SearchCounter();
+		interceptorService.registerInterceptor(counter);
+		try {
+			Multimap<String, List<IQueryParameterType>> glucose = subject("Patient/vs");
+			glucose.put("code", List.of(new TokenParam(GLUCOSE).setModifier(TokenParamModifier.IN)));
+			Bundle members = repository.search(Bundle.class, Observation.class, glucose, Map.of());
+
+			assertThat(members.getEntry())
+					.extracting(e -> e.getResource().getIdElement().getIdPart())
+					.containsExactlyInAnyOrder("vs-0", "vs-1");
+			// The ValueSet is looked up by url once, and the Observations are fetched without a code parameter
+			assertThat(counter.parameters).noneMatch(p -> p.contains("code"));
+			int searches = counter.searches.get();
+
+			repository.search(Bundle.class, Observation.class, subject("Patient/vs"), Map.of());
+			assertThat(counter.searches).hasValue(searches + 1);
+		} finally {
+			interceptorService.unregisterInterceptor(counter);
+		}
+	}
+
+	@Test
+	void valueSetParametersOfUnrestrictedRetrievesAreLeftToTheServer() {
+		SystemRequestDetails requestDetails = new SystemRequestDetails(restfulServer.getInterceptorService());
+		requestDetails.setServer(restfulServer);
+		requestDetails.setFhirServerBase("http://localhost/fhir");
+		var repository = (PrefetchingRepository) repositoryFactory.create(requestDetails);
+		var counter = new SearchCounter();
+		interceptorService.registerInterceptor(counter);
+		try {
+			Multimap<String, List<IQueryParameterType>> glucose = ArrayListMultimap.create();
+			glucose.put("code", List.of(new TokenParam(GLUCOSE).setModifier(TokenParamModifier.IN)));
+			// How the server expands the ValueSet is beside the point, only that it is asked to
+			catchThrowable(() -> repository.search(Bundle.class, Observation.class, glucose, Map.of()));
+
+			assertThat(counter.parameters).anyMatch(p -> p.contains("code"));
+		} finally {
+			interceptorService.unregisterInterceptor(counter);
+		}
+	}
+
+	@Test
+	void cqlValueSetRetrieveIsFilteredByTheIndex() {
+		IGenericClient client = fhirContext.newRestfulGenericClient("http://localhost:" + port + "/fhir/");
+		var counter = new SearchCounter();
+		interceptorService.registerInterceptor(counter);
+		try {
+			Parameters result = client.operation()
+					.onInstance("Library/PrefetchTest")
+					.named("$evaluate")
+					.withParameter(Parameters.class, "subject", new StringType("Patient/vs"))
+					.execute();
+
+			assertThat(((IntegerType) result.getParameter("Glucose Count").getValue()).getValue())
+					.isEqualTo(2);
+			assertThat(counter.parameters).noneMatch(p -> p.contains("code"));
+		} finally {
+			interceptorService.unregisterInterceptor(counter);
+		}
+	}
+}
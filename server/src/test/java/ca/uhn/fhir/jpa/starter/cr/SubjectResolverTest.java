@@ -0,0 +1,78 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.SystemRequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SubjectResolverTest {
+
+	private static SubjectResolver resolverOver(int theLoadable, int theTotal) {
+		List<IBaseResource> patients = IntStream.range(0, theLoadable)
+				.<IBaseResource>mapToObj(i -> new Patient().setId("Patient/p" + i))
+				.toList();
+		IBundleProvider results = mock(IBundleProvider.class);
+		when(results.size()).thenReturn(theTotal);
+		when(results.getResources(anyInt(), anyInt())).thenAnswer(invocation -> {
+			int from = Math.min(invocation.<Integer>getArgument(0), patients.size());
+			int to = Math.min(invocation.<Integer>getArgument(1), patients.size());
+			return patients.subList(from, to);
+		});
+		@SuppressWarnings("unchecked")
+		IFhirResourceDao<IBaseResource> dao = mock(IFhirResourceDao.class);
+		when(dao.search(any(), any())).thenReturn(results);
+		DaoRegistry daoRegistry = mock(DaoRegistry.class);
+		when(daoRegistry.getResourceDao("Patient")).thenReturn(dao);
+		return new SubjectResolver(daoRegistry);
+	}
+
+	private static List<List<String>> drain(Iterator<List<String>> theChunks) {
+		List<List<String>> chunks = new ArrayList<>();
+		theChunks.forEachRemaining(chunks::add);
+		return chunks;
+	}
+
+	@Test
+	void pagesThroughEveryPatient() {
+		List<List<String>> chunks = drain(resolverOver(5, 5).resolveInChunks(null, 2, new SystemRequestDetails()));
+
+		assertThat(chunks)
+				.containsExactly(
+						List.of("Patient/p0", "Patient/p1"),
+						List.of("Patient/p2", "Patient/p3"),
+						List.of("Patient/p4"));
+	}
+
+	@Test
+	void failsWhenTheSearchEndsBeforeItsTotal() {
+		Iterator<List<String>> chunks = resolverOver(4, 10).resolveInChunks(null, 2, new SystemRequestDetails());
+
+		assertThatThrownBy(() -> drain(chunks))
+				.isInstanceOf(InternalErrorException.class)
+				.hasMessageContaining("after 4 of 10 results");
+	}
+
+	@Test
+	void aPatientSubjectIsItsOwnChunk() {
+		List<List<String>> chunks = drain(
+				resolverOver(0, 0).resolveInChunks("Patient/123/_history/2", 2, new SystemRequestDetails()));
+
+		assertThat(chunks).containsExactly(List.of("Patient/123"));
+	}
+}
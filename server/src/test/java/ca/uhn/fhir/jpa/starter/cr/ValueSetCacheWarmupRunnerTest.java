@@ -0,0 +1,102 @@
+package ca.uhn.fhir.jpa.starter.cr;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.api.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.searchparam.SearchParameterMap;
+import ca.uhn.fhir.rest.param.UriParam;
+import ca.uhn.fhir.rest.server.SimpleBundleProvider;
+import org.hl7.fhir.r4.model.DataRequirement;
+import org.hl7.fhir.r4.model.Library;
+import org.hl7.fhir.r4.model.RelatedArtifact;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.cql.engine.runtime.Code;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ValueSetCacheWarmupRunnerTest {
+
+	private static final String DIABETES =
+			"http://cts.nlm.nih.gov/fhir/ValueSet/2.16.840.1.113883.3.464.1003.103.12.1001";
+	private static final String OFFICE_VISIT =
+			"http://cts.nlm.nih.gov/fhir/ValueSet/2.16.840.1.113883.3.464.1003.101.12.1001";
+	private static final String UNUSED = "http://example.org/ValueSet/unused";
+
+	@SuppressWarnings("unchecked")
+	private static DaoRegistry daoRegistry(Library library, ValueSet... valueSets) {
+		IFhirResourceDao<Library> libraryDao = mock(IFhirResourceDao.class);
+		when(libraryDao.search(any(), any())).thenReturn(new SimpleBundleProvider(List.of(library)));
+		IFhirResourceDao<ValueSet> valueSetDao = mock(IFhirResourceDao.class);
+		when(valueSetDao.search(any(), any())).thenAnswer(invocation -> {
+			SearchParameterMap map = invocation.getArgument(0);
+			String url = ((UriParam) map.get("url").get(0).get(0)).getValue();
+			return new SimpleBundleProvider(Arrays.stream(valueSets)
+					.filter(v -> v.getUrl().equals(url))
+					.toList());
+		});
+
+		DaoRegistry daoRegistry = mock(DaoRegistry.class);
+		when(daoRegistry.getResourceDao("Library")).thenReturn((IFhirResourceDao) libraryDao);
+		when(daoRegistry.getResourceDao("ValueSet")).thenReturn((IFhirResourceDao) valueSetDao);
+		return daoRegistry;
+	}
+
+	private static ValueSet expanded(String url, String... codes) {
+		var valueSet = new ValueSet().setUrl(url);
+		for (String code : codes) {
+			valueSet.getExpansion().addContains().setSystem("http://snomed.info/sct").setCode(code);
+		}
+		return valueSet;
+	}
+
+	@Test
+	void warmsOnlyValueSetsReferencedByLibraries() {
+		var library = new Library();
+		library.addDataRequirement()
+				.setType("Condition")
+				.addCodeFilter(new DataRequirement.DataRequirementCodeFilterComponent()
+						.setPath("code")
+						.setValueSet(DIABETES + "|20240101"));
+		library.addRelatedArtifact()
+				.setType(RelatedArtifact.RelatedArtifactType.DEPENDSON)
+				.setResource(OFFICE_VISIT);
+		Map<String, List<Code>> cache = new HashMap<>();
+		FhirContext fhirContext = FhirContext.forR4Cached();
+		DaoRegistry daoRegistry = daoRegistry(
+				library,
+				expanded(DIABETES, "44054006", "46635009"),
+				expanded(OFFICE_VISIT, "185463005"),
+				expanded(UNUSED, "1"));
+
+		new ValueSetCacheWarmupRunner(
+						fhirContext, daoRegistry, new ValueSetCacheWarmer(fhirContext, daoRegistry, cache))
+				.run(null);
+
+		assertThat(cache).containsOnlyKeys(DIABETES, OFFICE_VISIT);
+		assertThat(cache.get(DIABETES)).extracting(Code::getCode).containsExactly("44054006", "46635009");
+	}
+
+	@Test
+	void aFailedWarmUpDoesNotAbortStartup() {
+		FhirContext fhirContext = FhirContext.forR4Cached();
+		DaoRegistry daoRegistry = mock(DaoRegistry.class);
+		when(daoRegistry.getResourceDao("Library")).thenThrow(new IllegalStateException("database unavailable"));
+		Map<String, List<Code>> cache = new HashMap<>();
+
+		assertThatCode(() -> new ValueSetCacheWarmupRunner(
+								fhirContext, daoRegistry, new ValueSetCacheWarmer(fhirContext, daoRegistry, cache))
+						.run(null))
+				.doesNotThrowAnyException();
+		assertThat(cache).isEmpty();
+	}
+}
@@ -0,0 +1,52 @@
+package ca.uhn.fhir.jpa.starter.cr.caregaps;
+
+import ca.uhn.fhir.util.JsonUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EvaluateCareGapsStepTest {
+
+	private static CareGapsJobParameters parameters() {
+		return new CareGapsJobParameters()
+				.setPeriodStart("2024-01-01")
+				.setPeriodEnd("2024-12-31")
+				.setSubject("Group/payer-members")
+				.setStatus(List.of("open-gap", "closed-gap"))
+				.setMeasureId(List.of("BreastCancerScreeningFHIR"));
+	}
+
+	@Test
+	void parametersSurviveJobSerialization() {
+		CareGapsJobParameters restored =
+				JsonUtil.deserialize(JsonUtil.serialize(parameters()), CareGapsJobParameters.class);
+
+		assertThat(restored.getSubject()).isEqualTo("Group/payer-members");
+		assertThat(restored.getStatus()).containsExactly("open-gap", "closed-gap");
+		assertThat(restored.getMeasureUrl()).isEmpty();
+	}
+
+	@Test
+	void evaluatesEachSubjectOnItsOwn() {
+		var operationParameters = EvaluateCareGapsStep.operationParameters(parameters(), "Patient/123");
+
+		assertThat(operationParameters.get("subject")).containsExactly("Patient/123");
+		assertThat(operationParameters.get("status")).containsExactly("open-gap", "closed-gap");
+		assertThat(operationParameters.get("periodEnd")).containsExactly("2024-12-31");
+	}
+
+	@Test
+	void retriedChunksStoreTheirResultsUnderTheSameIds() {
+		String instanceId = "0f3c8b5e-2f47-4d1a-9a4e-6f1b6c0d7e21";
+		String longSubject = "Patient/" + "a".repeat(64);
+
+		String first = EvaluateCareGapsStep.resultId(instanceId, longSubject, 0);
+
+		assertThat(EvaluateCareGapsStep.resultId(instanceId, longSubject, 0)).isEqualTo(first);
+		assertThat(EvaluateCareGapsStep.resultId(instanceId, longSubject, 1)).isNotEqualTo(first);
+		assertThat(EvaluateCareGapsStep.resultId(instanceId, "Patient/other", 0)).isNotEqualTo(first);
+		assertThat(first).startsWith(instanceId).hasSizeLessThanOrEqualTo(64).matches("[A-Za-z0-9\\-.]+");
+	}
+}
@@ -0,0 +1,137 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchExecutorTest {
+
+	private BatchExecutor executor;
+
+	@AfterEach
+	void tearDown() {
+		executor.close();
+	}
+
+	private static Map<String, Object> entry(String interaction, String id) {
+		return Map.of("interaction", interaction, "resourceType", "Patient", "id", id);
+	}
+
+	private static String text(McpSchema.CallToolResult result) {
+		return ((McpSchema.TextContent) result.content().get(0)).text();
+	}
+
+	private static McpSchema.CallToolResult ok(Map<String, Object> request) {
+		String body = "{\"id\":\"" + request.get("id") + "\"}";
+		return CallToolResultFactory.success("Patient", Interaction.READ, body, 200);
+	}
+
+	@Test
+	void eachCreateGetsItsOwnResultInRequestOrder() {
+		executor = new BatchExecutor(2, 10, 10, Duration.ofSeconds(5));
+		List<String> createOrder = new CopyOnWriteArrayList<>();
+
+		List<McpSchema.CallToolResult> results = executor.execute(
+				List.of(entry("create", "c1"), entry("read", "r1"), entry("create", "c2"), entry("create", "c3")),
+				(request, interaction) -> {
+					if (interaction == Interaction.CREATE) {
+						createOrder.add((String) request.get("id"));
+						if ("c2".equals(request.get("id"))) {
+							throw new IllegalStateException("c2 failed");
+						}
+					}
+					return ok(request);
+				});
+
+		assertThat(createOrder).containsExactly("c1", "c2", "c3");
+		assertThat(text(results.get(0))).contains("c1");
+		assertThat(text(results.get(1))).contains("r1");
+		assertThat(results.get(2).isError()).isTrue();
+		assertThat(text(results.get(2))).contains("c2 failed");
+		assertThat(text(results.get(3))).contains("c3");
+	}
+
+	@Test
+	void createsInFlightAtTheDeadlineAreReportedAsUnknownAndLaterOnesAreSkipped() throws InterruptedException {
+		executor = new BatchExecutor(2, 10, 10, Duration.ofMillis(200));
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch firstFinished = new CountDownLatch(1);
+		List<String> started = new CopyOnWriteArrayList<>();
+		List<Boolean> interrupted = new CopyOnWriteArrayList<>();
+
+		List<McpSchema.CallToolResult> results = executor.execute(
+				List.of(entry("create", "c1"), entry("create", "c2")), (request, interaction) -> {
+					started.add((String) request.get("id"));
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						interrupted.add(true);
+					}
+					firstFinished.countDown();
+					return ok(request);
+				});
+
+		assertThat(text(results.get(0))).isEqualTo(BatchExecutor.STATUS_UNKNOWN);
+		assertThat(text(results.get(1))).isEqualTo(BatchExecutor.NOT_STARTED);
+
+		release.countDown();
+		assertThat(firstFinished.await(5, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(100);
+		assertThat(started).containsExactly("c1");
+		assertThat(interrupted).isEmpty();
+	}
+
+	@Test
+	void readsThatMissTheDeadlineAreCancelled() throws InterruptedException {
+		executor = new BatchExecutor(2, 10, 10, Duration.ofMillis(200));
+		CountDownLatch interrupted = new CountDownLatch(1);
+
+		List<McpSchema.CallToolResult> results =
+				executor.execute(List.of(entry("read", "slow"), entry("search", "fast")), (request, interaction) -> {
+					if ("slow".equals(request.get("id"))) {
+						try {
+							Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+						} catch (InterruptedException e) {
+							interrupted.countDown();
+						}
+					}
+					return ok(request);
+				});
+
+		assertThat(text(results.get(0))).isEqualTo(BatchExecutor.TIMED_OUT);
+		assertThat(text(results.get(1))).contains("fast");
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void unsupportedInteractionsFailWithoutRunning() {
+		executor = new BatchExecutor(1, 1, 10, Duration.ofSeconds(5));
+
+		List<McpSchema.CallToolResult> results =
+				executor.execute(List.of(entry("delete", "d1")), (request, interaction) -> {
+					throw new AssertionError("should not run");
+				});
+
+		assertThat(results.get(0).isError()).isTrue();
+		assertThat(text(results.get(0))).contains("Unsupported batch interaction 'delete'");
+	}
+
+	@Test
+	void rejectsOversizedBatches() {
+		executor = new BatchExecutor(1, 1, 1, Duration.ofSeconds(5));
+
+		assertThatThrownBy(() -> executor.execute(
+						List.of(entry("read", "a"), entry("read", "b")), (request, interaction) -> ok(request)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
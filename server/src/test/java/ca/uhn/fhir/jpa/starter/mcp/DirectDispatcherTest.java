@@ -0,0 +1,155 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.jpa.api.dao.DaoRegistry;
+import ca.uhn.fhir.jpa.searchparam.MatchUrlService;
+import ca.uhn.fhir.jpa.searchparam.config.NicknameServiceConfig;
+import ca.uhn.fhir.jpa.starter.Application;
+import ca.uhn.fhir.rest.server.McpFhirBridge;
+import ca.uhn.fhir.rest.server.RestfulServer;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.hl7.fhir.r4.model.OperationOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencds.cqf.fhir.cr.hapi.config.RepositoryConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(
+		webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		classes = {Application.class, NicknameServiceConfig.class, RepositoryConfig.class},
+		properties = {
+			"spring.datasource.url=jdbc:h2:mem:dbr4-mcp-direct",
+			"hapi.fhir.fhir_version=r4",
+			"spring.ai.mcp.server.enabled=true"
+		})
+class DirectDispatcherTest {
+
+	private static final Pattern SERVER_ERROR = Pattern.compile("FHIR server error (\\d+): (.*)", Pattern.DOTALL);
+
+	@Autowired
+	RestfulServer restfulServer;
+
+	@Autowired
+	DaoRegistry daoRegistry;
+
+	@Autowired
+	MatchUrlService matchUrlService;
+
+	private McpFhirBridge servlet;
+	private McpFhirBridge direct;
+
+	@BeforeEach
+	void setUp() {
+		servlet = new McpFhirBridge(restfulServer);
+		direct = new McpFhirBridge(
+				restfulServer, new DirectDispatcher(restfulServer, daoRegistry, matchUrlService, null), null, 0);
+	}
+
+	private static McpSchema.CallToolResult call(McpFhirBridge bridge, McpSchema.Tool tool, Map<String, Object> args) {
+		var request = new McpSchema.CallToolRequest.Builder()
+				.name(tool.name())
+				.arguments(args)
+				.build();
+		return bridge.generateTools().stream()
+				.filter(spec -> spec.tool().name().equals(tool.name()))
+				.findFirst()
+				.orElseThrow()
+				.callHandler()
+				.apply(null, request);
+	}
+
+	private static String text(McpSchema.CallToolResult result) {
+		return ((McpSchema.TextContent) result.content().get(0)).text();
+	}
+
+	private void assertSameError(McpSchema.Tool tool, Map<String, Object> args, int status) {
+		McpSchema.CallToolResult viaServlet = call(servlet, tool, args);
+		McpSchema.CallToolResult viaDirect = call(direct, tool, args);
+
+		for (McpSchema.CallToolResult result : new McpSchema.CallToolResult[] {viaServlet, viaDirect}) {
+			assertThat(result.isError()).isTrue();
+			Matcher matcher = SERVER_ERROR.matcher(text(result));
+			assertThat(matcher.matches()).as(text(result)).isTrue();
+			assertThat(Integer.parseInt(matcher.group(1))).isEqualTo(status);
+			var outcome = (OperationOutcome)
+					restfulServer.getFhirContext().newJsonParser().parseResource(matcher.group(2));
+			assertThat(outcome.getIssueFirstRep().getSeverity()).isEqualTo(OperationOutcome.IssueSeverity.ERROR);
+		}
+	}
+
+	@Test
+	void missingResourceIsNotFoundOperationOutcomeInBothModes() throws Exception {
+		assertSameError(
+				ToolFactory.readFhirResource(), Map.of("resourceType", "Patient", "id", "does-not-exist"), 404);
+	}
+
+	@Test
+	void unparseableBodyIsBadRequestOperationOutcomeInBothModes() throws Exception {
+		assertSameError(
+				ToolFactory.createFhirResource(),
+				Map.of("resourceType", "Patient", "resource", "{\"resourceType\": \"Patient\", \"name\": 42"),
+				400);
+	}
+
+	@Test
+	void missingIdIsBadRequestInDirectMode() throws Exception {
+		McpSchema.CallToolResult result =
+				call(direct, ToolFactory.readFhirResource(), Map.of("resourceType", "Patient"));
+
+		assertThat(result.isError()).isTrue();
+		assertThat(text(result)).startsWith("FHIR server error 400: ").contains("OperationOutcome");
+	}
+
+	@Test
+	void readReturnsTheSameResourceInBothModes() throws Exception {
+		McpSchema.CallToolResult created = call(
+				servlet,
+				ToolFactory.updateFhirResource(),
+				Map.of(
+						"resourceType",
+						"Patient",
+						"id",
+						"direct-compare",
+						"resource",
+						"{\"resourceType\":\"Patient\",\"id\":\"direct-compare\",\"gender\":\"female\"}"));
+		assertThat(created.isError()).isFalse();
+
+		Map<String, Object> read = Map.of("resourceType", "Patient", "id", "direct-compare");
+		McpSchema.CallToolResult viaServlet = call(servlet, ToolFactory.readFhirResource(), read);
+		McpSchema.CallToolResult viaDirect = call(direct, ToolFactory.readFhirResource(), read);
+
+		var mapper = ToolFactory.mapper;
+		var servletPayload = mapper.readTree(text(viaServlet));
+		var directPayload = mapper.readTree(text(viaDirect));
+		assertThat(directPayload.path("status")).isEqualTo(servletPayload.path("status"));
+		assertThat(directPayload.path("response").path("id")).isEqualTo(servletPayload.path("response").path("id"));
+		assertThat(directPayload.path("response").path("gender").asText()).isEqualTo("female");
+	}
+
+	@Test
+	void decodedBodyIsParsedFromItsTree() throws Exception {
+		Map<String, Object> body = Map.of(
+				"resourceType",
+				"Patient",
+				"gender",
+				"male",
+				"name",
+				List.of(Map.of("family", "Tree")));
+		McpSchema.CallToolResult created = call(
+				direct, ToolFactory.createFhirResource(), Map.of("resourceType", "Patient", "resource", body));
+		assertThat(created.isError()).as(text(created)).isFalse();
+
+		var payload = ToolFactory.mapper.readTree(text(created));
+		assertThat(payload.path("status").asInt()).isEqualTo(201);
+		assertThat(payload.path("response").path("gender").asText()).isEqualTo("male");
+		assertThat(payload.path("response").path("name").path(0).path("family").asText())
+				.isEqualTo("Tree");
+	}
+}
@@ -0,0 +1,97 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import ca.uhn.fhir.jpa.starter.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpToolGuardTest {
+
+	@Test
+	void limitsEachSessionIndependently() {
+		var settings = new AppProperties.Mcp();
+		settings.setRate_limit_enabled(true);
+		settings.setSession_requests_per_second(0.001);
+		settings.setSession_burst(2);
+		var guard = new McpToolGuard(settings, new SimpleMeterRegistry());
+
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isNull();
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isNull();
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isEqualTo("session");
+		assertThat(guard.checkLimits("b", "read-fhir-resource")).isNull();
+	}
+
+	@Test
+	void limitsEachToolAcrossSessions() {
+		var settings = new AppProperties.Mcp();
+		settings.setRate_limit_enabled(true);
+		settings.setTool_requests_per_second(0.001);
+		settings.setTool_burst(1);
+		var guard = new McpToolGuard(settings, new SimpleMeterRegistry());
+
+		assertThat(guard.checkLimits("a", "search-fhir-resources")).isNull();
+		assertThat(guard.checkLimits("b", "search-fhir-resources")).isEqualTo("tool");
+		assertThat(guard.checkLimits("b", "read-fhir-resource")).isNull();
+	}
+
+	@Test
+	void callRejectedByTheToolLimitLeavesTheSessionBucketAlone() {
+		var settings = new AppProperties.Mcp();
+		settings.setRate_limit_enabled(true);
+		settings.setSession_requests_per_second(0.001);
+		settings.setSession_burst(2);
+		settings.setTool_requests_per_second(0.001);
+		settings.setTool_burst(1);
+		var guard = new McpToolGuard(settings, new SimpleMeterRegistry());
+
+		assertThat(guard.checkLimits("a", "search-fhir-resources")).isNull();
+		assertThat(guard.checkLimits("a", "search-fhir-resources")).isEqualTo("tool");
+		assertThat(guard.checkLimits("a", "search-fhir-resources")).isEqualTo("tool");
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isNull();
+	}
+
+	@Test
+	void batchCallsCostOneTokenPerEntry() {
+		var settings = new AppProperties.Mcp();
+		settings.setRate_limit_enabled(true);
+		settings.setSession_requests_per_second(0.001);
+		settings.setSession_burst(4);
+		var guard = new McpToolGuard(settings, new SimpleMeterRegistry());
+		var batch = new McpSchema.CallToolRequest.Builder()
+				.name("batch-fhir-interactions")
+				.arguments(Map.of("requests", List.of(Map.of(), Map.of(), Map.of())))
+				.build();
+
+		int cost = McpToolGuard.costOf("batch", batch);
+		assertThat(cost).isEqualTo(3);
+		assertThat(guard.checkLimits("a", "batch-fhir-interactions", cost)).isNull();
+		assertThat(guard.checkLimits("a", "batch-fhir-interactions", cost)).isEqualTo("session");
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isNull();
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isEqualTo("session");
+	}
+
+	@Test
+	void batchLargerThanTheBurstIsAllowedFromAFullBucketOnly() {
+		var settings = new AppProperties.Mcp();
+		settings.setRate_limit_enabled(true);
+		settings.setSession_requests_per_second(0.001);
+		settings.setSession_burst(2);
+		var guard = new McpToolGuard(settings, new SimpleMeterRegistry());
+
+		assertThat(guard.checkLimits("a", "batch-fhir-interactions", 5)).isNull();
+		assertThat(guard.checkLimits("a", "read-fhir-resource")).isEqualTo("session");
+	}
+
+	@Test
+	void mapsToolNamesToInteractions() {
+		assertThat(McpToolGuard.interactionOf("conditional-patch-fhir-resource")).isEqualTo("patch");
+		assertThat(McpToolGuard.interactionOf("create-fhir-transaction")).isEqualTo("transaction");
+		assertThat(McpToolGuard.interactionOf("call-cds-hook")).isEqualTo("call-cds-hook");
+		assertThat(McpToolGuard.interactionOf("batch-fhir-interactions")).isEqualTo("batch");
+	}
+}
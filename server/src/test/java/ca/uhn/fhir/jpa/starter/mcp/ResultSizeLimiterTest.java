@@ -0,0 +1,86 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultSizeLimiterTest {
+
+	private static String bundleWith(int entries) {
+		StringBuilder json = new StringBuilder("{\"resourceType\":\"Bundle\",\"type\":\"searchset\",\"entry\":[");
+		for (int i = 0; i < entries; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"p").append(i).append("\"}}");
+		}
+		return json.append("]}").toString();
+	}
+
+	@Test
+	void leavesSmallBodiesAlone() {
+		String body = bundleWith(2);
+
+		var limited = ResultSizeLimiter.apply(body, null, body.length());
+
+		assertThat(limited.body()).isSameAs(body);
+		assertThat(limited.truncation()).isNull();
+	}
+
+	@Test
+	void dropsTrailingBundleEntriesAndRewindsCursor() {
+		String body = bundleWith(10);
+		var cursor = new SearchCursor("search-1", 20, 10);
+
+		var limited = ResultSizeLimiter.apply(body, cursor, body.length() / 2);
+
+		assertThat(limited.body().length()).isLessThanOrEqualTo(body.length() / 2);
+		assertThat(limited.truncation().bodyCut()).isFalse();
+		int omitted = limited.truncation().omittedEntries();
+		assertThat(omitted).isBetween(1, 9);
+		assertThat(limited.cursor()).isEqualTo(new SearchCursor("search-1", 20 - omitted, 10));
+	}
+
+	@Test
+	void buildsCursorForEntriesDroppedFromTheLastPage() {
+		String body = bundleWith(10).replace(
+				"\"type\":\"searchset\",",
+				"\"type\":\"searchset\",\"link\":[{\"relation\":\"self\","
+						+ "\"url\":\"http://localhost/fhir?_getpages=search-1&_getpagesoffset=30&_count=10\"}],");
+
+		var limited = ResultSizeLimiter.apply(body, null, body.length() / 2);
+
+		int omitted = limited.truncation().omittedEntries();
+		assertThat(omitted).isBetween(1, 9);
+		assertThat(limited.cursor()).isEqualTo(new SearchCursor("search-1", 30 + 10 - omitted, omitted));
+	}
+
+	@Test
+	void usesTheBundleIdAsSearchIdOnTheFirstPage() {
+		String body = bundleWith(10).replace("\"type\"", "\"id\":\"search-2\",\"type\"");
+
+		var limited = ResultSizeLimiter.apply(body, null, body.length() / 2);
+
+		int omitted = limited.truncation().omittedEntries();
+		assertThat(limited.cursor()).isEqualTo(new SearchCursor("search-2", 10 - omitted, omitted));
+	}
+
+	@Test
+	void keepsEveryEntryWhenThePageCannotBeResumed() {
+		String body = bundleWith(10);
+
+		var limited = ResultSizeLimiter.apply(body, null, body.length() / 2);
+
+		assertThat(limited.body()).isSameAs(body);
+		assertThat(limited.cursor()).isNull();
+		assertThat(limited.truncation()).isNull();
+	}
+
+	@Test
+	void cutsOtherBodies() {
+		var limited = ResultSizeLimiter.apply("{\"resourceType\":\"Patient\",\"id\":\"abc\"}", null, 10);
+
+		assertThat(limited.body()).hasSize(10);
+		assertThat(limited.truncation().bodyCut()).isTrue();
+	}
+}
@@ -0,0 +1,35 @@
+package ca.uhn.fhir.jpa.starter.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTest {
+
+	@Test
+	void roundTripsThroughOpaqueToken() {
+		var cursor = new SearchCursor("3c2e1f0a-uuid:with:colons", 40, 20);
+
+		assertThat(SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+	}
+
+	@Test
+	void derivesCursorFromPagingLink() {
+		var cursor = SearchCursor.fromNextLink(
+				"http://localhost:8080/fhir?_getpages=abc-123&_getpagesoffset=20&_count=20&_bundletype=searchset");
+
+		assertThat(cursor).isEqualTo(new SearchCursor("abc-123", 20, 20));
+	}
+
+	@Test
+	void ignoresLinksWithoutSearchId() {
+		assertThat(SearchCursor.fromNextLink("http://localhost:8080/fhir/Patient?name=ivan")).isNull();
+		assertThat(SearchCursor.fromNextLink(null)).isNull();
+	}
+
+	@Test
+	void rejectsGarbageTokens() {
+		assertThatThrownBy(() -> SearchCursor.decode("not-a-cursor")).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,169 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.jpa.starter.mcp.CallToolResultFactory;
+import ca.uhn.fhir.jpa.starter.mcp.ToolFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.modelcontextprotocol.server.McpAsyncServerExchange;
+import io.modelcontextprotocol.server.McpServerFeatures;
+import io.modelcontextprotocol.server.McpSyncServerExchange;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class McpBridgeTest {
+
+	private static final McpSchema.CallToolRequest REQUEST = new McpSchema.CallToolRequest.Builder()
+			.name("read-fhir-resource")
+			.arguments(Map.of())
+			.build();
+
+	private Scheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		scheduler = Schedulers.newBoundedElastic(1, 1, "mcp-bridge-test");
+	}
+
+	@AfterEach
+	void tearDown() {
+		scheduler.dispose();
+	}
+
+	private static McpServerFeatures.SyncToolSpecification spec(
+			BiFunction<McpSyncServerExchange, McpSchema.CallToolRequest, McpSchema.CallToolResult> handler) {
+		try {
+			return spec(ToolFactory.readFhirResource(), handler);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static McpServerFeatures.SyncToolSpecification spec(
+			McpSchema.Tool tool,
+			BiFunction<McpSyncServerExchange, McpSchema.CallToolRequest, McpSchema.CallToolResult> handler) {
+		return new McpServerFeatures.SyncToolSpecification.Builder()
+				.tool(tool)
+				.callHandler(handler)
+				.build();
+	}
+
+	private Mono<McpSchema.CallToolResult> call(McpServerFeatures.SyncToolSpecification spec, Duration timeout) {
+		return McpBridge.toAsync(List.of(spec), scheduler, timeout)
+				.get(0)
+				.callHandler()
+				.apply(mock(McpAsyncServerExchange.class), REQUEST);
+	}
+
+	private static String text(McpSchema.CallToolResult result) {
+		return ((McpSchema.TextContent) result.content().get(0)).text();
+	}
+
+	@Test
+	void runsTheSyncHandlerOnTheScheduler() {
+		AtomicReference<String> thread = new AtomicReference<>();
+		var spec = spec((exchange, request) -> {
+			thread.set(Thread.currentThread().getName());
+			return CallToolResultFactory.failure("done");
+		});
+
+		McpSchema.CallToolResult result = call(spec, Duration.ofSeconds(5)).block();
+
+		assertThat(text(result)).isEqualTo("done");
+		assertThat(thread.get()).startsWith("mcp-bridge-test");
+	}
+
+	@Test
+	void timeoutBecomesAFailureResultAndInterruptsTheWorker() throws InterruptedException {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		var spec = spec((exchange, request) -> {
+			try {
+				Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return CallToolResultFactory.failure("finished");
+		});
+
+		McpSchema.CallToolResult result = call(spec, Duration.ofMillis(100)).block();
+
+		assertThat(result.isError()).isTrue();
+		assertThat(text(result)).startsWith("Tool call timed out");
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	void timedOutWriteIsLeftToFinishAndReportedAsUnknown() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		AtomicReference<Boolean> interrupted = new AtomicReference<>(false);
+		var spec = spec(ToolFactory.createFhirResource(), (exchange, request) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			}
+			finished.countDown();
+			return CallToolResultFactory.failure("created");
+		});
+
+		McpSchema.CallToolResult result = call(spec, Duration.ofMillis(100)).block();
+
+		assertThat(result.isError()).isTrue();
+		assertThat(text(result)).contains("status is unknown");
+		release.countDown();
+		assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(interrupted.get()).isFalse();
+	}
+
+	@Test
+	void saturatedSchedulerBecomesABusyResult() {
+		CountDownLatch release = new CountDownLatch(1);
+		var blocking = spec((exchange, request) -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return CallToolResultFactory.failure("released");
+		});
+		try {
+			// One call occupies the only thread and one waits in its queue
+			call(blocking, Duration.ofSeconds(30)).subscribe();
+			call(blocking, Duration.ofSeconds(30)).subscribe();
+
+			McpSchema.CallToolResult result = call(blocking, Duration.ofSeconds(30)).block();
+
+			assertThat(result.isError()).isTrue();
+			assertThat(text(result)).startsWith("Server is busy");
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	void otherErrorsAreNotMapped() {
+		var spec = spec((exchange, request) -> {
+			throw new IllegalStateException("boom");
+		});
+
+		assertThatThrownBy(() -> call(spec, Duration.ofSeconds(5)).block())
+				.isInstanceOf(IllegalStateException.class)
+				.hasMessage("boom");
+	}
+}
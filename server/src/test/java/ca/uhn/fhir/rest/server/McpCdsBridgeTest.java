@@ -0,0 +1,82 @@
+package ca.uhn.fhir.rest.server;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.rest.api.server.cdshooks.CdsServiceRequestJson;
+import ca.uhn.hapi.fhir.cdshooks.api.ICdsServiceRegistry;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseCardJson;
+import ca.uhn.hapi.fhir.cdshooks.api.json.CdsServiceResponseJson;
+import ca.uhn.hapi.fhir.cdshooks.module.CdsHooksObjectMapperFactory;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class McpCdsBridgeTest {
+
+	private static final FhirContext fhirContext = FhirContext.forR4Cached();
+
+	@Test
+	void prefetchRoundTripsThroughTheHookCall() {
+		ICdsServiceRegistry registry = mock(ICdsServiceRegistry.class);
+		AtomicReference<CdsServiceRequestJson> seen = new AtomicReference<>();
+		when(registry.callService(eq("patient-greeting"), any())).thenAnswer(invocation -> {
+			CdsServiceRequestJson request = invocation.getArgument(1);
+			seen.set(request);
+			Patient patient = (Patient) request.getPrefetch("patient");
+			CdsServiceResponseJson response = new CdsServiceResponseJson();
+			CdsServiceResponseCardJson card = new CdsServiceResponseCardJson();
+			card.setSummary("Hello " + patient.getNameFirstRep().getGivenAsSingleString());
+			response.addCard(card);
+			return response;
+		});
+		var bridge =
+				new McpCdsBridge(fhirContext, registry, new CdsHooksObjectMapperFactory(fhirContext).newMapper());
+
+		var request = new McpSchema.CallToolRequest.Builder()
+				.name("call-cds-hook")
+				.arguments(Map.of(
+						"service",
+						"patient-greeting",
+						"hook",
+						"patient-view",
+						"hookInstance",
+						"d1577c69-dfbe-44ad-ba6d-3e05e953b2ea",
+						"hookContext",
+						Map.of("userId", "Practitioner/example", "patientId", "Patient/p1"),
+						"prefetch",
+						Map.of(
+								"patient",
+								Map.of(
+										"resourceType",
+										"Patient",
+										"id",
+										"p1",
+										"name",
+										List.of(Map.of("given", List.of("Ada")))),
+								// Never read by the service, so never parsed
+								"unused",
+								"{ not FHIR")))
+				.build();
+
+		McpSchema.CallToolResult result = bridge.generateTools().get(0).callHandler().apply(null, request);
+
+		assertThat(((McpSchema.TextContent) result.content().get(0)).text()).contains("Hello Ada");
+		CdsServiceRequestJson received = seen.get();
+		assertThat(received.getHook()).isEqualTo("patient-view");
+		assertThat(received.getContext().getString("patientId")).isEqualTo("Patient/p1");
+		assertThat(received.getPrefetchKeys()).containsExactlyInAnyOrder("patient", "unused");
+		IBaseResource patient = received.getPrefetch("patient");
+		assertThat(patient.getIdElement().getIdPart()).isEqualTo("p1");
+		assertThat(received.getPrefetch("patient")).isSameAs(patient);
+	}
+}